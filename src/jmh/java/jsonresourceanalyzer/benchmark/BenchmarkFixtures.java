@@ -0,0 +1,139 @@
+package jsonresourceanalyzer.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.json.InputJsonObject;
+
+/**
+ * Generates the files the benchmarks run against. Files are written to the temporary directory
+ * under names made from their parameters, and reused by later runs with the same parameters.
+ */
+final class BenchmarkFixtures {
+
+  private static final String URL = "http://www.google.com/";
+  private static final int SIZE = 290;
+
+  private BenchmarkFixtures() {
+  }
+
+  /**
+   * Returns a manifest of the given number of objects whose paths are padded to the given length.
+   *
+   * @param objectCount Number of objects in the manifest
+   * @param pathLength  Length of every path, at least long enough to keep paths unique
+   * @return The manifest file
+   */
+  static File manifest(int objectCount, int pathLength) throws IOException {
+    File manifest = new File(
+        System.getProperty("java.io.tmpdir"),
+        "benchmark-manifest-" + objectCount + "-" + pathLength + ".json"
+    );
+    if (manifest.isFile()) {
+      return manifest;
+    }
+
+    File partial = new File(manifest.getPath() + ".partial");
+    JsonGenerator jsonGenerator = new JsonFactory().createGenerator(partial, JsonEncoding.UTF8);
+    jsonGenerator.writeStartArray();
+    for (int i = 0; i < objectCount; i++) {
+      jsonGenerator.writeStartObject();
+      jsonGenerator.writeStringField("path", path(i, pathLength));
+      jsonGenerator.writeNumberField("size", SIZE);
+      jsonGenerator.writeStringField("url", URL);
+      jsonGenerator.writeEndObject();
+    }
+    jsonGenerator.writeEndArray();
+    jsonGenerator.close();
+
+    // renamed once complete, so an interrupted run does not leave a truncated manifest behind
+    if (!partial.renameTo(manifest)) {
+      throw new IOException("Could not create " + manifest);
+    }
+    return manifest;
+  }
+
+  /**
+   * Returns a file of the given size to be sized as a URL resource.
+   *
+   * @param size Size of the file in bytes
+   * @return The file
+   */
+  static File resource(int size) throws IOException {
+    File resource = new File(
+        System.getProperty("java.io.tmpdir"),
+        "benchmark-resource-" + size + ".bin"
+    );
+    if (resource.length() == size) {
+      return resource;
+    }
+
+    byte[] bytes = new byte[size];
+    Arrays.fill(bytes, (byte) 'x');
+    try (OutputStream outputStream = new FileOutputStream(resource)) {
+      outputStream.write(bytes);
+    }
+    return resource;
+  }
+
+  /**
+   * Creates an object as the reader would produce it.
+   *
+   * @param index      Index of the object, which makes its path unique
+   * @param pathLength Length of the path
+   * @return The object
+   */
+  static InputJsonObject object(int index, int pathLength) {
+    InputJsonObject inputJsonObject = new InputJsonObject();
+    inputJsonObject.setProperty("path", path(index, pathLength));
+    inputJsonObject.setProperty("size", SIZE);
+    inputJsonObject.setProperty("url", URL);
+    inputJsonObject.setSequence(index);
+    return inputJsonObject;
+  }
+
+  /**
+   * Parses arguments reading the manifest and discarding the output, with any extra arguments.
+   *
+   * @param manifest  The manifest to read
+   * @param arguments Extra arguments
+   * @return The parsed arguments
+   */
+  static ArgParser arguments(File manifest, String... arguments) throws IOException {
+    String[] all = Arrays.copyOf(
+        new String[]{"-f", manifest.getPath(), "-o", discardedOutput().getPath()},
+        4 + arguments.length
+    );
+    System.arraycopy(arguments, 0, all, 4, arguments.length);
+    return new ArgParser(all);
+  }
+
+  /**
+   * Returns a file to write output that is not needed, so writer benchmarks do not fill the disk.
+   *
+   * @return /dev/null where there is one, and a temporary file elsewhere
+   */
+  private static File discardedOutput() throws IOException {
+    File devNull = new File("/dev/null");
+    if (devNull.canWrite()) {
+      return devNull;
+    }
+    File output = File.createTempFile("benchmark-output", ".json");
+    output.deleteOnExit();
+    return output;
+  }
+
+  private static String path(int index, int pathLength) {
+    StringBuilder path = new StringBuilder("path_").append(index).append('_');
+    while (path.length() < pathLength) {
+      path.append('x');
+    }
+    return path.toString();
+  }
+}
@@ -0,0 +1,73 @@
+package jsonresourceanalyzer.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import jsonresourceanalyzer.concurrency.WorkDispatcher;
+import jsonresourceanalyzer.concurrency.WorkGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead WorkDispatcher adds to each object, by dispatching work that does nothing
+ * from a single thread as the reader does. Blocking dispatch pays for the concurrency limit and a
+ * hand-off to the worker pool; asynchronous dispatch only for the concurrency limit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+  private static final Runnable NO_WORK = () -> {
+  };
+
+  @Param({"1", "20"})
+  public int workers;
+
+  @Param({"false", "true"})
+  public boolean adaptive;
+
+  private WorkDispatcher workDispatcher;
+  private WorkGroup workGroup;
+
+  @Setup(Level.Iteration)
+  public void createDispatcher() throws IOException {
+    String[] arguments = adaptive
+        ? new String[]{"-w", Integer.toString(workers), "--adaptive-concurrency"}
+        : new String[]{"-w", Integer.toString(workers)};
+    workGroup = new WorkGroup();
+    workDispatcher = new WorkDispatcher(
+        BenchmarkFixtures.arguments(BenchmarkFixtures.manifest(1, 16), arguments)
+    );
+  }
+
+  @TearDown(Level.Iteration)
+  public void shutDownDispatcher() {
+    workDispatcher.waitForWorkToComplete(workGroup);
+    workDispatcher.close();
+  }
+
+  @Benchmark
+  public void dispatch() {
+    workDispatcher.dispatch(NO_WORK, workGroup);
+  }
+
+  @Benchmark
+  public void dispatchAsync() {
+    workDispatcher.dispatchAsync(() -> CompletableFuture.completedFuture(null), workGroup);
+  }
+}
@@ -0,0 +1,87 @@
+package jsonresourceanalyzer.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import jsonresourceanalyzer.concurrency.WorkDispatcher;
+import jsonresourceanalyzer.concurrency.WorkGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the fixed and virtual dispatchers on a run of many objects whose validations block, the
+ * way a blocking fetch waits for its response. Each object parks its thread for the given latency,
+ * and one operation dispatches every object and waits for all of them. The concurrency is the
+ * number of workers for the fixed dispatcher and the in flight limit for the virtual one, so both
+ * have the same number of objects waiting at once and differ only in the threads that wait.
+ *
+ * <p>The virtual dispatcher needs Java 21 or later. On older runtimes its runs fail at setup with
+ * the dispatcher's error.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatcherModeBenchmark {
+
+  @Param({"fixed", "virtual"})
+  public String dispatcher;
+
+  @Param({"100000"})
+  public int objects;
+
+  @Param({"200", "1000"})
+  public int concurrency;
+
+  @Param({"1000"})
+  public long latencyMicros;
+
+  private File manifest;
+  private WorkDispatcher workDispatcher;
+  private Runnable blockingWork;
+
+  @Setup(Level.Trial)
+  public void createManifest() throws IOException {
+    manifest = BenchmarkFixtures.manifest(1, 16);
+    long latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    blockingWork = () -> LockSupport.parkNanos(latencyNanos);
+  }
+
+  @Setup(Level.Iteration)
+  public void createDispatcher() throws IOException {
+    workDispatcher = new WorkDispatcher(BenchmarkFixtures.arguments(
+        manifest,
+        "--dispatcher", dispatcher,
+        "-w", Integer.toString(concurrency),
+        "--max-in-flight", Integer.toString(concurrency)
+    ));
+  }
+
+  @TearDown(Level.Iteration)
+  public void shutDownDispatcher() {
+    workDispatcher.close();
+  }
+
+  @Benchmark
+  public void dispatchAll() {
+    WorkGroup workGroup = new WorkGroup();
+    for (int i = 0; i < objects; i++) {
+      workDispatcher.dispatch(blockingWork, workGroup);
+    }
+    workDispatcher.waitForWorkToComplete(workGroup);
+  }
+}
@@ -0,0 +1,73 @@
+package jsonresourceanalyzer.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import jsonresourceanalyzer.json.JsonReader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses a whole manifest through JsonReader, which calls readObject() for every object and checks
+ * its path is unique. The objects counter gives the rate of objects parsed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadObjectBenchmark {
+
+  /**
+   * Counts the objects parsed during an iteration.
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Objects {
+
+    public long objects;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      objects = 0;
+    }
+  }
+
+  @Param({"100000"})
+  public int objectCount;
+
+  @Param({"16", "256"})
+  public int pathLength;
+
+  @Param({"1"})
+  public int parseThreads;
+
+  private File manifest;
+
+  @Setup
+  public void createManifest() throws IOException {
+    manifest = BenchmarkFixtures.manifest(objectCount, pathLength);
+  }
+
+  @Benchmark
+  public void readFile(Objects objects) throws IOException {
+    JsonReader jsonReader = new JsonReader(BenchmarkFixtures.arguments(
+        manifest,
+        "--parse-threads", Integer.toString(parseThreads)
+    ));
+    jsonReader.readFile();
+    objects.objects += objectCount;
+  }
+}
@@ -0,0 +1,62 @@
+package jsonresourceanalyzer.benchmark;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
+import jsonresourceanalyzer.enums.SizingStrategy;
+import jsonresourceanalyzer.http.HostConnectionLimiter;
+import jsonresourceanalyzer.http.ResourceSize;
+import jsonresourceanalyzer.http.RetryPolicy;
+import jsonresourceanalyzer.http.UrlResourceSizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the loop that counts the bytes of a downloaded resource body, which the validator uses for
+ * the download sizing strategy. The resource is a local file, read from the page cache, so the
+ * network does not hide the cost of the loop itself. The digest parameter adds each digest the
+ * loop can compute over the same buffer, against "none".
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SizeCountingBenchmark {
+
+  @Param({"16384", "1048576"})
+  public int resourceSize;
+
+  @Param({"none", "crc32c", "sha256", "xxhash64"})
+  public String digest;
+
+  private URL url;
+  private UrlResourceSizer urlResourceSizer;
+
+  @Setup
+  public void createResource() throws IOException {
+    url = BenchmarkFixtures.resource(resourceSize).toURI().toURL();
+    urlResourceSizer = new UrlResourceSizer(
+        SizingStrategy.DOWNLOAD,
+        new HostConnectionLimiter(20, 30),
+        new RetryPolicy(10, 30, 1, 0),
+        DigestAlgorithm.fromName(digest)
+    );
+  }
+
+  @Benchmark
+  public ResourceSize countBytes() {
+    return urlResourceSizer.size(url);
+  }
+}
@@ -0,0 +1,85 @@
+package jsonresourceanalyzer.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import jsonresourceanalyzer.json.InputJsonObject;
+import jsonresourceanalyzer.json.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hands objects to a shared JsonWriter from several threads at once, as the workers do once their
+ * objects are validated. Run with -t to change the number of contending threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WriteObjectBenchmark {
+
+  /**
+   * The objects written by one thread, cycled through so no time is spent creating them.
+   */
+  @State(Scope.Thread)
+  public static class ThreadObjects {
+
+    private static final int OBJECT_COUNT = 1024;
+
+    private final InputJsonObject[] objects = new InputJsonObject[OBJECT_COUNT];
+    private int next;
+
+    @Setup
+    public void createObjects(WriteObjectBenchmark benchmark) {
+      for (int i = 0; i < OBJECT_COUNT; i++) {
+        objects[i] = BenchmarkFixtures.object(i, benchmark.pathLength);
+      }
+    }
+
+    InputJsonObject next() {
+      next = (next + 1) & (OBJECT_COUNT - 1);
+      return objects[next];
+    }
+  }
+
+  @Param({"16", "256"})
+  public int pathLength;
+
+  @Param({"json"})
+  public String outputFormat;
+
+  private JsonWriter jsonWriter;
+
+  @Setup(Level.Iteration)
+  public void startFile() throws IOException {
+    jsonWriter = new JsonWriter(BenchmarkFixtures.arguments(
+        BenchmarkFixtures.manifest(1, pathLength),
+        "--output-format", outputFormat
+    ));
+    jsonWriter.startFile();
+  }
+
+  @TearDown(Level.Iteration)
+  public void endFile() {
+    jsonWriter.endFile();
+  }
+
+  @Benchmark
+  public void writeObject(ThreadObjects threadObjects) {
+    jsonWriter.writeObject(threadObjects.next());
+  }
+}
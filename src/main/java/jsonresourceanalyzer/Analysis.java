@@ -0,0 +1,297 @@
+package jsonresourceanalyzer;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import jsonresourceanalyzer.concurrency.WorkDispatcher;
+import jsonresourceanalyzer.concurrency.WorkGroup;
+import jsonresourceanalyzer.enums.FetchEngine;
+import jsonresourceanalyzer.enums.SizeSource;
+import jsonresourceanalyzer.enums.SizingStrategy;
+import jsonresourceanalyzer.enums.UnsampledValidation;
+import jsonresourceanalyzer.exceptions.AnalyzerException;
+import jsonresourceanalyzer.json.CheckpointJournal;
+import jsonresourceanalyzer.json.InputJsonObject;
+import jsonresourceanalyzer.json.InputJsonObjectValidator;
+import jsonresourceanalyzer.json.JsonReader;
+import jsonresourceanalyzer.json.JsonWriter;
+import jsonresourceanalyzer.json.PreviousOutputIndex;
+import jsonresourceanalyzer.json.ReorderBuffer;
+import jsonresourceanalyzer.json.ValidationSampler;
+
+/**
+ * A single run of the pipeline over one input, on the validator and work dispatcher of the
+ * JsonResourceAnalyzer that started it. Analyses may run at the same time, each waiting only for
+ * the work it dispatched itself. The first failure of any thread taking part is kept: the
+ * reader stops at the next object, the work already dispatched is waited for, and the output is
+ * closed incomplete before the failure is thrown. A journal is kept on failure so a later run can
+ * resume from it.
+ */
+class Analysis {
+
+  private final ArgParser argParser;
+  private final InputStream inputStream;
+  private final OutputStream outputStream;
+  private final FetchEngine fetchEngine;
+  private final InputJsonObjectValidator inputJsonObjectValidator;
+  private final WorkDispatcher workDispatcher;
+  private final AnalysisProgress analysisProgress;
+
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private final LongAdder correctedSizeCount = new LongAdder();
+  private final WorkGroup workGroup;
+
+  private CheckpointJournal checkpointJournal;
+  private JsonWriter jsonWriter;
+  private PreviousOutputIndex previousOutputIndex;
+  private volatile ReorderBuffer reorderBuffer;
+  private ValidationSampler validationSampler;
+
+  /**
+   * Creates a run over the given streams, or over the input and output named by the arguments
+   * when they are null. The fetch engine is that of the shared validator, which may differ from
+   * the one named by the arguments of the run.
+   */
+  Analysis(
+      ArgParser argParser,
+      InputStream inputStream,
+      OutputStream outputStream,
+      FetchEngine fetchEngine,
+      InputJsonObjectValidator inputJsonObjectValidator,
+      WorkDispatcher workDispatcher,
+      AnalysisProgress analysisProgress
+  ) {
+    this.argParser = argParser;
+    this.inputStream = inputStream;
+    this.outputStream = outputStream;
+    this.fetchEngine = fetchEngine;
+    this.inputJsonObjectValidator = inputJsonObjectValidator;
+    this.workDispatcher = workDispatcher;
+    this.analysisProgress = analysisProgress;
+    // a job of a server may ask for less concurrency than the server's dispatcher allows
+    workGroup = workDispatcher.createWorkGroup(argParser);
+  }
+
+  /**
+   * Reads the input, validates every object and writes the output, returning once the output is
+   * complete.
+   *
+   * @return The summary of the run
+   */
+  AnalysisResult run() {
+    long start = System.nanoTime();
+    analysisProgress.start();
+    try {
+      // objects written by an earlier, interrupted run are restored from the journal
+      checkpointJournal =
+          argParser.getJournalFile() != null ? new CheckpointJournal(argParser) : null;
+      jsonWriter = outputStream != null
+          ? new JsonWriter(argParser, outputStream, checkpointJournal)
+          : new JsonWriter(argParser, checkpointJournal);
+      // entries unchanged since a previous run are trusted or checked more cheaply
+      previousOutputIndex =
+          argParser.getPreviousOutputFile() != null ? new PreviousOutputIndex(argParser) : null;
+      // only a sample of the objects of each host is checked in full
+      validationSampler = argParser.isSampling() ? new ValidationSampler(argParser) : null;
+      // when output is ordered, validated objects pass through the reorder buffer on their way to the writer
+      reorderBuffer = argParser.isOrdered() ? new ReorderBuffer(argParser, jsonWriter) : null;
+
+      JsonReader jsonReader = inputStream != null
+          ? new JsonReader(argParser, inputStream)
+          : new JsonReader(argParser);
+      jsonReader
+          .onReadStart(jsonWriter::startFile)
+          .onObjectRead(this::dispatch)
+          .onReadComplete(this::complete)
+          .readFile();
+
+    } catch (RuntimeException | Error ex) {
+      fail(ex);
+      abort();
+      throwIfFailed();
+    }
+
+    return new AnalysisResult(
+        analysisProgress.getObjectsRead(),
+        correctedSizeCount.sum(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    );
+  }
+
+  /**
+   * Restores the InputJsonObject or dispatches its validation. Called by the reader for every
+   * object, in input order unless the input is parsed in parallel.
+   */
+  private void dispatch(InputJsonObject inputJsonObject) {
+    // pause reading while the reorder buffer is full
+    if (reorderBuffer != null) {
+      reorderBuffer.reserve(inputJsonObject);
+    }
+
+    // stop reading once anything has failed
+    throwIfFailed();
+    analysisProgress.objectRead();
+
+    // an object already written by an earlier run goes straight to the output
+    if (checkpointJournal != null && checkpointJournal.restore(inputJsonObject)) {
+      write(inputJsonObject);
+      return;
+    }
+
+    // an object unchanged since a trusted previous output needs no validation
+    if (previousOutputIndex != null) {
+      if (previousOutputIndex.restore(inputJsonObject)) {
+        write(inputJsonObject);
+        return;
+      }
+      inputJsonObject.setMetadataOnly(previousOutputIndex.isUnchanged(inputJsonObject));
+    }
+
+    // an object left out of the sample is checked more cheaply, or not at all
+    boolean sampled = validationSampler == null || validationSampler.sample(inputJsonObject);
+    if (!sampled) {
+      if (validationSampler.getUnsampledValidation() == UnsampledValidation.ACCEPT) {
+        inputJsonObject.validate();
+        inputJsonObject.setSizeSource(SizeSource.REPORTED);
+        write(inputJsonObject);
+        return;
+      }
+      inputJsonObject.setMetadataOnly(true);
+    } else if (validationSampler != null) {
+      // the sample is checked in full even if it is unchanged since a previous run
+      inputJsonObject.setMetadataOnly(false);
+    }
+
+    // the validator of a server sizes in full by downloading, so a job asking for the metadata
+    // strategy has every object checked with metadata requests only. Sampling is refused with that
+    // strategy, so no sample loses its full check here
+    if (argParser.getSizingStrategy() == SizingStrategy.METADATA) {
+      inputJsonObject.setMetadataOnly(true);
+    }
+
+    Integer reportedSize = inputJsonObject.getSize();
+    if (fetchEngine == FetchEngine.ASYNC) {
+      // start validation without blocking and write to the output json stream once it completes
+      workDispatcher.dispatchAsync(() ->
+          inputJsonObjectValidator
+              .validateAsync(inputJsonObject)
+              .thenAccept(validated -> writeValidated(validated, reportedSize, sampled))
+              .whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                  fail(throwable);
+                }
+              }),
+          workGroup
+      );
+      return;
+    }
+
+    // perform validation and writing to the output json stream on a worker thread
+    workDispatcher.dispatch(() -> {
+      try {
+        inputJsonObjectValidator.validate(inputJsonObject);
+        writeValidated(inputJsonObject, reportedSize, sampled);
+      } catch (RuntimeException | Error ex) {
+        fail(ex);
+        throw ex;
+      }
+    }, workGroup);
+  }
+
+  /**
+   * Ends the output once the whole input has been read. Called by the reader.
+   */
+  private void complete() {
+    // wait for all dispatched work to finish before writing the end of the output JSON and
+    // closing the output stream
+    workDispatcher.waitForWorkToComplete(workGroup);
+    throwIfFailed();
+
+    jsonWriter.endFile();
+    if (checkpointJournal != null) {
+      checkpointJournal.delete();
+      checkpointJournal.reportStatistics();
+    }
+    inputJsonObjectValidator.reportStatistics();
+    if (previousOutputIndex != null) {
+      previousOutputIndex.reportStatistics();
+    }
+    if (validationSampler != null) {
+      validationSampler.reportStatistics();
+    }
+  }
+
+  private void writeValidated(
+      InputJsonObject inputJsonObject,
+      Integer reportedSize,
+      boolean sampled
+  ) {
+    if (!reportedSize.equals(inputJsonObject.getSize())) {
+      correctedSizeCount.increment();
+    }
+    if (validationSampler != null) {
+      validationSampler.record(inputJsonObject, reportedSize, sampled);
+    }
+    write(inputJsonObject);
+  }
+
+  private void write(InputJsonObject inputJsonObject) {
+    analysisProgress.objectCompleted();
+    if (reorderBuffer != null) {
+      reorderBuffer.complete(inputJsonObject);
+    } else {
+      jsonWriter.writeObject(inputJsonObject);
+    }
+  }
+
+  /**
+   * Keeps the failure if it is the first, and releases the reader if the reorder buffer is holding
+   * it back for an object that will now never complete.
+   */
+  private void fail(Throwable throwable) {
+    // futures wrap the exceptions of the work that completes them
+    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause()
+        : throwable;
+    if (failure.compareAndSet(null, cause) && reorderBuffer != null) {
+      reorderBuffer.abort();
+    }
+  }
+
+  private void throwIfFailed() {
+    Throwable throwable = failure.get();
+    if (throwable instanceof RuntimeException) {
+      throw (RuntimeException) throwable;
+    }
+    if (throwable instanceof Error) {
+      throw (Error) throwable;
+    }
+    if (throwable != null) {
+      throw new CompletionException(throwable);
+    }
+  }
+
+  /**
+   * Waits for the work already dispatched, then closes the output and the journal as they are.
+   */
+  private void abort() {
+    try {
+      workDispatcher.waitForWorkToComplete(workGroup);
+    } catch (AnalyzerException ex) {
+      // the first failure is the one reported
+    }
+    if (jsonWriter != null) {
+      jsonWriter.abort();
+    }
+    if (checkpointJournal != null) {
+      try {
+        checkpointJournal.close();
+      } catch (AnalyzerException ex) {
+        // the first failure is the one reported
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package jsonresourceanalyzer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of an analysis, which can be read from any thread while the analysis runs.
+ */
+public class AnalysisProgress {
+
+  private final LongAdder objectsRead = new LongAdder();
+  private final LongAdder objectsCompleted = new LongAdder();
+
+  private volatile boolean started;
+
+  /**
+   * Returns whether the analysis has started, rather than waiting for an earlier one to finish.
+   *
+   * @return Whether the analysis has started
+   */
+  public boolean isStarted() {
+    return started;
+  }
+
+  /**
+   * Returns the number of objects read from the input so far.
+   *
+   * @return The object count
+   */
+  public long getObjectsRead() {
+    return objectsRead.sum();
+  }
+
+  /**
+   * Returns the number of objects read so far that have been validated or restored, and handed to
+   * the output.
+   *
+   * @return The completed object count
+   */
+  public long getObjectsCompleted() {
+    return objectsCompleted.sum();
+  }
+
+  void start() {
+    started = true;
+  }
+
+  void objectRead() {
+    objectsRead.increment();
+  }
+
+  void objectCompleted() {
+    objectsCompleted.increment();
+  }
+}
@@ -0,0 +1,41 @@
+package jsonresourceanalyzer;
+
+/**
+ * Summary of a completed analysis. The corrected objects themselves are in its output.
+ */
+public class AnalysisResult {
+
+  private final long objectCount;
+  private final long correctedSizeCount;
+  private final long durationMillis;
+
+  public AnalysisResult(long objectCount, long correctedSizeCount, long durationMillis) {
+    this.objectCount = objectCount;
+    this.correctedSizeCount = correctedSizeCount;
+    this.durationMillis = durationMillis;
+  }
+
+  /**
+   * Returns the number of objects read from the input, every one of which was written to the
+   * output.
+   *
+   * @return The object count
+   */
+  public long getObjectCount() {
+    return objectCount;
+  }
+
+  /**
+   * Returns the number of objects whose size differed from the size of their url resource, and
+   * was corrected.
+   *
+   * @return The corrected size count
+   */
+  public long getCorrectedSizeCount() {
+    return correctedSizeCount;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+}
@@ -4,9 +4,20 @@ import static java.util.Arrays.stream;
 
 import jsonresourceanalyzer.constants.ErrorMessages;
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
+import jsonresourceanalyzer.enums.DispatcherMode;
 import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.InvalidArgumentException;
+import jsonresourceanalyzer.enums.FetchEngine;
+import jsonresourceanalyzer.enums.InputFormat;
+import jsonresourceanalyzer.enums.OutputFormat;
+import jsonresourceanalyzer.enums.SizingStrategy;
+import jsonresourceanalyzer.enums.UnsampledValidation;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
@@ -17,61 +28,587 @@ import org.apache.commons.cli.ParseException;
 
 public class ArgParser {
 
+  /**
+   * Builds the arguments of an analyzer in code, for applications embedding it, so they need not
+   * assemble command line strings. Options without a method of their own are given by their long
+   * name with option or flag. The arguments are parsed and validated by build, as on the command
+   * line.
+   */
+  public static class Builder {
+
+    private final List<String> args = new ArrayList<>();
+
+    private Builder() {
+    }
+
+    public Builder adaptiveConcurrency() {
+      return flag(ADAPTIVE_CONCURRENCY_ARG_LONG);
+    }
+
+    public Builder digestAlgorithm(DigestAlgorithm digestAlgorithm) {
+      return option(DIGEST_ARG_LONG, digestAlgorithm.getName());
+    }
+
+    public Builder diskCache(File diskCacheFile) {
+      return option(DISK_CACHE_ARG_LONG, diskCacheFile.getPath());
+    }
+
+    public Builder dispatcherMode(DispatcherMode dispatcherMode) {
+      return option(DISPATCHER_ARG_LONG, dispatcherMode.getName());
+    }
+
+    public Builder fetchEngine(FetchEngine fetchEngine) {
+      return option(FETCH_ENGINE_ARG_LONG, fetchEngine.getName());
+    }
+
+    public Builder file(File file) {
+      return option(FILE_ARG_LONG, file.getPath());
+    }
+
+    public Builder gzipOutput() {
+      return flag(GZIP_OUTPUT_ARG_LONG);
+    }
+
+    public Builder inputFormat(InputFormat inputFormat) {
+      return option(INPUT_FORMAT_ARG_LONG, inputFormat.getName());
+    }
+
+    public Builder journal(File journalFile) {
+      return option(JOURNAL_ARG_LONG, journalFile.getPath());
+    }
+
+    public Builder maxInFlight(int maxInFlight) {
+      return option(MAX_IN_FLIGHT_ARG_LONG, Integer.toString(maxInFlight));
+    }
+
+    public Builder ordered() {
+      return flag(ORDERED_ARG_LONG);
+    }
+
+    public Builder outputFile(File outputFile) {
+      return option(OUTPUT_ARG_LONG, outputFile.getPath());
+    }
+
+    public Builder outputFormat(OutputFormat outputFormat) {
+      return option(OUTPUT_FORMAT_ARG_LONG, outputFormat.getName());
+    }
+
+    public Builder previousOutput(File previousOutputFile) {
+      return option(PREVIOUS_OUTPUT_ARG_LONG, previousOutputFile.getPath());
+    }
+
+    public Builder sampleRate(double sampleRate) {
+      return option(SAMPLE_RATE_ARG_LONG, Double.toString(sampleRate));
+    }
+
+    public Builder sizingStrategy(SizingStrategy sizingStrategy) {
+      return option(SIZING_STRATEGY_ARG_LONG, sizingStrategy.getName());
+    }
+
+    /**
+     * Names standard input and output as the input and output, for an analyzer whose analyses are
+     * given their streams by JsonResourceAnalyzer.analyze(InputStream, OutputStream).
+     *
+     * @return This builder
+     */
+    public Builder standardStreams() {
+      option(FILE_ARG_LONG, STANDARD_STREAM_ARG);
+      return option(OUTPUT_ARG_LONG, STANDARD_STREAM_ARG);
+    }
+
+    public Builder url(URL url) {
+      return option(URL_ARG_LONG, url.toString());
+    }
+
+    public Builder workers(int workers) {
+      return option(WORKERS_ARG_LONG, Integer.toString(workers));
+    }
+
+    /**
+     * Adds an option taking a value, such as option("read-timeout", "10").
+     *
+     * @param longName Long name of the option, without the leading dashes
+     * @param value    Value of the option
+     * @return This builder
+     */
+    public Builder option(String longName, String value) {
+      args.add("--" + longName);
+      args.add(value);
+      return this;
+    }
+
+    /**
+     * Adds an option without a value, such as flag("hedge").
+     *
+     * @param longName Long name of the option, without the leading dashes
+     * @return This builder
+     */
+    public Builder flag(String longName) {
+      args.add("--" + longName);
+      return this;
+    }
+
+    /**
+     * Parses and validates the arguments built.
+     *
+     * @return The parsed arguments
+     * @throws InvalidArgumentException If an argument is missing or invalid
+     */
+    public ArgParser build() {
+      return new ArgParser(args.toArray(new String[0]));
+    }
+  }
+
+  private static final String ADAPTIVE_CONCURRENCY_ARG_LONG = "adaptive-concurrency";
+  private static final String ADAPTIVE_CONCURRENCY_ARG_DESC = "Adjust the number of validations in flight based on observed latency and errors, between --min-concurrency and the worker or in flight limit.";
+  private static final String CONNECT_TIMEOUT_ARG_LONG = "connect-timeout";
+  private static final String CONNECT_TIMEOUT_ARG_DESC = "Seconds to wait for a connection to a URL to open before the attempt fails. 0 waits forever. Defaults to 10.";
+  private static final String CONNECT_TIMEOUT_DEFAULT = "10";
+  private static final String DIGEST_ARG_LONG = "digest";
+  private static final String DIGEST_ARG_DESC = "Compute a digest of every resource body while its bytes are counted, and write it to the output in a field named after the algorithm: `crc32c`, `sha256` or `xxhash64`. Only sizes found by downloading the body have one, so sizes found by metadata requests, trusted from a previous output or accepted outside the sample have none.";
+  private static final String DISK_CACHE_ARG = "d";
+  private static final String DISK_CACHE_ARG_LONG = "disk-cache";
+  private static final String DISK_CACHE_ARG_DESC = "File path of a persistent URL size cache. Cached resources are revalidated with conditional requests instead of being sized again. With --digest, a cached body without a digest of that algorithm is downloaded again.";
+  private static final String DISK_CACHE_MAX_AGE_ARG_LONG = "disk-cache-max-age";
+  private static final String DISK_CACHE_MAX_AGE_ARG_DESC = "Seconds a disk cache entry may go without being validated before it is dropped. Defaults to 604800 (7 days).";
+  private static final String DISK_CACHE_MAX_AGE_DEFAULT = "604800";
+  private static final String DISPATCHER_ARG_LONG = "dispatcher";
+  private static final String DISPATCHER_ARG_DESC = "How blocking validations are run: `fixed` uses a fixed pool of worker threads, `virtual` is experimental and runs each validation on a virtual thread (Java 21+); its gain over `fixed` has not been measured. Defaults to `fixed`.";
+  private static final String FETCH_ENGINE_ARG = "e";
+  private static final String FETCH_ENGINE_ARG_LONG = "fetch-engine";
+  private static final String FETCH_ENGINE_ARG_DESC = "How URL resources are fetched: `blocking` uses one worker thread per request, `async` keeps many requests in flight on a few threads. Defaults to `blocking`.";
   private static final String FILE_ARG = "f";
   private static final String FILE_ARG_LONG = "file";
-  private static final String FILE_ARG_DESC = "File path to array of JSON objects.";
+  private static final String FILE_ARG_DESC = "File path to array of JSON objects, or `-` to read from standard input.";
+  private static final String GZIP_OUTPUT_ARG_LONG = "gzip-output";
+  private static final String GZIP_OUTPUT_ARG_DESC = "Write the output file gzipped, compressing blocks on every core. Gzipped input is detected automatically.";
+  private static final String HEDGE_ARG_LONG = "hedge";
+  private static final String HEDGE_ARG_DESC = "With the `async` fetch engine, send a request again if it has not been answered by the 95th percentile of the latency observed so far, and use whichever copy answers first. At most 10% of requests are hedged, each kind of request has its own percentile, and a copy is only sent if --max-connections-per-host leaves a connection to the host free.";
   private static final String HELP_ARG = "h";
   private static final String HELP_ARG_LONG = "help";
   private static final String PROGRAM_NAME = "JsonResourceAnalyzer";
+  private static final String IDLE_TIMEOUT_ARG_LONG = "idle-timeout";
+  private static final String IDLE_TIMEOUT_ARG_DESC = "Seconds an idle connection of the async fetch engine is kept alive for reuse. The blocking engine only applies it on Java 19 or later; older JDKs keep its idle connections for as long as the server's Keep-Alive header says, or 5 seconds. The JDK applies this and --max-connections-per-host to its keep-alive caches for the whole JVM, so they are set from the command line, unless given with -D, and not when the analyzer is embedded. Defaults to 30.";
+  private static final String IDLE_TIMEOUT_DEFAULT = "30";
+  private static final String INPUT_FORMAT_ARG_LONG = "input-format";
+  private static final String INPUT_FORMAT_ARG_DESC = "Format of the input: `json` for an array of objects, `ndjson` for one object per line. Defaults to `json`.";
+  private static final String JOURNAL_ARG = "j";
+  private static final String JOURNAL_ARG_LONG = "journal";
+  private static final String JOURNAL_ARG_DESC = "File path of a checkpoint journal. Entries recorded in a journal left by an interrupted run are not validated again, and the journal is deleted once the output is complete. The output of a resumed run is only byte-identical to that of an uninterrupted run with --ordered.";
+  private static final String MAX_ATTEMPTS_ARG_LONG = "max-attempts";
+  private static final String MAX_ATTEMPTS_ARG_DESC = "Attempts made for each request sizing a URL resource, including the first. Failed connections, timeouts, 408, 429 and 5xx responses are retried. A download failing every attempt fails the run, while a metadata request falls back to the next way of finding the size. Defaults to 5.";
+  private static final String MAX_ATTEMPTS_DEFAULT = "5";
+  private static final String MAX_CONNECTIONS_PER_HOST_ARG_LONG = "max-connections-per-host";
+  private static final String MAX_CONNECTIONS_PER_HOST_ARG_DESC = "Maximum number of requests, and so connections, open to any one host at once. The blocking fetch engine also keeps up to this many idle connections per host for reuse. Defaults to 20.";
+  private static final String MAX_CONNECTIONS_PER_HOST_DEFAULT = "20";
+  private static final String MAX_IN_FLIGHT_ARG_LONG = "max-in-flight";
+  private static final String MAX_IN_FLIGHT_ARG_DESC = "Maximum number of validations in flight when using the `async` fetch engine or the `virtual` dispatcher. Defaults to 1000.";
+  private static final String MAX_IN_FLIGHT_DEFAULT = "1000";
+  private static final String MAX_JOBS_ARG_LONG = "max-jobs";
+  private static final String MAX_JOBS_ARG_DESC = "Maximum number of analyses run at the same time, such as the jobs of --serve. Further jobs wait for one to finish. Defaults to 4.";
+  private static final String MAX_JOBS_DEFAULT = "4";
+  private static final int MAX_PORT = 65535;
+  private static final double MAX_SAMPLE_RATE = 100;
+  private static final String METRICS_INTERVAL_ARG_LONG = "metrics-interval";
+  private static final String METRICS_INTERVAL_ARG_DESC = "Seconds between one line summaries of throughput, queue depths and per stage latencies printed to stderr. Defaults to 0, for none. Metrics are always exposed over JMX.";
+  private static final String METRICS_INTERVAL_DEFAULT = "0";
+  private static final String MIN_CONCURRENCY_ARG_LONG = "min-concurrency";
+  private static final String MIN_CONCURRENCY_ARG_DESC = "Lowest number of validations in flight when using --adaptive-concurrency. Defaults to 1.";
+  private static final String MIN_CONCURRENCY_DEFAULT = "1";
+  private static final String MMAP_ARG_LONG = "mmap";
+  private static final String MMAP_ARG_DESC = "Read the input file through memory mapping instead of read system calls.";
+  private static final String ORDERED_ARG_LONG = "ordered";
+  private static final String ORDERED_ARG_DESC = "Write output entries in input order instead of completion order.";
   private static final String OUTPUT_ARG = "o";
   private static final String OUTPUT_ARG_LONG = "out";
-  private static final String OUTPUT_ARG_DESC = "Output file path.";
+  private static final String OUTPUT_ARG_DESC = "Output file path, or `-` to write to standard output.";
+  private static final String OUTPUT_FORMAT_ARG_LONG = "output-format";
+  private static final String OUTPUT_FORMAT_ARG_DESC = "Format of the output: `json` writes one object keyed by path, `ndjson` writes one object per line, flushed as soon as the writer has nothing else to do, `smile` and `cbor` write the same object as `json` in a binary encoding. Defaults to `json`.";
+  private static final String PARSE_THREADS_ARG_LONG = "parse-threads";
+  private static final String PARSE_THREADS_ARG_DESC = "Number of threads parsing an input file. Above 1, the file is first split into chunks of whole objects which are parsed in parallel. URL input is always parsed on one thread. Defaults to 1.";
+  private static final String PARSE_THREADS_DEFAULT = "1";
+  private static final String PREVIOUS_OUTPUT_ARG_LONG = "previous-output";
+  private static final String PREVIOUS_OUTPUT_ARG_DESC = "File path of the output of a previous run. Entries whose url and size are unchanged since then are trusted or only checked with metadata requests, instead of being sized in full. It may be in any output format, gzipped or not, whatever the output format of this run.";
+  private static final String PREVIOUS_TRUST_AGE_ARG_LONG = "previous-trust-age";
+  private static final String PREVIOUS_TRUST_AGE_ARG_DESC = "Seconds for which the previous output is trusted. Unchanged entries of a previous output younger than this are not validated at all. Defaults to 0.";
+  private static final String PREVIOUS_TRUST_AGE_DEFAULT = "0";
+  private static final String READ_TIMEOUT_ARG_LONG = "read-timeout";
+  private static final String READ_TIMEOUT_ARG_DESC = "Seconds to wait for a response, and then between reads of its body, before the attempt fails. 0 waits forever. Defaults to 30.";
+  private static final String READ_TIMEOUT_DEFAULT = "30";
+  private static final String REORDER_BUFFER_SIZE_ARG_LONG = "reorder-buffer-size";
+  private static final String REORDER_BUFFER_SIZE_ARG_DESC = "Maximum number of entries read ahead of the oldest unwritten entry when using --ordered. Reading pauses while the buffer is full. Defaults to 10000.";
+  private static final String REORDER_BUFFER_SIZE_DEFAULT = "10000";
+  private static final String RETRY_BACKOFF_ARG_LONG = "retry-backoff";
+  private static final String RETRY_BACKOFF_ARG_DESC = "Milliseconds of backoff before the first retry of a failed request, doubled for every further retry up to 10 seconds. Each wait is drawn at random up to the backoff, and is at least the Retry-After of a 429 or 503. Defaults to 100.";
+  private static final String RETRY_BACKOFF_DEFAULT = "100";
+  private static final String SAMPLE_MIN_ARG_LONG = "sample-min";
+  private static final String SAMPLE_MIN_ARG_DESC = "Objects of each host checked in full when sampling, whatever the sample rate, so every host gets an estimate. Defaults to 30.";
+  private static final String SAMPLE_MIN_DEFAULT = "30";
+  private static final String SAMPLE_RATE_ARG_LONG = "sample-rate";
+  private static final String SAMPLE_RATE_ARG_DESC = "Percentage of the objects of each host whose sizes are checked in full, such as 1 or 0.5. The other objects are handled as --unsampled says, and an estimated mismatch rate with a 95% confidence interval is reported for each host. Cannot be combined with -s metadata. Defaults to 100, checking every object.";
+  private static final String SAMPLE_RATE_DEFAULT = "100";
+  private static final String SERVE_ARG_LONG = "serve";
+  private static final String SERVE_ARG_DESC = "Run as a daemon accepting jobs over HTTP on the given local port, or any free port if 0, instead of analyzing a single input. Each job names its own input and output, and jobs share the worker threads, connections and URL size caches. The other options are the defaults of every job, which may give its own, except for those configuring what the jobs share.";
+  private static final String SERVE_ROOT_ARG_LONG = "serve-root";
+  private static final String SERVE_ROOT_ARG_DESC = "Directory the input, output, journal and previous output of every job of --serve must be in. Defaults to the working directory.";
+  private static final String SERVE_ROOT_DEFAULT = ".";
+
+  private static final String SIZING_STRATEGY_ARG = "s";
+  private static final String SIZING_STRATEGY_ARG_LONG = "sizing-strategy";
+  private static final String SIZING_STRATEGY_ARG_DESC = "How URL resource sizes are found: `download` counts the body, `metadata` tries a HEAD request and then a single byte range request before downloading. Defaults to `download`.";
+  private static final String STANDARD_STREAM_ARG = "-";
+  private static final String UNSAMPLED_ARG_LONG = "unsampled";
+  private static final String UNSAMPLED_ARG_DESC = "How objects left out of the sample are handled when --sample-rate is below 100: `metadata` checks them with metadata requests only, `accept` trusts their reported size without a request. Defaults to `metadata`.";
   private static final String URL_ARG = "u";
   private static final String URL_ARG_LONG = "url";
   private static final String URL_ARG_DESC = "URL to array of JSON objects.";
-
+  private static final String URL_CACHE_SIZE_ARG = "c";
+  private static final String URL_CACHE_SIZE_ARG_LONG = "url-cache-size";
+  private static final String URL_CACHE_SIZE_ARG_DESC = "Maximum number of URL resource sizes kept in memory so repeated URLs are only sized once. 0 disables the cache. Defaults to 10000.";
+  private static final String URL_CACHE_SIZE_DEFAULT = "10000";
+  private static final String WORKERS_ARG = "w";
+  private static final String WORKERS_ARG_LONG = "workers";
+  private static final String WORKERS_ARG_DESC = "Number of worker threads used by the `fixed` dispatcher. Defaults to 10.";
+  private static final String WORKERS_DEFAULT = "10";
+  // options configuring the threads, connections and caches a server's jobs share
+  private static final List<String> SHARED_ARGS_LONG = List.of(
+      ADAPTIVE_CONCURRENCY_ARG_LONG,
+      CONNECT_TIMEOUT_ARG_LONG,
+      DIGEST_ARG_LONG,
+      DISK_CACHE_ARG_LONG,
+      DISK_CACHE_MAX_AGE_ARG_LONG,
+      DISPATCHER_ARG_LONG,
+      FETCH_ENGINE_ARG_LONG,
+      HEDGE_ARG_LONG,
+      IDLE_TIMEOUT_ARG_LONG,
+      MAX_ATTEMPTS_ARG_LONG,
+      MAX_CONNECTIONS_PER_HOST_ARG_LONG,
+      MAX_JOBS_ARG_LONG,
+      METRICS_INTERVAL_ARG_LONG,
+      MIN_CONCURRENCY_ARG_LONG,
+      READ_TIMEOUT_ARG_LONG,
+      RETRY_BACKOFF_ARG_LONG,
+      SERVE_ARG_LONG,
+      SERVE_ROOT_ARG_LONG,
+      URL_CACHE_SIZE_ARG_LONG
+  );
+  private boolean adaptiveConcurrency;
+  private String[] args;
+  private int connectTimeout;
+  private DigestAlgorithm digestAlgorithm;
+  private DispatcherMode dispatcherMode;
+  private File diskCacheFile;
+  private int diskCacheMaxAge;
+  private FetchEngine fetchEngine;
   private File file;
+  private boolean gzipOutput;
+  private boolean hedge;
+  private boolean help;
+  private int idleTimeout;
+  private InputFormat inputFormat;
+  private File journalFile;
+  private int maxAttempts;
+  private int maxConnectionsPerHost;
+  private int maxInFlight;
+  private int maxJobs;
+  private int metricsInterval;
+  private int minConcurrency;
+  private boolean mmap;
+  private boolean ordered;
   private File outputFile;
+  private OutputFormat outputFormat;
+  private int parseThreads;
+  private File previousOutputFile;
+  private int previousTrustAge;
+  private int readTimeout;
+  private int reorderBufferSize;
+  private int retryBackoff;
+  private int sampleMin;
+  private double sampleRate;
+  private boolean serve;
+  private int servePort;
+  private File serveRoot;
+  private SizingStrategy sizingStrategy;
+  private boolean stdin;
+  private boolean stdout;
+  private UnsampledValidation unsampledValidation;
   private URL url;
+  private int urlCacheSize;
+  private int workers;
 
+  /**
+   * Parses and validates the arguments.
+   *
+   * @param args Command line arguments
+   * @throws InvalidArgumentException If an argument is missing or invalid. The message is null
+   *                                  when help was asked for along with invalid arguments.
+   */
   public ArgParser(String[] args) {
     DefaultParser parser = new DefaultParser();
-    HelpFormatter helpFormatter = new HelpFormatter();
-    Options options = createOptions();
+    // jobs submitted to a server name their own input and output
+    Options options = createOptions(!hasServeArg(args));
 
     try {
       CommandLine commandLine = parser.parse(options, args, true);
 
       if (hasHelpArg(args)) {
-        // print usage
-        helpFormatter.printHelp(PROGRAM_NAME, options, true);
-        System.exit(0);
+        // the caller prints usage
+        help = true;
+        return;
       }
 
-      // get file path and do some validation on the file
-      if (commandLine.getOptionValue(FILE_ARG) != null) {
-        setFile(commandLine.getOptionValue(FILE_ARG));
+      this.args = args;
+      serve = commandLine.hasOption(SERVE_ARG_LONG);
+      if (serve) {
+        if (commandLine.hasOption(FILE_ARG)
+            || commandLine.hasOption(URL_ARG)
+            || commandLine.hasOption(OUTPUT_ARG)) {
+          throw new InvalidArgumentException(
+              ErrorCode.INVALID_ARGUMENTS,
+              ErrorMessages.INVALID_SERVE_ARGUMENTS
+          );
+        }
+        setServePort(commandLine.getOptionValue(SERVE_ARG_LONG));
+        setServeRoot(commandLine.getOptionValue(SERVE_ROOT_ARG_LONG, SERVE_ROOT_DEFAULT));
 
       } else {
-        // create the URL
-        setUrl(commandLine.getOptionValue(URL_ARG));
+        // get file path and do some validation on the file
+        if (commandLine.getOptionValue(FILE_ARG) != null) {
+          setFile(commandLine.getOptionValue(FILE_ARG));
+
+        } else {
+          // create the URL
+          setUrl(commandLine.getOptionValue(URL_ARG));
+        }
+
+        setOutputFile(commandLine.getOptionValue(OUTPUT_ARG));
       }
 
-      setOutputFile(commandLine.getOptionValue(OUTPUT_ARG));
+      setInputFormat(
+          commandLine.getOptionValue(INPUT_FORMAT_ARG_LONG, InputFormat.JSON.getName())
+      );
+      setOutputFormat(
+          commandLine.getOptionValue(OUTPUT_FORMAT_ARG_LONG, OutputFormat.JSON.getName())
+      );
+      setSizingStrategy(
+          commandLine.getOptionValue(SIZING_STRATEGY_ARG, SizingStrategy.DOWNLOAD.getName())
+      );
+      setDigestAlgorithm(commandLine.getOptionValue(DIGEST_ARG_LONG));
+      setDiskCacheFile(commandLine.getOptionValue(DISK_CACHE_ARG));
+      setJournalFile(commandLine.getOptionValue(JOURNAL_ARG));
+      setPreviousOutputFile(commandLine.getOptionValue(PREVIOUS_OUTPUT_ARG_LONG));
+      previousTrustAge = parseNonNegativeInt(
+          PREVIOUS_TRUST_AGE_ARG_LONG,
+          commandLine.getOptionValue(PREVIOUS_TRUST_AGE_ARG_LONG, PREVIOUS_TRUST_AGE_DEFAULT)
+      );
+      diskCacheMaxAge = parseNonNegativeInt(
+          DISK_CACHE_MAX_AGE_ARG_LONG,
+          commandLine.getOptionValue(DISK_CACHE_MAX_AGE_ARG_LONG, DISK_CACHE_MAX_AGE_DEFAULT)
+      );
+      setFetchEngine(
+          commandLine.getOptionValue(FETCH_ENGINE_ARG, FetchEngine.BLOCKING.getName())
+      );
+      setDispatcherMode(
+          commandLine.getOptionValue(DISPATCHER_ARG_LONG, DispatcherMode.FIXED.getName())
+      );
+      workers = parsePositiveInt(
+          WORKERS_ARG_LONG,
+          commandLine.getOptionValue(WORKERS_ARG, WORKERS_DEFAULT)
+      );
+      maxInFlight = parsePositiveInt(
+          MAX_IN_FLIGHT_ARG_LONG,
+          commandLine.getOptionValue(MAX_IN_FLIGHT_ARG_LONG, MAX_IN_FLIGHT_DEFAULT)
+      );
+      maxJobs = parsePositiveInt(
+          MAX_JOBS_ARG_LONG,
+          commandLine.getOptionValue(MAX_JOBS_ARG_LONG, MAX_JOBS_DEFAULT)
+      );
+      adaptiveConcurrency = commandLine.hasOption(ADAPTIVE_CONCURRENCY_ARG_LONG);
+      minConcurrency = parsePositiveInt(
+          MIN_CONCURRENCY_ARG_LONG,
+          commandLine.getOptionValue(MIN_CONCURRENCY_ARG_LONG, MIN_CONCURRENCY_DEFAULT)
+      );
+      metricsInterval = parseNonNegativeInt(
+          METRICS_INTERVAL_ARG_LONG,
+          commandLine.getOptionValue(METRICS_INTERVAL_ARG_LONG, METRICS_INTERVAL_DEFAULT)
+      );
+      mmap = commandLine.hasOption(MMAP_ARG_LONG);
+      gzipOutput = commandLine.hasOption(GZIP_OUTPUT_ARG_LONG);
+      parseThreads = parsePositiveInt(
+          PARSE_THREADS_ARG_LONG,
+          commandLine.getOptionValue(PARSE_THREADS_ARG_LONG, PARSE_THREADS_DEFAULT)
+      );
+      ordered = commandLine.hasOption(ORDERED_ARG_LONG);
+      reorderBufferSize = parsePositiveInt(
+          REORDER_BUFFER_SIZE_ARG_LONG,
+          commandLine.getOptionValue(REORDER_BUFFER_SIZE_ARG_LONG, REORDER_BUFFER_SIZE_DEFAULT)
+      );
+      maxConnectionsPerHost = parsePositiveInt(
+          MAX_CONNECTIONS_PER_HOST_ARG_LONG,
+          commandLine.getOptionValue(
+              MAX_CONNECTIONS_PER_HOST_ARG_LONG,
+              MAX_CONNECTIONS_PER_HOST_DEFAULT
+          )
+      );
+      idleTimeout = parseNonNegativeInt(
+          IDLE_TIMEOUT_ARG_LONG,
+          commandLine.getOptionValue(IDLE_TIMEOUT_ARG_LONG, IDLE_TIMEOUT_DEFAULT)
+      );
+      connectTimeout = parseNonNegativeInt(
+          CONNECT_TIMEOUT_ARG_LONG,
+          commandLine.getOptionValue(CONNECT_TIMEOUT_ARG_LONG, CONNECT_TIMEOUT_DEFAULT)
+      );
+      readTimeout = parseNonNegativeInt(
+          READ_TIMEOUT_ARG_LONG,
+          commandLine.getOptionValue(READ_TIMEOUT_ARG_LONG, READ_TIMEOUT_DEFAULT)
+      );
+      maxAttempts = parsePositiveInt(
+          MAX_ATTEMPTS_ARG_LONG,
+          commandLine.getOptionValue(MAX_ATTEMPTS_ARG_LONG, MAX_ATTEMPTS_DEFAULT)
+      );
+      retryBackoff = parseNonNegativeInt(
+          RETRY_BACKOFF_ARG_LONG,
+          commandLine.getOptionValue(RETRY_BACKOFF_ARG_LONG, RETRY_BACKOFF_DEFAULT)
+      );
+      hedge = commandLine.hasOption(HEDGE_ARG_LONG);
+      setSampleRate(commandLine.getOptionValue(SAMPLE_RATE_ARG_LONG, SAMPLE_RATE_DEFAULT));
+      sampleMin = parseNonNegativeInt(
+          SAMPLE_MIN_ARG_LONG,
+          commandLine.getOptionValue(SAMPLE_MIN_ARG_LONG, SAMPLE_MIN_DEFAULT)
+      );
+      setUnsampledValidation(
+          commandLine.getOptionValue(UNSAMPLED_ARG_LONG, UnsampledValidation.METADATA.getName())
+      );
+      // the sample is checked in full by downloading, which the metadata strategy never does
+      if (isSampling() && sizingStrategy == SizingStrategy.METADATA) {
+        throw new InvalidArgumentException(
+            ErrorCode.INVALID_ARGUMENTS,
+            ErrorMessages.INVALID_SAMPLING_STRATEGY
+        );
+      }
+      urlCacheSize = parseNonNegativeInt(
+          URL_CACHE_SIZE_ARG_LONG,
+          commandLine.getOptionValue(URL_CACHE_SIZE_ARG, URL_CACHE_SIZE_DEFAULT)
+      );
 
     } catch (ParseException parseException) {
-      if (!hasHelpArg(args)) {
-        System.err.println(parseException.getMessage());
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_ARGUMENTS,
+          hasHelpArg(args) ? null : parseException.getMessage()
+      );
+    }
+  }
+
+  /**
+   * Parses the arguments of a job submitted to a server: the given arguments, which name the input
+   * and output of the job, followed by the server's own arguments, less --serve. An option given by
+   * the job so takes precedence over the server's. A job cannot give the options configuring what
+   * the server's jobs share, read or write the standard streams, or name a file outside the
+   * server root.
+   *
+   * @param jobArgs Arguments of the job
+   * @return The parsed arguments of the job
+   * @throws InvalidArgumentException If an argument of the job is missing, invalid or not allowed
+   */
+  public ArgParser forJob(List<String> jobArgs) {
+    String[] jobArgArray = jobArgs.toArray(new String[0]);
+    CommandLine jobCommandLine;
+    try {
+      jobCommandLine = new DefaultParser().parse(createOptions(false), jobArgArray, true);
+    } catch (ParseException parseException) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_ARGUMENTS,
+          parseException.getMessage()
+      );
+    }
+
+    // anything left over would stop the server's own arguments from being parsed after it
+    if (jobCommandLine.hasOption(HELP_ARG) || !jobCommandLine.getArgList().isEmpty()) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_ARGUMENTS,
+          String.format(ErrorMessages.INVALID_JOB_ARGUMENTS, String.join(" ", jobArgs))
+      );
+    }
+    for (String sharedArg : SHARED_ARGS_LONG) {
+      if (jobCommandLine.hasOption(sharedArg)) {
+        throw new InvalidArgumentException(
+            ErrorCode.INVALID_ARGUMENTS,
+            String.format(ErrorMessages.INVALID_JOB_SHARED_OPTION, sharedArg)
+        );
       }
+    }
+    checkJobPath(jobCommandLine.getOptionValue(FILE_ARG));
+    checkJobPath(jobCommandLine.getOptionValue(OUTPUT_ARG));
+    checkJobPath(jobCommandLine.getOptionValue(JOURNAL_ARG));
+    checkJobPath(jobCommandLine.getOptionValue(PREVIOUS_OUTPUT_ARG_LONG));
+
+    List<String> combinedArgs = new ArrayList<>(jobArgs);
+    for (int i = 0; i < args.length; i++) {
+      if (("--" + SERVE_ARG_LONG).equals(args[i])) {
+        // skip the port as well
+        i++;
+      } else if (!args[i].startsWith("--" + SERVE_ARG_LONG + "=")) {
+        combinedArgs.add(args[i]);
+      }
+    }
+    return new ArgParser(combinedArgs.toArray(new String[0]));
+  }
 
-      // print usage
-      helpFormatter.printHelp(PROGRAM_NAME, options, true);
+  /**
+   * Checks that a path given by a job is neither a standard stream nor outside the server root,
+   * once relative parts and symbolic links are resolved.
+   *
+   * @param pathArg The path, or null if the job gave none
+   */
+  private void checkJobPath(String pathArg) {
+    if (pathArg == null) {
+      return;
+    }
+    if (STANDARD_STREAM_ARG.equals(pathArg)) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_ARGUMENTS,
+          ErrorMessages.INVALID_JOB_STANDARD_STREAM
+      );
+    }
 
-      System.exit(ErrorCode.INVALID_ARGUMENTS.getValue());
+    boolean inServeRoot;
+    try {
+      inServeRoot = new File(pathArg).getCanonicalFile().toPath().startsWith(serveRoot.toPath());
+    } catch (IOException ex) {
+      inServeRoot = false;
     }
+    if (!inServeRoot) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_ARGUMENTS,
+          String.format(ErrorMessages.INVALID_JOB_PATH, pathArg, serveRoot)
+      );
+    }
+  }
+
+  /**
+   * Starts building arguments in code rather than parsing them from the command line.
+   *
+   * @return An empty builder
+   */
+  public static Builder builder() {
+    return new Builder();
   }
 
-  private Options createOptions() {
+  /**
+   * Prints the usage of the command line to standard output.
+   */
+  public static void printHelp() {
+    new HelpFormatter().printHelp(PROGRAM_NAME, createOptions(true), true);
+  }
+
+  /**
+   * Creates the options of the command line.
+   *
+   * @param inputRequired Whether an input and an output must be given, which they need not be with
+   *                      --serve
+   * @return The options
+   */
+  private static Options createOptions(boolean inputRequired) {
     // create a group of mutually exclusive options
     OptionGroup optionGroup = new OptionGroup()
         .addOption(
@@ -90,7 +627,7 @@ public class ArgParser {
                 .build()
         );
 
-    optionGroup.setRequired(true);
+    optionGroup.setRequired(inputRequired);
 
     return new Options()
         .addOptionGroup(optionGroup)
@@ -99,7 +636,252 @@ public class ArgParser {
                 .longOpt(OUTPUT_ARG_LONG)
                 .desc(OUTPUT_ARG_DESC)
                 .hasArg()
-                .required()
+                .required(inputRequired)
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(INPUT_FORMAT_ARG_LONG)
+                .desc(INPUT_FORMAT_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(OUTPUT_FORMAT_ARG_LONG)
+                .desc(OUTPUT_FORMAT_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder(SIZING_STRATEGY_ARG)
+                .longOpt(SIZING_STRATEGY_ARG_LONG)
+                .desc(SIZING_STRATEGY_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder(URL_CACHE_SIZE_ARG)
+                .longOpt(URL_CACHE_SIZE_ARG_LONG)
+                .desc(URL_CACHE_SIZE_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder(JOURNAL_ARG)
+                .longOpt(JOURNAL_ARG_LONG)
+                .desc(JOURNAL_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(PREVIOUS_OUTPUT_ARG_LONG)
+                .desc(PREVIOUS_OUTPUT_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(PREVIOUS_TRUST_AGE_ARG_LONG)
+                .desc(PREVIOUS_TRUST_AGE_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(DIGEST_ARG_LONG)
+                .desc(DIGEST_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder(DISK_CACHE_ARG)
+                .longOpt(DISK_CACHE_ARG_LONG)
+                .desc(DISK_CACHE_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(DISK_CACHE_MAX_AGE_ARG_LONG)
+                .desc(DISK_CACHE_MAX_AGE_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder(FETCH_ENGINE_ARG)
+                .longOpt(FETCH_ENGINE_ARG_LONG)
+                .desc(FETCH_ENGINE_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(DISPATCHER_ARG_LONG)
+                .desc(DISPATCHER_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder(WORKERS_ARG)
+                .longOpt(WORKERS_ARG_LONG)
+                .desc(WORKERS_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(MAX_IN_FLIGHT_ARG_LONG)
+                .desc(MAX_IN_FLIGHT_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(ADAPTIVE_CONCURRENCY_ARG_LONG)
+                .desc(ADAPTIVE_CONCURRENCY_ARG_DESC)
+                .hasArg(false)
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(MIN_CONCURRENCY_ARG_LONG)
+                .desc(MIN_CONCURRENCY_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(METRICS_INTERVAL_ARG_LONG)
+                .desc(METRICS_INTERVAL_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(MAX_CONNECTIONS_PER_HOST_ARG_LONG)
+                .desc(MAX_CONNECTIONS_PER_HOST_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(IDLE_TIMEOUT_ARG_LONG)
+                .desc(IDLE_TIMEOUT_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(CONNECT_TIMEOUT_ARG_LONG)
+                .desc(CONNECT_TIMEOUT_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(READ_TIMEOUT_ARG_LONG)
+                .desc(READ_TIMEOUT_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(MAX_ATTEMPTS_ARG_LONG)
+                .desc(MAX_ATTEMPTS_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(RETRY_BACKOFF_ARG_LONG)
+                .desc(RETRY_BACKOFF_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(HEDGE_ARG_LONG)
+                .desc(HEDGE_ARG_DESC)
+                .hasArg(false)
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(SAMPLE_RATE_ARG_LONG)
+                .desc(SAMPLE_RATE_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(SAMPLE_MIN_ARG_LONG)
+                .desc(SAMPLE_MIN_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(UNSAMPLED_ARG_LONG)
+                .desc(UNSAMPLED_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(GZIP_OUTPUT_ARG_LONG)
+                .desc(GZIP_OUTPUT_ARG_DESC)
+                .hasArg(false)
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(MMAP_ARG_LONG)
+                .desc(MMAP_ARG_DESC)
+                .hasArg(false)
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(PARSE_THREADS_ARG_LONG)
+                .desc(PARSE_THREADS_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(ORDERED_ARG_LONG)
+                .desc(ORDERED_ARG_DESC)
+                .hasArg(false)
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(REORDER_BUFFER_SIZE_ARG_LONG)
+                .desc(REORDER_BUFFER_SIZE_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(SERVE_ARG_LONG)
+                .desc(SERVE_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(SERVE_ROOT_ARG_LONG)
+                .desc(SERVE_ROOT_ARG_DESC)
+                .hasArg()
+                .build()
+        )
+        .addOption(
+            Option.builder()
+                .longOpt(MAX_JOBS_ARG_LONG)
+                .desc(MAX_JOBS_ARG_DESC)
+                .hasArg()
                 .build()
         )
         .addOption(
@@ -110,18 +892,260 @@ public class ArgParser {
         );
   }
 
+  /**
+   * Returns the number of seconds to wait for a connection to open, where 0 means no limit.
+   *
+   * @return The connect timeout in seconds
+   */
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  /**
+   * Returns the digest computed over every downloaded resource body.
+   *
+   * @return The digest algorithm, or null if no digest is computed
+   */
+  public DigestAlgorithm getDigestAlgorithm() {
+    return digestAlgorithm;
+  }
+
+  public DispatcherMode getDispatcherMode() {
+    return dispatcherMode;
+  }
+
+  public File getDiskCacheFile() {
+    return diskCacheFile;
+  }
+
+  /**
+   * Returns the number of seconds a disk cache entry may go without being validated.
+   *
+   * @return The maximum age in seconds
+   */
+  public int getDiskCacheMaxAge() {
+    return diskCacheMaxAge;
+  }
+
+  public FetchEngine getFetchEngine() {
+    return fetchEngine;
+  }
+
+  /**
+   * Returns the input file, or null when reading from a URL or standard input.
+   *
+   * @return The input file
+   */
   public File getFile() {
     return file;
   }
 
+  /**
+   * Returns the number of seconds an idle connection is kept alive for reuse.
+   *
+   * @return The idle timeout in seconds
+   */
+  public int getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public InputFormat getInputFormat() {
+    return inputFormat;
+  }
+
+  public File getJournalFile() {
+    return journalFile;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public int getMaxJobs() {
+    return maxJobs;
+  }
+
+  public int getMetricsInterval() {
+    return metricsInterval;
+  }
+
+  public int getMinConcurrency() {
+    return minConcurrency;
+  }
+
+  /**
+   * Returns the output file, or null when writing to standard output.
+   *
+   * @return The output file
+   */
   public File getOutputFile() {
     return outputFile;
   }
 
+  public OutputFormat getOutputFormat() {
+    return outputFormat;
+  }
+
+  public int getParseThreads() {
+    return parseThreads;
+  }
+
+  /**
+   * Returns the maximum number of entries that may be read ahead of the oldest entry not yet
+   * written when output is ordered.
+   *
+   * @return The reorder buffer size
+   */
+  public File getPreviousOutputFile() {
+    return previousOutputFile;
+  }
+
+  public int getPreviousTrustAge() {
+    return previousTrustAge;
+  }
+
+  /**
+   * Returns the number of seconds to wait for a response, where 0 means no limit.
+   *
+   * @return The read timeout in seconds
+   */
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  public int getReorderBufferSize() {
+    return reorderBufferSize;
+  }
+
+  /**
+   * Returns the milliseconds of backoff before the first retry of a failed download.
+   *
+   * @return The base backoff in milliseconds
+   */
+  public int getRetryBackoff() {
+    return retryBackoff;
+  }
+
+  /**
+   * Returns the number of objects of each host always checked in full when sampling.
+   *
+   * @return The minimum sample of each host
+   */
+  public int getSampleMin() {
+    return sampleMin;
+  }
+
+  /**
+   * Returns the percentage of the objects of each host checked in full, where 100 means every
+   * object is.
+   *
+   * @return The sample rate in percent
+   */
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Returns the local port to accept jobs on with --serve, where 0 means any free port.
+   *
+   * @return The port
+   */
+  public int getServePort() {
+    return servePort;
+  }
+
+  /**
+   * Returns the directory the files of the jobs of --serve must be in, with its canonical path.
+   *
+   * @return The server root, or null without --serve
+   */
+  public File getServeRoot() {
+    return serveRoot;
+  }
+
+  public SizingStrategy getSizingStrategy() {
+    return sizingStrategy;
+  }
+
+  public UnsampledValidation getUnsampledValidation() {
+    return unsampledValidation;
+  }
+
   public URL getUrl() {
     return url;
   }
 
+  public int getUrlCacheSize() {
+    return urlCacheSize;
+  }
+
+  public int getWorkers() {
+    return workers;
+  }
+
+  public boolean isAdaptiveConcurrency() {
+    return adaptiveConcurrency;
+  }
+
+  public boolean isGzipOutput() {
+    return gzipOutput;
+  }
+
+  public boolean isHedge() {
+    return hedge;
+  }
+
+  /**
+   * Returns whether help was asked for, in which case no other argument has been read.
+   *
+   * @return Whether to print usage
+   */
+  public boolean isHelp() {
+    return help;
+  }
+
+  public boolean isMmap() {
+    return mmap;
+  }
+
+  public boolean isOrdered() {
+    return ordered;
+  }
+
+  /**
+   * Returns whether only a sample of the objects is checked in full.
+   *
+   * @return Whether the sample rate is below 100
+   */
+  public boolean isSampling() {
+    return sampleRate < MAX_SAMPLE_RATE;
+  }
+
+  /**
+   * Returns whether to run as a server accepting jobs, in which case there is no input or output.
+   *
+   * @return Whether to serve
+   */
+  public boolean isServe() {
+    return serve;
+  }
+
+  public boolean isStdin() {
+    return stdin;
+  }
+
+  public boolean isStdout() {
+    return stdout;
+  }
+
   private boolean hasHelpArg(String[] args) {
     if (args == null) {
       return false;
@@ -129,19 +1153,237 @@ public class ArgParser {
     return stream(args).anyMatch(arg -> "-h".equals(arg) || "--help".equals(arg));
   }
 
+  private boolean hasServeArg(String[] args) {
+    if (args == null) {
+      return false;
+    }
+    return stream(args).anyMatch(
+        arg -> ("--" + SERVE_ARG_LONG).equals(arg) || arg.startsWith("--" + SERVE_ARG_LONG + "=")
+    );
+  }
+
+  /**
+   * Parses the value of a numeric option, throwing an InvalidArgumentException if it is not a
+   * positive integer.
+   *
+   * @param optionName Long name of the option, used in the error message
+   * @param value      Value given for the option
+   * @return The parsed value
+   */
+  private int parsePositiveInt(String optionName, String value) {
+    int parsedValue = parseNonNegativeInt(optionName, value);
+    if (parsedValue == 0) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_NUMERIC_ARGUMENT,
+          String.format(ErrorMessages.INVALID_NUMERIC_ARGUMENT, value, optionName)
+      );
+    }
+    return parsedValue;
+  }
+
+  /**
+   * Parses the value of a numeric option, throwing an InvalidArgumentException if it is not a
+   * non-negative integer.
+   *
+   * @param optionName Long name of the option, used in the error message
+   * @param value      Value given for the option
+   * @return The parsed value
+   */
+  private int parseNonNegativeInt(String optionName, String value) {
+    try {
+      int parsedValue = Integer.parseInt(value);
+      if (parsedValue >= 0) {
+        return parsedValue;
+      }
+    } catch (NumberFormatException ex) {
+      // reported below
+    }
+
+    throw new InvalidArgumentException(
+        ErrorCode.INVALID_NUMERIC_ARGUMENT,
+        String.format(ErrorMessages.INVALID_NUMERIC_ARGUMENT, value, optionName)
+    );
+  }
+
+  private void setDigestAlgorithm(String digestArg) {
+    if (digestArg == null) {
+      return;
+    }
+
+    digestAlgorithm = DigestAlgorithm.fromName(digestArg);
+    if (digestAlgorithm == null) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_DIGEST_ALGORITHM,
+          String.format(ErrorMessages.INVALID_DIGEST_ALGORITHM, digestArg)
+      );
+    }
+  }
+
+  private void setDiskCacheFile(String diskCacheArg) {
+    if (diskCacheArg == null) {
+      return;
+    }
+
+    diskCacheFile = new File(diskCacheArg);
+    if (diskCacheFile.exists() && (!diskCacheFile.isFile() || !diskCacheFile.canWrite())) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_DISK_CACHE_FILE,
+          ErrorMessages.INVALID_DISK_CACHE_FILE
+      );
+    }
+  }
+
+  private void setDispatcherMode(String dispatcherModeArg) {
+    dispatcherMode = DispatcherMode.fromName(dispatcherModeArg);
+    if (dispatcherMode == null) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_DISPATCHER_MODE,
+          String.format(ErrorMessages.INVALID_DISPATCHER_MODE, dispatcherModeArg)
+      );
+    }
+  }
+
+  private void setFetchEngine(String fetchEngineArg) {
+    fetchEngine = FetchEngine.fromName(fetchEngineArg);
+    if (fetchEngine == null) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_FETCH_ENGINE,
+          String.format(ErrorMessages.INVALID_FETCH_ENGINE, fetchEngineArg)
+      );
+    }
+  }
+
   private void setFile(String fileArg) {
+    if (STANDARD_STREAM_ARG.equals(fileArg)) {
+      stdin = true;
+      return;
+    }
+
     file = new File(fileArg);
     if (!file.exists() || !file.isFile() || !file.canRead()) {
-      System.err.println(ErrorMessages.INVALID_FILE);
-      System.exit(ErrorCode.INVALID_FILE.getValue());
+      throw new InvalidArgumentException(ErrorCode.INVALID_FILE, ErrorMessages.INVALID_FILE);
+    }
+  }
+
+  private void setInputFormat(String inputFormatArg) {
+    inputFormat = InputFormat.fromName(inputFormatArg);
+    if (inputFormat == null) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_INPUT_FORMAT,
+          String.format(ErrorMessages.INVALID_INPUT_FORMAT, inputFormatArg)
+      );
+    }
+  }
+
+  private void setJournalFile(String journalArg) {
+    if (journalArg == null) {
+      return;
+    }
+
+    journalFile = new File(journalArg);
+    if (journalFile.exists() && (!journalFile.isFile() || !journalFile.canWrite())) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_JOURNAL_FILE,
+          ErrorMessages.INVALID_JOURNAL_FILE
+      );
+    }
+  }
+
+  private void setPreviousOutputFile(String previousOutputArg) {
+    if (previousOutputArg == null) {
+      return;
+    }
+
+    previousOutputFile = new File(previousOutputArg);
+    if (!previousOutputFile.isFile() || !previousOutputFile.canRead()) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_PREVIOUS_OUTPUT_FILE,
+          ErrorMessages.INVALID_PREVIOUS_OUTPUT_FILE
+      );
     }
   }
 
   private void setOutputFile(String outputArg) {
+    if (STANDARD_STREAM_ARG.equals(outputArg)) {
+      stdout = true;
+      return;
+    }
+
     outputFile = new File(outputArg);
     if (outputFile.exists() && !outputFile.canWrite()) {
-      System.err.println(ErrorMessages.INVALID_OUTPUT_FILE);
-      System.exit(ErrorCode.INVALID_OUTPUT_FILE.getValue());
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_OUTPUT_FILE,
+          ErrorMessages.INVALID_OUTPUT_FILE
+      );
+    }
+  }
+
+  private void setSampleRate(String sampleRateArg) {
+    try {
+      sampleRate = Double.parseDouble(sampleRateArg);
+    } catch (NumberFormatException ex) {
+      sampleRate = Double.NaN;
+    }
+    // written so that NaN is rejected too
+    if (!(sampleRate > 0 && sampleRate <= MAX_SAMPLE_RATE)) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_NUMERIC_ARGUMENT,
+          String.format(ErrorMessages.INVALID_SAMPLE_RATE, sampleRateArg)
+      );
+    }
+  }
+
+  private void setServePort(String servePortArg) {
+    servePort = parseNonNegativeInt(SERVE_ARG_LONG, servePortArg);
+    if (servePort > MAX_PORT) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_NUMERIC_ARGUMENT,
+          String.format(ErrorMessages.INVALID_NUMERIC_ARGUMENT, servePortArg, SERVE_ARG_LONG)
+      );
+    }
+  }
+
+  private void setServeRoot(String serveRootArg) {
+    try {
+      serveRoot = new File(serveRootArg).getCanonicalFile();
+    } catch (IOException ex) {
+      serveRoot = null;
+    }
+    if (serveRoot == null || !serveRoot.isDirectory()) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_SERVE_ROOT,
+          String.format(ErrorMessages.INVALID_SERVE_ROOT, serveRootArg)
+      );
+    }
+  }
+
+  private void setSizingStrategy(String sizingStrategyArg) {
+    sizingStrategy = SizingStrategy.fromName(sizingStrategyArg);
+    if (sizingStrategy == null) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_SIZING_STRATEGY,
+          String.format(ErrorMessages.INVALID_SIZING_STRATEGY, sizingStrategyArg)
+      );
+    }
+  }
+
+  private void setUnsampledValidation(String unsampledValidationArg) {
+    unsampledValidation = UnsampledValidation.fromName(unsampledValidationArg);
+    if (unsampledValidation == null) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_UNSAMPLED_VALIDATION,
+          String.format(ErrorMessages.INVALID_UNSAMPLED_VALIDATION, unsampledValidationArg)
+      );
+    }
+  }
+
+  private void setOutputFormat(String outputFormatArg) {
+    outputFormat = OutputFormat.fromName(outputFormatArg);
+    if (outputFormat == null) {
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_OUTPUT_FORMAT,
+          String.format(ErrorMessages.INVALID_OUTPUT_FORMAT, outputFormatArg)
+      );
     }
   }
 
@@ -149,8 +1391,10 @@ public class ArgParser {
     try {
       url = new URL(urlArg);
     } catch (MalformedURLException ex) {
-      System.err.println(String.format(ErrorMessages.INVALID_URL, urlArg));
-      System.exit(ErrorCode.INVALID_URL.getValue());
+      throw new InvalidArgumentException(
+          ErrorCode.INVALID_URL,
+          String.format(ErrorMessages.INVALID_URL, urlArg)
+      );
     }
   }
 }
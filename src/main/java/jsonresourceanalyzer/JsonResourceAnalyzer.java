@@ -1,37 +1,197 @@
 package jsonresourceanalyzer;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import jsonresourceanalyzer.concurrency.WorkDispatcher;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.AnalyzerException;
+import jsonresourceanalyzer.http.HostConnectionLimiter;
 import jsonresourceanalyzer.json.InputJsonObjectValidator;
-import jsonresourceanalyzer.json.JsonReader;
-import jsonresourceanalyzer.json.JsonWriter;
+import jsonresourceanalyzer.metrics.MetricsReporter;
+import jsonresourceanalyzer.server.AnalysisServer;
 
-public class JsonResourceAnalyzer {
+/**
+ * Validates the sizes of the url resources listed in JSON input, writing the corrected objects to
+ * the output. An analyzer is configured once by the arguments and can then run any number of
+ * analyses, which share its worker threads, connection pool and url size caches, so a single JVM
+ * can analyze one input after another without paying for startup and warm-up each time. Up to
+ * --max-jobs analyses run at the same time on the analyzer's own threads, and later ones wait in
+ * the order they were started. Analyses running together share the workers and the concurrency
+ * limit, so small inputs do not queue behind a large one.
+ *
+ * <p>An analysis that fails completes its future exceptionally with an AnalyzerException, which
+ * carries the ErrorCode the command line exits with. The command line itself is a single analysis
+ * of the input and output named by its arguments, or with --serve an AnalysisServer running jobs
+ * until the process is stopped.
+ */
+public class JsonResourceAnalyzer implements AutoCloseable {
+
+  private static final String ANALYSIS_THREAD_NAME = "json-resource-analyzer";
+
+  private final ArgParser argParser;
+  private final ExecutorService analysisThreads;
+  private final InputJsonObjectValidator inputJsonObjectValidator;
+  private final MetricsReporter metricsReporter;
+  private final WorkDispatcher workDispatcher;
+
+  /**
+   * Creates an analyzer, starting the threads and opening the caches its analyses share.
+   *
+   * @param argParser Parsed arguments, which configure every analysis
+   */
+  public JsonResourceAnalyzer(ArgParser argParser) {
+    this.argParser = argParser;
+    inputJsonObjectValidator = new InputJsonObjectValidator(argParser);
+    try {
+      workDispatcher = new WorkDispatcher(argParser);
+    } catch (AnalyzerException ex) {
+      inputJsonObjectValidator.close();
+      throw ex;
+    }
+    metricsReporter = new MetricsReporter(argParser);
+    AtomicInteger threadCount = new AtomicInteger();
+    analysisThreads = Executors.newFixedThreadPool(argParser.getMaxJobs(), runnable -> {
+      Thread thread =
+          new Thread(runnable, ANALYSIS_THREAD_NAME + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts analyzing the input named by the arguments, writing to the output they name.
+   *
+   * @return A future completed with the summary of the analysis once its output is complete
+   */
+  public CompletableFuture<AnalysisResult> analyze() {
+    return start(argParser, null, null, new AnalysisProgress());
+  }
+
+  /**
+   * Starts analyzing the input named by the given arguments, writing to the output they name. The
+   * options that configure the shared threads, connection pool and caches are the analyzer's own,
+   * whatever the given arguments say.
+   *
+   * @param jobArgParser     Parsed arguments of the analysis, such as those of ArgParser.forJob
+   * @param analysisProgress Updated as the analysis runs
+   * @return A future completed with the summary of the analysis once its output is complete
+   */
+  public CompletableFuture<AnalysisResult> analyze(
+      ArgParser jobArgParser,
+      AnalysisProgress analysisProgress
+  ) {
+    return start(jobArgParser, null, null, analysisProgress);
+  }
+
+  /**
+   * Starts analyzing the given input, writing to the given output, in place of the input and
+   * output named by the arguments. Every other argument applies as given, and both streams are
+   * closed once the analysis completes.
+   *
+   * @param inputStream  JSON input, which may be gzipped
+   * @param outputStream Output, written in the output format of the arguments
+   * @return A future completed with the summary of the analysis once its output is complete
+   */
+  public CompletableFuture<AnalysisResult> analyze(
+      InputStream inputStream,
+      OutputStream outputStream
+  ) {
+    return start(argParser, inputStream, outputStream, new AnalysisProgress());
+  }
+
+  private CompletableFuture<AnalysisResult> start(
+      ArgParser analysisArgParser,
+      InputStream inputStream,
+      OutputStream outputStream,
+      AnalysisProgress analysisProgress
+  ) {
+    Analysis analysis = new Analysis(
+        analysisArgParser,
+        inputStream,
+        outputStream,
+        argParser.getFetchEngine(),
+        inputJsonObjectValidator,
+        workDispatcher,
+        analysisProgress
+    );
+    return CompletableFuture.supplyAsync(analysis::run, analysisThreads);
+  }
+
+  /**
+   * Waits for the analyses already started to complete, then stops the shared threads and writes
+   * out the disk cache.
+   */
+  @Override
+  public void close() {
+    analysisThreads.shutdown();
+    try {
+      analysisThreads.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    workDispatcher.close();
+    try {
+      inputJsonObjectValidator.close();
+    } finally {
+      metricsReporter.close();
+    }
+  }
 
   public static void main(String[] args) {
-    final ArgParser argParser = new ArgParser(args);
-
-    final JsonWriter jsonWriter = new JsonWriter(argParser);
-    final WorkDispatcher workDispatcher = new WorkDispatcher();
-
-    final JsonReader jsonReader = new JsonReader(argParser);
-    jsonReader
-        .onReadStart(jsonWriter::startFile)
-        .onObjectRead(inputJsonObject -> {
-          // perform validation and writing to the output json stream on a worker thread
-          workDispatcher.dispatch(() -> {
-            // validate the json object
-            InputJsonObjectValidator.validate(inputJsonObject);
-
-            // write the json object to the output stream
-            jsonWriter.writeObject(inputJsonObject);
-          });
-        })
-        .onReadComplete(() -> {
-          // wait for all worker threads in the worker pool finish before closing writing the end of the output JSON
-          // and closing the output stream
-          workDispatcher.waitForWorkToComplete();
-          jsonWriter.endFile();
-        })
-        .readFile();
+    try {
+      final ArgParser argParser = new ArgParser(args);
+      if (argParser.isHelp()) {
+        ArgParser.printHelp();
+        return;
+      }
+
+      // the JDK's keep-alive caches are configured for the whole process, before any connection
+      HostConnectionLimiter.configureKeepAlive(
+          argParser.getMaxConnectionsPerHost(),
+          argParser.getIdleTimeout()
+      );
+
+      if (argParser.isServe()) {
+        // the server's threads keep the process running until it is stopped
+        AnalysisServer analysisServer = new AnalysisServer(argParser);
+        Runtime.getRuntime().addShutdownHook(new Thread(analysisServer::close));
+        return;
+      }
+
+      try (JsonResourceAnalyzer jsonResourceAnalyzer = new JsonResourceAnalyzer(argParser)) {
+        jsonResourceAnalyzer.analyze().join();
+      }
+
+    } catch (CompletionException ex) {
+      if (!(ex.getCause() instanceof AnalyzerException)) {
+        throw ex;
+      }
+      exit((AnalyzerException) ex.getCause());
+
+    } catch (AnalyzerException ex) {
+      exit(ex);
+    }
+  }
+
+  /**
+   * Reports the failure and exits with its code. Invalid arguments are followed by the usage.
+   *
+   * @param analyzerException The failure
+   */
+  private static void exit(AnalyzerException analyzerException) {
+    if (analyzerException.getMessage() != null) {
+      System.err.println(analyzerException.getMessage());
+    }
+    if (analyzerException.getErrorCode() == ErrorCode.INVALID_ARGUMENTS) {
+      ArgParser.printHelp();
+    }
+    System.exit(analyzerException.getErrorCode().getValue());
   }
 }
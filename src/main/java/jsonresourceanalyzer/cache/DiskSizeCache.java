@@ -0,0 +1,242 @@
+package jsonresourceanalyzer.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.StorageException;
+import jsonresourceanalyzer.enums.SizeSource;
+import jsonresourceanalyzer.http.ResourceSize;
+import jsonresourceanalyzer.io.ChecksummedLog;
+
+/**
+ * Persistent cache of URL resource sizes and their validators, kept in an append-only log so that
+ * later runs can revalidate resources with conditional requests instead of downloading them again.
+ * The log is compacted when it is closed if it holds many superseded or expired records.
+ *
+ * <p>A record keeps the digest of a downloaded body along with its algorithm, so a revalidated
+ * size can carry the digest on. Digests of another algorithm than the one this run asks for are
+ * dropped when the cache is loaded, and records written before digests were kept have none.
+ */
+public class DiskSizeCache {
+
+  private static final int COMPACTION_RATIO = 2;
+
+  // indexes of the fields of a log record
+  private static final int URL_FIELD = 0;
+  private static final int SIZE_FIELD = 1;
+  private static final int ETAG_FIELD = 2;
+  private static final int LAST_MODIFIED_FIELD = 3;
+  private static final int STORED_AT_FIELD = 4;
+  private static final int DIGEST_ALGORITHM_FIELD = 5;
+  private static final int DIGEST_FIELD = 6;
+  private static final int FIELD_COUNT = 7;
+  // records written before digests were kept end with the time they were stored
+  private static final int UNDIGESTED_FIELD_COUNT = 5;
+
+  private static class Entry {
+
+    private final ResourceSize resourceSize;
+    private final long storedAt;
+
+    private Entry(ResourceSize resourceSize, long storedAt) {
+      this.resourceSize = resourceSize;
+      this.storedAt = storedAt;
+    }
+  }
+
+  private final DigestAlgorithm digestAlgorithm;
+  private final File file;
+  private final long maxAgeMillis;
+  private final Map<String, Entry> entries;
+  private final ChecksummedLog log;
+  private final LongAdder revalidations = new LongAdder();
+  private int recordCount;
+  private boolean hasDroppedRecords;
+
+  /**
+   * Loads the cache from the file, dropping damaged records and records older than the maximum
+   * age.
+   *
+   * @param file            The cache file
+   * @param maxAgeMillis    How long an entry may go without being validated before it is dropped
+   * @param digestAlgorithm The algorithm of the digests computed this run, or null for none
+   */
+  public DiskSizeCache(File file, long maxAgeMillis, DigestAlgorithm digestAlgorithm) {
+    this.file = file;
+    this.maxAgeMillis = maxAgeMillis;
+    this.digestAlgorithm = digestAlgorithm;
+    entries = new ConcurrentHashMap<>();
+
+    long now = System.currentTimeMillis();
+    ChecksummedLog openedLog = null;
+    try {
+      int damagedRecords = ChecksummedLog.read(file, fields -> {
+        recordCount++;
+        Entry entry = decode(fields);
+        if (entry == null || now - entry.storedAt > maxAgeMillis) {
+          hasDroppedRecords = true;
+          return;
+        }
+        entries.put(fields[URL_FIELD], entry);
+      });
+      hasDroppedRecords |= damagedRecords > 0;
+
+      openedLog = new ChecksummedLog(file);
+    } catch (IOException ex) {
+      throw new StorageException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_ACCESSING_DISK_CACHE,
+          String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_ACCESSING_DISK_CACHE, ex.getMessage())
+      );
+    }
+    log = openedLog;
+  }
+
+  /**
+   * Closes the cache, compacting the log if more than half of its records are superseded or any
+   * were dropped.
+   */
+  public void close() {
+    try {
+      log.close();
+
+      if (hasDroppedRecords || recordCount > entries.size() * COMPACTION_RATIO) {
+        List<String[]> records = new ArrayList<>(entries.size());
+        entries.forEach((key, entry) -> records.add(encode(key, entry)));
+        ChecksummedLog.rewrite(file, records);
+      }
+    } catch (IOException ex) {
+      throw new StorageException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_ACCESSING_DISK_CACHE,
+          String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_ACCESSING_DISK_CACHE, ex.getMessage())
+      );
+    }
+  }
+
+  /**
+   * Returns the cached size of the URL resource, or null if it is not cached or has expired. When
+   * the body is to be downloaded and a digest is asked for, a size without a digest of the asked
+   * algorithm is not returned either, since revalidating it would leave the object without one.
+   * The body is then downloaded again, as the checkpoint journal does for such entries.
+   *
+   * @param url        The URL of the resource
+   * @param downloaded Whether the resource is sized by downloading its body
+   * @return The cached size
+   */
+  public ResourceSize get(URL url, boolean downloaded) {
+    Entry entry = entries.get(UrlSizeCache.normalize(url));
+    if (entry == null || System.currentTimeMillis() - entry.storedAt > maxAgeMillis) {
+      return null;
+    }
+    if (downloaded && digestAlgorithm != null && entry.resourceSize.getDigest() == null) {
+      return null;
+    }
+    return entry.resourceSize;
+  }
+
+  public int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of cached sizes the server confirmed were still current.
+   *
+   * @return The revalidation count
+   */
+  public long getRevalidationCount() {
+    return revalidations.sum();
+  }
+
+  /**
+   * Stores the size of the URL resource. Sizes without validators cannot be revalidated and are
+   * not stored.
+   *
+   * @param url          The URL of the resource
+   * @param resourceSize The size of the resource
+   */
+  public void put(URL url, ResourceSize resourceSize) {
+    if (resourceSize.getSizeSource() == SizeSource.REVALIDATED) {
+      revalidations.increment();
+    }
+    if (!resourceSize.hasValidators()) {
+      return;
+    }
+
+    String key = UrlSizeCache.normalize(url);
+    Entry entry = new Entry(resourceSize, System.currentTimeMillis());
+    entries.put(key, entry);
+
+    try {
+      synchronized (this) {
+        log.append(encode(key, entry));
+        log.flush();
+        recordCount++;
+      }
+    } catch (IOException ex) {
+      throw new StorageException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_ACCESSING_DISK_CACHE,
+          String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_ACCESSING_DISK_CACHE, ex.getMessage())
+      );
+    }
+  }
+
+  /**
+   * Decodes the fields of a log record into an entry, keeping its digest only if it was computed
+   * with the algorithm this run asks for.
+   *
+   * @param fields The fields of the record
+   * @return The entry, or null if the record is malformed
+   */
+  private Entry decode(String[] fields) {
+    if ((fields.length != FIELD_COUNT && fields.length != UNDIGESTED_FIELD_COUNT)
+        || fields[URL_FIELD] == null) {
+      return null;
+    }
+
+    String digest = fields.length == FIELD_COUNT
+        && digestAlgorithm != null
+        && digestAlgorithm.getName().equals(fields[DIGEST_ALGORITHM_FIELD])
+        ? fields[DIGEST_FIELD]
+        : null;
+    try {
+      ResourceSize resourceSize = new ResourceSize(
+          Integer.parseInt(fields[SIZE_FIELD]),
+          SizeSource.REVALIDATED,
+          fields[ETAG_FIELD],
+          fields[LAST_MODIFIED_FIELD],
+          digest
+      );
+      return new Entry(resourceSize, Long.parseLong(fields[STORED_AT_FIELD]));
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Encodes an entry as the fields of a log record.
+   *
+   * @param key   The normalized URL of the entry
+   * @param entry The entry
+   * @return The fields of the record
+   */
+  private String[] encode(String key, Entry entry) {
+    String[] fields = new String[FIELD_COUNT];
+    fields[URL_FIELD] = key;
+    fields[SIZE_FIELD] = Integer.toString(entry.resourceSize.getSize());
+    fields[ETAG_FIELD] = entry.resourceSize.getETag();
+    fields[LAST_MODIFIED_FIELD] = entry.resourceSize.getLastModified();
+    fields[STORED_AT_FIELD] = Long.toString(entry.storedAt);
+    if (entry.resourceSize.getDigest() != null) {
+      fields[DIGEST_ALGORITHM_FIELD] = digestAlgorithm.getName();
+      fields[DIGEST_FIELD] = entry.resourceSize.getDigest();
+    }
+    return fields;
+  }
+}
@@ -0,0 +1,190 @@
+package jsonresourceanalyzer.cache;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import jsonresourceanalyzer.http.ResourceSize;
+
+/**
+ * In-process cache of URL resource sizes keyed by normalized URL. Concurrent lookups of a URL that
+ * is already being sized wait on that lookup instead of starting their own. Completed entries are
+ * evicted in least recently used order once the cache is full.
+ */
+public class UrlSizeCache {
+
+  private final int maxEntries;
+  private final Map<String, ResourceSize> entries;
+  private final ConcurrentHashMap<String, CompletableFuture<ResourceSize>> inFlight;
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder merged = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public UrlSizeCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+    inFlight = new ConcurrentHashMap<>();
+
+    // an access ordered LinkedHashMap keeps the least recently used entry at its head
+    entries = new LinkedHashMap<String, ResourceSize>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ResourceSize> eldest) {
+        if (size() > UrlSizeCache.this.maxEntries) {
+          evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached size of the URL resource, sizing it with the loader if it is not cached. If
+   * another thread is already sizing the same URL, the calling thread waits for its result.
+   *
+   * @param url    The URL of the resource
+   * @param loader Sizes the resource when it is not cached
+   * @return The size of the resource
+   */
+  public ResourceSize get(URL url, Function<URL, ResourceSize> loader) {
+    return getAsync(url, uncachedUrl -> CompletableFuture.completedFuture(loader.apply(uncachedUrl)))
+        .join();
+  }
+
+  /**
+   * Returns a future of the cached size of the URL resource, starting the loader if it is not
+   * cached. If the same URL is already being sized, the future of that lookup is returned instead
+   * of starting another.
+   *
+   * @param url    The URL of the resource
+   * @param loader Starts sizing the resource when it is not cached
+   * @return A future completed with the size of the resource
+   */
+  public CompletableFuture<ResourceSize> getAsync(
+      URL url,
+      Function<URL, CompletableFuture<ResourceSize>> loader
+  ) {
+    String key = normalize(url);
+
+    ResourceSize resourceSize = getEntry(key);
+    if (resourceSize != null) {
+      hits.increment();
+      return CompletableFuture.completedFuture(resourceSize);
+    }
+
+    CompletableFuture<ResourceSize> future = new CompletableFuture<>();
+    CompletableFuture<ResourceSize> existingFuture = inFlight.putIfAbsent(key, future);
+    if (existingFuture != null) {
+      merged.increment();
+      return existingFuture;
+    }
+
+    // the entry may have been added between checking the cache and registering this lookup
+    resourceSize = getEntry(key);
+    if (resourceSize != null) {
+      hits.increment();
+      inFlight.remove(key);
+      future.complete(resourceSize);
+      return future;
+    }
+
+    misses.increment();
+    CompletableFuture<ResourceSize> loaded;
+    try {
+      loaded = loader.apply(url);
+    } catch (RuntimeException ex) {
+      inFlight.remove(key);
+      future.completeExceptionally(ex);
+      throw ex;
+    }
+
+    loaded.whenComplete((loadedSize, throwable) -> {
+      if (throwable != null) {
+        inFlight.remove(key);
+        future.completeExceptionally(throwable);
+        return;
+      }
+
+      putEntry(key, loadedSize);
+      inFlight.remove(key);
+      future.complete(loadedSize);
+    });
+    return future;
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of lookups that waited on a lookup of the same URL that was in flight.
+   *
+   * @return The merged lookup count
+   */
+  public long getMergedCount() {
+    return merged.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  private synchronized ResourceSize getEntry(String key) {
+    return entries.get(key);
+  }
+
+  private synchronized void putEntry(String key, ResourceSize resourceSize) {
+    entries.put(key, resourceSize);
+  }
+
+  /**
+   * Normalizes the URL so that equivalent spellings share a cache entry. The scheme and host are
+   * lower cased, default ports and fragments are dropped, and an empty path becomes "/".
+   *
+   * @param url The URL to normalize
+   * @return The normalized URL
+   */
+  static String normalize(URL url) {
+    URI uri;
+    try {
+      uri = url.toURI();
+    } catch (URISyntaxException ex) {
+      return url.toString();
+    }
+
+    if (uri.isOpaque() || uri.getScheme() == null) {
+      return uri.toString();
+    }
+
+    String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+    String host = uri.getHost() == null ? null : uri.getHost().toLowerCase(Locale.ROOT);
+    int port = uri.getPort() == url.getDefaultPort() ? -1 : uri.getPort();
+    String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+
+    StringBuilder normalized = new StringBuilder(scheme).append("://");
+    if (uri.getRawUserInfo() != null) {
+      normalized.append(uri.getRawUserInfo()).append('@');
+    }
+    if (host != null) {
+      normalized.append(host);
+    }
+    if (port != -1) {
+      normalized.append(':').append(port);
+    }
+    normalized.append(path);
+    if (uri.getRawQuery() != null) {
+      normalized.append('?').append(uri.getRawQuery());
+    }
+    return normalized.toString();
+  }
+}
@@ -0,0 +1,144 @@
+package jsonresourceanalyzer.concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, lock-free queue for many producer threads and a single consumer thread. Each slot
+ * carries a sequence number that tells producers when it is free and the consumer when it is
+ * filled, so producers only contend on claiming the tail index and never on the consumer. Producers
+ * that find the queue full sleep until the consumer has drained part of it, rather than competing
+ * with it for the CPU.
+ *
+ * @param <E> Type of element held in the queue
+ */
+public class BoundedMpscQueue<E> {
+
+  private static final long FULL_WAIT_MILLIS = 1;
+
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final int mask;
+  private final int signalMask;
+
+  // only used by producers waiting for room, so the uncontended path never takes the lock
+  private final ReentrantLock fullLock = new ReentrantLock();
+  private final Condition notFull = fullLock.newCondition();
+  private final AtomicInteger waitingProducers = new AtomicInteger();
+
+  // only read and written by the consumer thread
+  private long head;
+
+  /**
+   * Creates a queue holding at least the given number of elements, rounded up to a power of two.
+   *
+   * @param capacity Minimum number of elements the queue can hold
+   */
+  public BoundedMpscQueue(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    elements = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    mask = size - 1;
+    // wake waiting producers each time a quarter of the queue has been drained
+    signalMask = Math.max(1, size / 4) - 1;
+  }
+
+  /**
+   * Adds the element to the tail of the queue if there is room. May be called from any thread.
+   *
+   * @param element The element to add
+   * @return Whether the element was added
+   */
+  public boolean offer(E element) {
+    while (true) {
+      long position = tail.get();
+      int index = (int) position & mask;
+      long available = sequences.get(index) - position;
+
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          // publishes the element to the consumer
+          sequences.set(index, position + 1);
+          return true;
+        }
+
+      } else if (available < 0) {
+        // the consumer has not yet taken the element a full lap behind
+        return false;
+      }
+      // otherwise another producer claimed this position first, so retry with the new tail
+    }
+  }
+
+  /**
+   * Adds the element to the tail of the queue, waiting for the consumer to make room if it is
+   * full. May be called from any thread.
+   *
+   * @param element The element to add
+   */
+  public void put(E element) throws InterruptedException {
+    if (offer(element)) {
+      return;
+    }
+
+    waitingProducers.incrementAndGet();
+    fullLock.lock();
+    try {
+      while (!offer(element)) {
+        // the timeout covers a signal sent between the failed offer and the wait
+        notFull.await(FULL_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    } finally {
+      fullLock.unlock();
+      waitingProducers.decrementAndGet();
+    }
+  }
+
+  /**
+   * Removes the element at the head of the queue. Must only be called from the consumer thread.
+   *
+   * @return The element, or null if the queue is empty
+   */
+  public E poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+
+    E element = elements.get(index);
+    elements.lazySet(index, null);
+    // hands the slot back to producers for the next lap
+    sequences.set(index, head + mask + 1);
+    head++;
+
+    if ((head & signalMask) == 0 && waitingProducers.get() > 0) {
+      fullLock.lock();
+      try {
+        notFull.signalAll();
+      } finally {
+        fullLock.unlock();
+      }
+    }
+    return element;
+  }
+
+  /**
+   * Returns whether the queue currently holds no elements. Must only be called from the consumer
+   * thread.
+   *
+   * @return Whether the queue is empty
+   */
+  public boolean isEmpty() {
+    return sequences.get((int) head & mask) != head + 1;
+  }
+}
@@ -0,0 +1,182 @@
+package jsonresourceanalyzer.concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import jsonresourceanalyzer.constants.InfoMessages;
+
+/**
+ * Limits the number of tasks in flight and tracks exactly how many are outstanding. The limit is
+ * either fixed or adjusted after every task in an additive increase, multiplicative decrease
+ * (AIMD) style. Task latency is averaged over a short and a long horizon. The limit grows while the
+ * short term latency stays near the long term latency, and shrinks when the short term latency
+ * rises well above it, which means tasks have started to queue, or when a task fails.
+ */
+class ConcurrencyLimit {
+
+  private static final double BACKOFF_RATIO = 0.9;
+  private static final double LATENCY_TOLERANCE = 1.5;
+  private static final double LONG_TERM_SMOOTHING = 0.01;
+  private static final double SHORT_TERM_SMOOTHING = 0.1;
+  private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final boolean adaptive;
+  private final int minLimit;
+  private final int maxLimit;
+  private final long startNanos = System.nanoTime();
+
+  private double limit;
+  private int inFlight;
+  private boolean slowStart = true;
+  private double longTermLatencyNanos = -1;
+  private double shortTermLatencyNanos = -1;
+  private long lastDecreaseNanos;
+  private int loggedLimit;
+  private long lastLogNanos;
+
+  /**
+   * Creates a limit that never changes.
+   *
+   * @param limit The maximum number of tasks in flight
+   */
+  ConcurrencyLimit(int limit) {
+    this(limit, limit, limit, false);
+  }
+
+  /**
+   * Creates a limit that adapts to observed task latency and errors within the given bounds.
+   *
+   * @param initialLimit The limit to start with
+   * @param minLimit     The lowest the limit may fall to
+   * @param maxLimit     The highest the limit may rise to
+   */
+  ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+    this(initialLimit, minLimit, maxLimit, true);
+  }
+
+  private ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, boolean adaptive) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.adaptive = adaptive;
+    limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    loggedLimit = (int) limit;
+
+    // System.nanoTime() has an arbitrary origin, so the times compared with it start from the
+    // creation of the limit. No task can complete less than its own latency after that, so the
+    // first sign of congestion may back off at once, and the first change is logged at once.
+    lastDecreaseNanos = startNanos;
+    lastLogNanos = startNanos - LOG_INTERVAL_NANOS;
+  }
+
+  /**
+   * Blocks until a task may start under the current limit and counts it as in flight.
+   */
+  void acquire() throws InterruptedException {
+    lock.lock();
+    try {
+      while (inFlight >= (int) limit) {
+        changed.await();
+      }
+      inFlight++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the current limit.
+   *
+   * @return The maximum number of tasks currently allowed in flight
+   */
+  int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records that a task has completed and adjusts the limit if it is adaptive.
+   *
+   * @param latencyNanos How long the task took
+   * @param failed       True if the task failed
+   */
+  void release(long latencyNanos, boolean failed) {
+    lock.lock();
+    try {
+      inFlight--;
+      if (adaptive) {
+        adjust(latencyNanos, failed);
+      }
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adjusts the limit after a task completes. Must be called while holding the lock.
+   *
+   * @param latencyNanos How long the task took
+   * @param failed       True if the task failed
+   */
+  private void adjust(long latencyNanos, boolean failed) {
+    // exponentially weighted moving averages keep single slow tasks from causing a back off, and
+    // let the long term baseline follow an origin that becomes permanently slower or faster
+    if (longTermLatencyNanos < 0) {
+      longTermLatencyNanos = latencyNanos;
+      shortTermLatencyNanos = latencyNanos;
+    }
+    longTermLatencyNanos += LONG_TERM_SMOOTHING * (latencyNanos - longTermLatencyNanos);
+    shortTermLatencyNanos += SHORT_TERM_SMOOTHING * (latencyNanos - shortTermLatencyNanos);
+
+    long now = System.nanoTime();
+    if (failed || shortTermLatencyNanos > longTermLatencyNanos * LATENCY_TOLERANCE) {
+      // tasks that started before the last decrease reflect the old limit, so back off at most
+      // once per task duration
+      if (now - lastDecreaseNanos > shortTermLatencyNanos) {
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        lastDecreaseNanos = now;
+      }
+      slowStart = false;
+    } else if (slowStart) {
+      // grow by one per completed task, doubling the limit every round trip, until the first
+      // sign of congestion
+      limit = Math.min(maxLimit, limit + 1);
+    } else {
+      // grow by about one per round trip
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+
+    logLimitChange(now);
+  }
+
+  /**
+   * Logs the limit if it has changed, at most once per log interval. Must be called while holding
+   * the lock.
+   *
+   * @param now The current time from System.nanoTime()
+   */
+  private void logLimitChange(long now) {
+    if ((int) limit == loggedLimit || now - lastLogNanos < LOG_INTERVAL_NANOS) {
+      return;
+    }
+
+    System.err.println(
+        String.format(
+            InfoMessages.CONCURRENCY_LIMIT_CHANGED,
+            TimeUnit.NANOSECONDS.toMillis(now - startNanos),
+            loggedLimit,
+            (int) limit,
+            shortTermLatencyNanos / 1_000_000,
+            longTermLatencyNanos / 1_000_000
+        )
+    );
+    loggedLimit = (int) limit;
+    lastLogNanos = now;
+  }
+}
@@ -1,10 +1,20 @@
 package jsonresourceanalyzer.concurrency;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.constants.InfoMessages;
+import jsonresourceanalyzer.enums.DispatcherMode;
 import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.AnalyzerException;
+import jsonresourceanalyzer.exceptions.InvalidArgumentException;
 import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.enums.FetchEngine;
+import jsonresourceanalyzer.metrics.Metrics;
 
 public class WorkDispatcher {
 
@@ -13,36 +23,170 @@ public class WorkDispatcher {
     void doOperation() throws InterruptedException;
   }
 
-  private static final int MAX_WORKERS = 10;
+  private static final int INITIAL_ADAPTIVE_LIMIT = 10;
+  private static final String VIRTUAL_THREAD_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
 
-  private final ThreadPoolExecutor threadPool;
-  private final Semaphore semaphore;
+  private final ExecutorService threadPool;
+  private final ConcurrencyLimit concurrencyLimit;
+  private final boolean adaptive;
+  private final boolean limitedByWorkers;
 
-  public WorkDispatcher() {
-    threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(MAX_WORKERS);
-    threadPool.prestartAllCoreThreads();
-    semaphore = new Semaphore(MAX_WORKERS);
+  public WorkDispatcher(ArgParser argParser) {
+    int maxConcurrency;
+    if (argParser.getFetchEngine() == FetchEngine.ASYNC) {
+      // asynchronous work runs on the fetch engine's threads, so only the number of tasks in flight
+      // needs to be bounded
+      threadPool = null;
+      maxConcurrency = argParser.getMaxInFlight();
+      limitedByWorkers = false;
+    } else if (argParser.getDispatcherMode() == DispatcherMode.VIRTUAL) {
+      // virtual threads are cheap to block, so the limit alone bounds the work in flight
+      threadPool = newVirtualThreadPerTaskExecutor();
+      maxConcurrency = argParser.getMaxInFlight();
+      limitedByWorkers = false;
+    } else {
+      ThreadPoolExecutor fixedThreadPool =
+          (ThreadPoolExecutor) Executors.newFixedThreadPool(argParser.getWorkers());
+      fixedThreadPool.prestartAllCoreThreads();
+      threadPool = fixedThreadPool;
+      maxConcurrency = argParser.getWorkers();
+      limitedByWorkers = true;
+    }
+
+    adaptive = argParser.isAdaptiveConcurrency();
+    if (adaptive) {
+      int minConcurrency = Math.min(argParser.getMinConcurrency(), maxConcurrency);
+      concurrencyLimit =
+          new ConcurrencyLimit(INITIAL_ADAPTIVE_LIMIT, minConcurrency, maxConcurrency);
+    } else {
+      concurrencyLimit = new ConcurrencyLimit(maxConcurrency);
+    }
   }
 
   /**
    * Dispatches work to the worker thread pool. If no available workers in the pool, the calling
-   * thread will block until one becomes available.
+   * thread will block until one becomes available. If the pool rejects the work, such as after it
+   * was closed, the exception is rethrown to the calling thread.
    *
-   * @param runnable Runnable work to be dispatched.
+   * @param runnable  Runnable work to be dispatched.
+   * @param workGroup The group the work is counted in until it completes
    */
-  public void dispatch(Runnable runnable) {
-    // wait for a thread to become available before assigning work to the thread pool
-    doOperation(semaphore::acquire);
+  public void dispatch(Runnable runnable, WorkGroup workGroup) {
+    // wait for the group and then the concurrency limit to allow more work before assigning work
+    // to the thread pool
+    acquire(workGroup);
+
+    long dispatched = System.nanoTime();
+    try {
+      threadPool.submit(() -> {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+          runnable.run();
+          failed = false;
+        } finally {
+          // after the work is complete release its place under the concurrency limit to allow
+          // more work to be dispatched to the thread pool
+          Metrics.IN_FLIGHT.decrement();
+          concurrencyLimit.release(System.nanoTime() - start, failed);
+          workGroup.done();
+        }
+      });
+    } catch (RuntimeException | Error ex) {
+      // the pool rejected the work, so give back what was taken for it or the group would never
+      // become idle
+      Metrics.IN_FLIGHT.decrement();
+      concurrencyLimit.release(System.nanoTime() - dispatched, true);
+      workGroup.done();
+      throw ex;
+    }
+  }
 
-    threadPool.submit(() -> {
-      runnable.run();
+  /**
+   * Starts asynchronous work on the calling thread. If the maximum number of tasks are already in
+   * flight, the calling thread will block until one of them completes. An exception thrown while
+   * starting the work is rethrown to the calling thread.
+   *
+   * @param work      Starts the work and returns a future completed when it is done.
+   * @param workGroup The group the work is counted in until it completes
+   */
+  public void dispatchAsync(Supplier<CompletableFuture<?>> work, WorkGroup workGroup) {
+    // wait for a task to complete before starting more work
+    acquire(workGroup);
 
-      // after the work is complete release the semaphore lock to allow more work to be
-      // dispatched to the thread pool
-      semaphore.release();
+    long start = System.nanoTime();
+    CompletableFuture<?> future;
+    try {
+      future = work.get();
+    } catch (RuntimeException | Error ex) {
+      Metrics.IN_FLIGHT.decrement();
+      concurrencyLimit.release(System.nanoTime() - start, true);
+      workGroup.done();
+      throw ex;
+    }
+
+    // release the place under the concurrency limit once the work is complete to allow more work
+    // to be started
+    future.whenComplete((result, throwable) -> {
+      Metrics.IN_FLIGHT.decrement();
+      concurrencyLimit.release(System.nanoTime() - start, throwable != null);
+      workGroup.done();
     });
   }
 
+  /**
+   * Creates a group for the work of one analysis, holding no more of its work at once than the
+   * --workers or --max-in-flight of the analysis, whichever bounds this dispatcher. An analysis
+   * can so run with less concurrency than the dispatcher, but never with more.
+   *
+   * @param argParser Parsed arguments of the analysis
+   * @return The group
+   */
+  public WorkGroup createWorkGroup(ArgParser argParser) {
+    return new WorkGroup(
+        limitedByWorkers ? argParser.getWorkers() : argParser.getMaxInFlight()
+    );
+  }
+
+  /**
+   * Waits for the group and then the concurrency limit to admit more work, recording how long that
+   * took. The work is counted in the group once this returns.
+   */
+  private void acquire(WorkGroup workGroup) {
+    long start = System.nanoTime();
+    doOperation(workGroup::add);
+    try {
+      doOperation(concurrencyLimit::acquire);
+    } catch (RuntimeException ex) {
+      workGroup.done();
+      throw ex;
+    }
+    Metrics.DISPATCH_WAIT_LATENCY.recordSince(start);
+    Metrics.IN_FLIGHT.increment();
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for each task. The factory is looked up
+   * reflectively so the project still builds for Java versions without virtual threads.
+   *
+   * @return The virtual thread executor
+   */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod(VIRTUAL_THREAD_EXECUTOR_FACTORY)
+          .invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+      throw new InvalidArgumentException(
+          ErrorCode.VIRTUAL_THREADS_UNSUPPORTED,
+          String.format(
+              ErrorMessages.VIRTUAL_THREADS_UNSUPPORTED,
+              System.getProperty("java.version")
+          )
+      );
+    }
+  }
+
   /**
    * Helper function to wrap an operation in a try/catch to easily reuse error handling.
    *
@@ -52,21 +196,36 @@ public class WorkDispatcher {
     try {
       threadOperationWrapper.doOperation();
     } catch (InterruptedException ex) {
-      System.err.println(ErrorMessages.WORK_DISPATCHER_THREAD_INTERRUPTED);
-      System.exit(ErrorCode.WORK_DISPATCHER_THREAD_INTERRUPTED.getValue());
+      throw new AnalyzerException(
+          ErrorCode.WORK_DISPATCHER_THREAD_INTERRUPTED,
+          ErrorMessages.WORK_DISPATCHER_THREAD_INTERRUPTED
+      );
     }
   }
 
   /**
-   * Causes calling thread to wait until the thread pool has finished. This will shutdown the thread
-   * pool.
+   * Causes calling thread to wait until all work dispatched in the group has finished. Work of
+   * other groups is not waited for, and the thread pool is kept so more work can be dispatched
+   * afterwards.
+   *
+   * @param workGroup The group to wait for
    */
-  public void waitForWorkToComplete() {
-    while (threadPool.getActiveCount() > 0) {
-      doOperation(() -> Thread.sleep(100));
+  public void waitForWorkToComplete(WorkGroup workGroup) {
+    doOperation(workGroup::awaitIdle);
+
+    if (adaptive) {
+      System.err.println(
+          String.format(InfoMessages.CONCURRENCY_LIMIT_FINAL, concurrencyLimit.getLimit())
+      );
     }
+  }
 
-    // terminate the thread pool
-    threadPool.shutdown();
+  /**
+   * Shuts down the thread pool once the work already dispatched has finished.
+   */
+  public void close() {
+    if (threadPool != null) {
+      threadPool.shutdown();
+    }
   }
 }
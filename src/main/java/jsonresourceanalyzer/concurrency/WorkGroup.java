@@ -0,0 +1,76 @@
+package jsonresourceanalyzer.concurrency;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the work one caller has dispatched that has not yet completed. Several callers can share a
+ * WorkDispatcher, each waiting only for its own group of work. A group may also hold less work at
+ * once than the dispatcher allows, so one caller can be given a lower concurrency than the others.
+ */
+public class WorkGroup {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition idle = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final int maxPending;
+
+  private int pending;
+
+  /**
+   * Creates a group limited only by the dispatcher.
+   */
+  public WorkGroup() {
+    this(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates a group holding at most the given amount of uncompleted work.
+   *
+   * @param maxPending Maximum number of pieces of work of the group in flight at once
+   */
+  public WorkGroup(int maxPending) {
+    this.maxPending = maxPending;
+  }
+
+  /**
+   * Counts a new piece of work, blocking while the group already holds as much as it may.
+   */
+  void add() throws InterruptedException {
+    lock.lock();
+    try {
+      while (pending >= maxPending) {
+        notFull.await();
+      }
+      pending++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void done() {
+    lock.lock();
+    try {
+      if (--pending == 0) {
+        idle.signalAll();
+      }
+      notFull.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Blocks until every piece of work in the group has completed.
+   */
+  void awaitIdle() throws InterruptedException {
+    lock.lock();
+    try {
+      while (pending > 0) {
+        idle.await();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
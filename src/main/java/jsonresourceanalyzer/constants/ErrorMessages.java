@@ -7,22 +7,50 @@ public class ErrorMessages {
   }
 
   public static final String ACTUAL_RESOURCE_SIZE_AND_REPORTED_SIZE_DIFFER_WARNING = "WARNING: The actual URL=(%s) resource size=(%d) and claimed resource size=(%d) differ";
+  public static final String INVALID_DIGEST_ALGORITHM = "The digest algorithm=(%s) is invalid. Expected `crc32c`, `sha256` or `xxhash64`.";
+  public static final String INVALID_DISK_CACHE_FILE = "The given disk cache file path is not a file or cannot be written to.";
+  public static final String INVALID_DISPATCHER_MODE = "The dispatcher mode=(%s) is invalid. Expected `fixed` or `virtual`.";
+  public static final String INVALID_FETCH_ENGINE = "The fetch engine=(%s) is invalid. Expected `blocking` or `async`.";
   public static final String INVALID_FILE = "The given file path either does not exist, is not a file, or cannot be read.";
+  public static final String INVALID_INPUT_FORMAT = "The input format=(%s) is invalid. Expected `json` or `ndjson`.";
   public static final String INVALID_INPUT_STREAM = "An error occurred when opening the input stream. Caused by: \n%s";
+  public static final String INVALID_JOURNAL_FILE = "The given journal file path is not a file or cannot be written to.";
   public static final String INVALID_JSON = "Invalid JSON was encountered while parsing the input stream.";
   public static final String INVALID_JSON_FORMAT_NOT_ARRAY = "The JSON provided must be an array of JSON objects.";
   public static final String INVALID_JSON_INPUT_OBJECT = "Invalid JSON input object encountered. Fields `path`, `size`, and `url` must all be non-null.";
   public static final String INVALID_JSON_PATH_VALUE_DUPLICATES = "Invalid JSON was encountered while parsing the input stream. Duplicate path values exist for path=(%s).";
+  public static final String INVALID_JOB_ARGUMENTS = "The job arguments=(%s) cannot ask for help or hold anything but options.";
+  public static final String INVALID_JOB_PATH = "The path=(%s) of the job is outside the server root=(%s).";
+  public static final String INVALID_JOB_REQUEST = "The job must be a JSON object with a string `file` or `url`, a string `out`, and optionally an array of strings `args`.";
+  public static final String INVALID_JOB_SHARED_OPTION = "The option=(%s) configures what every job of the server shares, and can only be given when the server is started.";
+  public static final String INVALID_JOB_STANDARD_STREAM = "A job cannot read from standard input or write to standard output.";
+  public static final String INVALID_NUMERIC_ARGUMENT = "The value=(%s) given for option=(%s) is out of range or not an integer.";
   public static final String INVALID_OUTPUT_FILE = "The given output file path cannot be written to.";
+  public static final String INVALID_OUTPUT_FORMAT = "The output format=(%s) is invalid. Expected `json`, `ndjson`, `smile` or `cbor`.";
+  public static final String INVALID_PREVIOUS_OUTPUT_FILE = "The given previous output file path either does not exist, is not a file, or cannot be read.";
+  public static final String INVALID_SERVE_ARGUMENTS = "An input or output cannot be given with --serve. Each job names its own when it is submitted.";
+  public static final String INVALID_SERVE_ROOT = "The server root=(%s) is not a directory.";
+  public static final String INVALID_SAMPLING_STRATEGY = "A --sample-rate below 100 cannot be combined with the metadata sizing strategy, since the sample is checked in full by downloading.";
+  public static final String INVALID_SIZING_STRATEGY = "The sizing strategy=(%s) is invalid. Expected `download` or `metadata`.";
+  public static final String INVALID_SAMPLE_RATE = "The sample rate=(%s) is invalid. Expected a percentage above 0 and at most 100.";
+  public static final String INVALID_UNSAMPLED_VALIDATION = "The unsampled validation=(%s) is invalid. Expected `metadata` or `accept`.";
   public static final String INVALID_URL = "The URL=(%s) is invalid.";
+  public static final String METRICS_REGISTRATION_FAILED_WARNING = "WARNING: The metrics could not be exposed over JMX. Caused by:\n%s";
+  public static final String SERVER_JOB_NOT_FOUND = "No job was found at=(%s).";
+  public static final String SERVER_METHOD_NOT_ALLOWED = "The method=(%s) is not allowed at=(%s).";
+  public static final String SERVER_UNSUPPORTED_MEDIA_TYPE = "The content type=(%s) is not supported. Jobs must be submitted as `application/json`.";
+  public static final String UNKNOWN_ERROR_WHILE_ACCESSING_DISK_CACHE = "An unknown error occurred while accessing the disk cache. Caused by:\n%s";
+  public static final String UNKNOWN_ERROR_WHILE_ACCESSING_JOURNAL = "An unknown error occurred while accessing the checkpoint journal. Caused by:\n%s";
   public static final String UNKNOWN_ERROR_WHILE_CLOSING_INPUT_STREAM = "An unknown error occurred while closing the input JSON stream. Caused by:\n%s";
   public static final String UNKNOWN_ERROR_WHILE_CLOSING_OUTPUT_STREAM = "An unknown error occurred while closing the output JSON stream. Caused by:\n%s";
-  public static final String UNKNOWN_ERROR_WHILE_CLOSING_URL_INPUT_STREAM = "An unknown error occurred while closing the output JSON stream. Caused by:\n%s";
   public static final String UNKNOWN_ERROR_WHILE_OPENING_OUTPUT_FILE = "An unknown error occurred while opening the output file for writing. Caused by:\n%s";
   public static final String UNKNOWN_ERROR_WHILE_OPENING_URL_STREAM = "An unknown error occurred while opening the stream for URL=(%s). Caused by:\n%s";
   public static final String UNKNOWN_ERROR_WHILE_PARSING = "An unknown error occurred while parsing the JSON. Caused by:\n%s";
+  public static final String UNKNOWN_ERROR_WHILE_READING_PREVIOUS_OUTPUT = "An unknown error occurred while reading the previous output. Caused by:\n%s";
   public static final String UNKNOWN_ERROR_WHILE_READING_URL_STREAM = "An unknown error occurred while reading the URL=(%s) stream. Caused by:\n%s";
+  public static final String UNKNOWN_ERROR_WHILE_STARTING_SERVER = "An unknown error occurred while starting the server on port=(%d). Caused by:\n%s";
   public static final String UNKNOWN_ERROR_WHILE_WRITING = "An unknown error occurred while writing the JSON to the output file. Caused by:\n%s";
   public static final String UNKNOWN_PROPERTY = "Unknown property encountered: %s";
+  public static final String VIRTUAL_THREADS_UNSUPPORTED = "The `virtual` dispatcher requires Java 21 or newer, but this is Java %s.";
   public static final String WORK_DISPATCHER_THREAD_INTERRUPTED = "Fatal error: Worker dispatcher thread was interrupted.";
 }
@@ -0,0 +1,22 @@
+package jsonresourceanalyzer.constants;
+
+public class InfoMessages {
+
+  private InfoMessages() throws InstantiationException {
+    throw new InstantiationException("This class should not be instantiated.");
+  }
+
+  public static final String CHECKPOINT_JOURNAL_STATISTICS = "INFO: Checkpoint journal restored=(%d) recorded=(%d) commits=(%d)";
+  public static final String CONCURRENCY_LIMIT_CHANGED = "INFO: Concurrency limit at=(%dms) changed from=(%d) to=(%d) short term latency=(%.1fms) long term latency=(%.1fms)";
+  public static final String CONCURRENCY_LIMIT_FINAL = "INFO: Concurrency limit final=(%d)";
+  public static final String DISK_SIZE_CACHE_STATISTICS = "INFO: Disk size cache entries=(%d) revalidated=(%d)";
+  public static final String HOST_CONNECTION_STATISTICS = "INFO: Host connections leases=(%d) lease waits=(%d)";
+  public static final String METRICS_SUMMARY = "INFO: Metrics at=(%.0fs) read=(%d) written=(%d) objects/s=(%.0f) MB/s=(%.2f) in flight=(%d) write queue=(%d) retries=(%d) hedged=(%d) p99 parse=(%.3fms) dispatch wait=(%.2fms) connect=(%.2fms) sizing=(%.2fms) write wait=(%.3fms)";
+  public static final String PREVIOUS_OUTPUT_STATISTICS = "INFO: Previous output entries=(%d) trusted=(%d) unchanged=(%d) changed=(%d)";
+  public static final String REQUEST_STATISTICS = "INFO: Requests sent=(%d) retried=(%d) retry rate=(%.2f%%) hedged=(%d) hedge rate=(%.2f%%) hedges won=(%d)";
+  public static final String SAMPLED_HOST_STATISTICS = "INFO: Sampled host=(%s) objects=(%d) sampled=(%d) mismatches=(%d) estimated mismatch rate=(%.2f%%) 95%% confidence interval=(%.2f%% - %.2f%%) unsampled corrections=(%d)";
+  public static final String SAMPLING_STATISTICS = "INFO: Sampling objects=(%d) sampled=(%d) sample rate=(%.2f%%) unsampled=(%s) objects=(%d)";
+  public static final String SERVER_JOB_FINISHED = "INFO: Job id=(%d) input=(%s) output=(%s) status=(%s) objects=(%d) duration=(%dms)";
+  public static final String SERVER_LISTENING = "INFO: Accepting jobs at=(http://%s:%d/jobs)";
+  public static final String URL_SIZE_CACHE_STATISTICS = "INFO: URL size cache hits=(%d) merged=(%d) misses=(%d) evictions=(%d)";
+}
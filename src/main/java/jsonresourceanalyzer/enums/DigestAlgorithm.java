@@ -0,0 +1,51 @@
+package jsonresourceanalyzer.enums;
+
+/**
+ * Digests that can be computed over a URL resource body while its bytes are counted.
+ */
+public enum DigestAlgorithm {
+  /**
+   * The CRC-32C checksum, computed with hardware instructions where the platform has them.
+   */
+  CRC32C("crc32c"),
+
+  /**
+   * The SHA-256 cryptographic hash.
+   */
+  SHA256("sha256"),
+
+  /**
+   * The 64 bit xxHash, with a seed of 0.
+   */
+  XXHASH64("xxhash64");
+
+  private final String name;
+
+  DigestAlgorithm(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Looks up the algorithm with the given command line name.
+   *
+   * @param name Command line name of the algorithm
+   * @return The matching algorithm, or null if there is none
+   */
+  public static DigestAlgorithm fromName(String name) {
+    for (DigestAlgorithm digestAlgorithm : values()) {
+      if (digestAlgorithm.name.equals(name)) {
+        return digestAlgorithm;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the command line name, which is also the name of the output field holding the digest.
+   *
+   * @return The name
+   */
+  public String getName() {
+    return name;
+  }
+}
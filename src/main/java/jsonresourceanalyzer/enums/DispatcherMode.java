@@ -0,0 +1,41 @@
+package jsonresourceanalyzer.enums;
+
+/**
+ * Modes the work dispatcher can run blocking validations in.
+ */
+public enum DispatcherMode {
+  /**
+   * Validations run on a fixed pool of platform threads.
+   */
+  FIXED("fixed"),
+
+  /**
+   * Each validation runs on its own virtual thread. Requires Java 21 or newer.
+   */
+  VIRTUAL("virtual");
+
+  private final String name;
+
+  DispatcherMode(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Looks up the mode with the given command line name.
+   *
+   * @param name Command line name of the mode
+   * @return The matching mode, or null if there is none
+   */
+  public static DispatcherMode fromName(String name) {
+    for (DispatcherMode dispatcherMode : values()) {
+      if (dispatcherMode.name.equals(name)) {
+        return dispatcherMode;
+      }
+    }
+    return null;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
@@ -19,7 +19,24 @@ public enum ErrorCode {
     UNKNOWN_ERROR_WHILE_READING_URL_STREAM,
     UNKNOWN_ERROR_WHILE_WRITING,
     UNKNOWN_PROPERTY,
-    WORK_DISPATCHER_THREAD_INTERRUPTED;
+    WORK_DISPATCHER_THREAD_INTERRUPTED,
+    INVALID_SIZING_STRATEGY,
+    INVALID_NUMERIC_ARGUMENT,
+    INVALID_DISK_CACHE_FILE,
+    UNKNOWN_ERROR_WHILE_ACCESSING_DISK_CACHE,
+    INVALID_FETCH_ENGINE,
+    INVALID_DISPATCHER_MODE,
+    VIRTUAL_THREADS_UNSUPPORTED,
+    INVALID_INPUT_FORMAT,
+    INVALID_OUTPUT_FORMAT,
+    INVALID_JOURNAL_FILE,
+    UNKNOWN_ERROR_WHILE_ACCESSING_JOURNAL,
+    INVALID_PREVIOUS_OUTPUT_FILE,
+    UNKNOWN_ERROR_WHILE_READING_PREVIOUS_OUTPUT,
+    UNKNOWN_ERROR_WHILE_STARTING_SERVER,
+    INVALID_UNSAMPLED_VALIDATION,
+    INVALID_DIGEST_ALGORITHM,
+    INVALID_SERVE_ROOT;
 
     public int getValue() {
         return ordinal() + 1;
@@ -0,0 +1,42 @@
+package jsonresourceanalyzer.enums;
+
+/**
+ * Engines that can be used to fetch URL resources.
+ */
+public enum FetchEngine {
+  /**
+   * Each worker thread blocks on its request until the resource has been sized.
+   */
+  BLOCKING("blocking"),
+
+  /**
+   * Requests are sent asynchronously and sized on completion callbacks, so a few threads can keep
+   * many requests in flight.
+   */
+  ASYNC("async");
+
+  private final String name;
+
+  FetchEngine(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Looks up the engine with the given command line name.
+   *
+   * @param name Command line name of the engine
+   * @return The matching engine, or null if there is none
+   */
+  public static FetchEngine fromName(String name) {
+    for (FetchEngine fetchEngine : values()) {
+      if (fetchEngine.name.equals(name)) {
+        return fetchEngine;
+      }
+    }
+    return null;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
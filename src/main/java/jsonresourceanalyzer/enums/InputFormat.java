@@ -0,0 +1,41 @@
+package jsonresourceanalyzer.enums;
+
+/**
+ * Formats the input manifest can be read in.
+ */
+public enum InputFormat {
+  /**
+   * An array of JSON objects.
+   */
+  JSON("json"),
+
+  /**
+   * Newline delimited JSON: one JSON object per line, with no enclosing array.
+   */
+  NDJSON("ndjson");
+
+  private final String name;
+
+  InputFormat(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Looks up the format with the given command line name.
+   *
+   * @param name Command line name of the format
+   * @return The matching format, or null if there is none
+   */
+  public static InputFormat fromName(String name) {
+    for (InputFormat format : values()) {
+      if (format.name.equals(name)) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
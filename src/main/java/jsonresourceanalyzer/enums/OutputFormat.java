@@ -0,0 +1,51 @@
+package jsonresourceanalyzer.enums;
+
+/**
+ * Formats the output can be written in.
+ */
+public enum OutputFormat {
+  /**
+   * One JSON object with a property for every path.
+   */
+  JSON("json"),
+
+  /**
+   * Newline delimited JSON: one JSON object per line, each holding its path, written as soon as it is ready.
+   */
+  NDJSON("ndjson"),
+
+  /**
+   * The same object as `json`, encoded as binary Smile.
+   */
+  SMILE("smile"),
+
+  /**
+   * The same object as `json`, encoded as binary CBOR.
+   */
+  CBOR("cbor");
+
+  private final String name;
+
+  OutputFormat(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Looks up the format with the given command line name.
+   *
+   * @param name Command line name of the format
+   * @return The matching format, or null if there is none
+   */
+  public static OutputFormat fromName(String name) {
+    for (OutputFormat format : values()) {
+      if (format.name.equals(name)) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
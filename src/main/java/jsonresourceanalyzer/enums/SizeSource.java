@@ -0,0 +1,64 @@
+package jsonresourceanalyzer.enums;
+
+/**
+ * Describes how the size of a URL resource was determined.
+ */
+public enum SizeSource {
+  /**
+   * The Content-Length header of a HEAD response.
+   */
+  CONTENT_LENGTH("content-length"),
+
+  /**
+   * The complete length of a Content-Range header returned for a single byte range request.
+   */
+  CONTENT_RANGE("content-range"),
+
+  /**
+   * Counting the bytes of the downloaded resource body.
+   */
+  BODY("body"),
+
+  /**
+   * A previously found size that the server confirmed is still current with a 304 Not Modified
+   * response to a conditional request.
+   */
+  REVALIDATED("revalidated"),
+
+  /**
+   * The size recorded in the output of a previous run, trusted without a request because the url
+   * and size are unchanged and the previous output is younger than the trust age.
+   */
+  PREVIOUS_OUTPUT("previous-output"),
+
+  /**
+   * The size given in the input, accepted without a request because the object was left out of
+   * the validation sample.
+   */
+  REPORTED("reported");
+
+  private final String name;
+
+  SizeSource(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Looks up the size source with the given name.
+   *
+   * @param name Name of the size source
+   * @return The matching size source, or null if there is none
+   */
+  public static SizeSource fromName(String name) {
+    for (SizeSource sizeSource : values()) {
+      if (sizeSource.name.equals(name)) {
+        return sizeSource;
+      }
+    }
+    return null;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,42 @@
+package jsonresourceanalyzer.enums;
+
+/**
+ * Strategies that can be used to determine the size of a URL resource.
+ */
+public enum SizingStrategy {
+  /**
+   * Always download the resource body and count its bytes.
+   */
+  DOWNLOAD("download"),
+
+  /**
+   * Ask the server for the size using a HEAD request, then a single byte range request, and only
+   * download the body if neither reports a size.
+   */
+  METADATA("metadata");
+
+  private final String name;
+
+  SizingStrategy(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Looks up the strategy with the given command line name.
+   *
+   * @param name Command line name of the strategy
+   * @return The matching strategy, or null if there is none
+   */
+  public static SizingStrategy fromName(String name) {
+    for (SizingStrategy sizingStrategy : values()) {
+      if (sizingStrategy.name.equals(name)) {
+        return sizingStrategy;
+      }
+    }
+    return null;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
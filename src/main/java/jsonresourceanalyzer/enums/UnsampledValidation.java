@@ -0,0 +1,41 @@
+package jsonresourceanalyzer.enums;
+
+/**
+ * How objects left out of the validation sample are handled when sampling.
+ */
+public enum UnsampledValidation {
+  /**
+   * Check the size with metadata requests only, as if the sizing strategy were `metadata`.
+   */
+  METADATA("metadata"),
+
+  /**
+   * Accept the reported size without sending any request.
+   */
+  ACCEPT("accept");
+
+  private final String name;
+
+  UnsampledValidation(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Looks up the handling with the given command line name.
+   *
+   * @param name Command line name of the handling
+   * @return The matching handling, or null if there is none
+   */
+  public static UnsampledValidation fromName(String name) {
+    for (UnsampledValidation unsampledValidation : values()) {
+      if (unsampledValidation.name.equals(name)) {
+        return unsampledValidation;
+      }
+    }
+    return null;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
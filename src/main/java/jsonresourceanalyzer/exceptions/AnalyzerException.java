@@ -0,0 +1,28 @@
+package jsonresourceanalyzer.exceptions;
+
+import jsonresourceanalyzer.enums.ErrorCode;
+
+/**
+ * Base of the exceptions an analysis fails with. Each carries the ErrorCode the command line exits
+ * with, and a message formatted from ErrorMessages that is printed as is.
+ */
+public class AnalyzerException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final ErrorCode errorCode;
+
+  public AnalyzerException(ErrorCode errorCode, String message) {
+    super(message);
+    this.errorCode = errorCode;
+  }
+
+  public AnalyzerException(ErrorCode errorCode, String message, Throwable cause) {
+    super(message, cause);
+    this.errorCode = errorCode;
+  }
+
+  public ErrorCode getErrorCode() {
+    return errorCode;
+  }
+}
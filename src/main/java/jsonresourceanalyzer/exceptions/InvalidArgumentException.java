@@ -0,0 +1,19 @@
+package jsonresourceanalyzer.exceptions;
+
+import jsonresourceanalyzer.enums.ErrorCode;
+
+/**
+ * Thrown when the arguments are invalid, or name files that cannot be used.
+ */
+public class InvalidArgumentException extends AnalyzerException {
+
+  private static final long serialVersionUID = 1L;
+
+  public InvalidArgumentException(ErrorCode errorCode, String message) {
+    super(errorCode, message);
+  }
+
+  public InvalidArgumentException(ErrorCode errorCode, String message, Throwable cause) {
+    super(errorCode, message, cause);
+  }
+}
@@ -0,0 +1,19 @@
+package jsonresourceanalyzer.exceptions;
+
+import jsonresourceanalyzer.enums.ErrorCode;
+
+/**
+ * Thrown when the input cannot be read, is not valid JSON, or holds an invalid object.
+ */
+public class InvalidInputException extends AnalyzerException {
+
+  private static final long serialVersionUID = 1L;
+
+  public InvalidInputException(ErrorCode errorCode, String message) {
+    super(errorCode, message);
+  }
+
+  public InvalidInputException(ErrorCode errorCode, String message, Throwable cause) {
+    super(errorCode, message, cause);
+  }
+}
@@ -0,0 +1,19 @@
+package jsonresourceanalyzer.exceptions;
+
+import jsonresourceanalyzer.enums.ErrorCode;
+
+/**
+ * Thrown when the resource of a url cannot be fetched to find its size.
+ */
+public class ResourceSizingException extends AnalyzerException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ResourceSizingException(ErrorCode errorCode, String message) {
+    super(errorCode, message);
+  }
+
+  public ResourceSizingException(ErrorCode errorCode, String message, Throwable cause) {
+    super(errorCode, message, cause);
+  }
+}
@@ -0,0 +1,20 @@
+package jsonresourceanalyzer.exceptions;
+
+import jsonresourceanalyzer.enums.ErrorCode;
+
+/**
+ * Thrown when the output, the checkpoint journal, the disk cache or the previous output cannot be
+ * read or written.
+ */
+public class StorageException extends AnalyzerException {
+
+  private static final long serialVersionUID = 1L;
+
+  public StorageException(ErrorCode errorCode, String message) {
+    super(errorCode, message);
+  }
+
+  public StorageException(ErrorCode errorCode, String message, Throwable cause) {
+    super(errorCode, message, cause);
+  }
+}
@@ -0,0 +1,660 @@
+package jsonresourceanalyzer.http;
+
+import static jsonresourceanalyzer.http.UrlResourceSizer.CONTENT_RANGE_HEADER;
+import static jsonresourceanalyzer.http.UrlResourceSizer.ETAG_HEADER;
+import static jsonresourceanalyzer.http.UrlResourceSizer.FIRST_BYTE_RANGE;
+import static jsonresourceanalyzer.http.UrlResourceSizer.HEAD_METHOD;
+import static jsonresourceanalyzer.http.UrlResourceSizer.IF_MODIFIED_SINCE_HEADER;
+import static jsonresourceanalyzer.http.UrlResourceSizer.IF_NONE_MATCH_HEADER;
+import static jsonresourceanalyzer.http.UrlResourceSizer.LAST_MODIFIED_HEADER;
+import static jsonresourceanalyzer.http.UrlResourceSizer.RANGE_HEADER;
+import static jsonresourceanalyzer.http.UrlResourceSizer.RETRY_AFTER_HEADER;
+import static jsonresourceanalyzer.http.UrlResourceSizer.isHttp;
+import static jsonresourceanalyzer.http.UrlResourceSizer.isValidSize;
+import static jsonresourceanalyzer.http.UrlResourceSizer.parseCompleteLength;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.ResourceSizingException;
+import jsonresourceanalyzer.enums.SizeSource;
+import jsonresourceanalyzer.enums.SizingStrategy;
+import jsonresourceanalyzer.metrics.LatencyHistogram;
+import jsonresourceanalyzer.metrics.Metrics;
+import jsonresourceanalyzer.http.HostConnectionLimiter.Lease;
+
+/**
+ * Non-blocking counterpart of UrlResourceSizer. Requests are sent with an asynchronous HttpClient
+ * so a handful of threads can keep many requests in flight, and response bodies are counted by
+ * completion callbacks as they arrive.
+ *
+ * <p>Requests can be hedged: a request still unanswered after the 95th percentile of the latency
+ * observed so far for its kind of request is sent a second time, and whichever copy answers first
+ * is used. HEAD, range, conditional and download requests each have their own latency histogram,
+ * since a download takes far longer than a HEAD. Hedging starts once enough requests of a kind
+ * have completed to estimate the percentile, and hedges are kept below MAX_HEDGE_RATIO of the
+ * requests sent, so an origin that has slowed down as a whole is not sent twice the load. A hedge
+ * takes a lease of its own, and is not sent if the host has none free.
+ *
+ * <p>Cancelling the future of an exchange only stops the exchange from Java 16 on, so the losing
+ * copy is stopped through its body subscriber instead, which closes its connection once its
+ * response headers arrive. Until the losing copy has ended, the hedge's lease is held.
+ */
+public class AsyncUrlResourceSizer {
+
+  private interface FallbackStep {
+
+    CompletableFuture<ResourceSize> start();
+  }
+
+  /**
+   * The kinds of request sent, each with latencies of its own.
+   */
+  private enum RequestKind {
+    HEAD,
+    RANGE,
+    REVALIDATION,
+    DOWNLOAD
+  }
+
+  /**
+   * The hedge delay of one kind of request, kept at a percentile of its observed latency.
+   */
+  private static class HedgeDelay {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // 0 until enough responses have been seen to estimate the percentile
+    private volatile long delayNanos;
+
+    /**
+     * Records the latency of a response and refreshes the delay now and then.
+     */
+    private void record(long nanos) {
+      latency.record(nanos);
+      if (latency.getCount() % HEDGE_DELAY_REFRESH_INTERVAL == 0) {
+        delayNanos = latency.getValueAtPercentile(HEDGE_PERCENTILE);
+      }
+    }
+  }
+
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+  private static final double HEDGE_PERCENTILE = 95;
+  // the hedge delay is recomputed from the latency histogram after this many responses
+  private static final int HEDGE_DELAY_REFRESH_INTERVAL = 64;
+  private static final double MAX_HEDGE_RATIO = 0.1;
+
+  private final DigestAlgorithm digestAlgorithm;
+  private final ExecutorService executor;
+  private final HostConnectionLimiter hostConnectionLimiter;
+  private final HttpClient httpClient;
+  private final RetryPolicy retryPolicy;
+  private final SizingStrategy sizingStrategy;
+  private final UrlResourceSizer urlResourceSizer;
+
+  private final boolean hedge;
+  private final Map<RequestKind, HedgeDelay> hedgeDelays = new EnumMap<>(RequestKind.class);
+  private final LongAdder sentRequests = new LongAdder();
+  private final LongAdder hedgedRequests = new LongAdder();
+
+  /**
+   * Creates a sizer.
+   *
+   * @param sizingStrategy     How sizes are found
+   * @param hostConnectionLimiter Limiter of the connections to each host
+   * @param retryPolicy        Timeouts and retries of each request
+   * @param hedge              Whether to hedge slow requests
+   * @param digestAlgorithm    The digest computed over every downloaded body, or null for none
+   */
+  public AsyncUrlResourceSizer(
+      SizingStrategy sizingStrategy,
+      HostConnectionLimiter hostConnectionLimiter,
+      RetryPolicy retryPolicy,
+      boolean hedge,
+      DigestAlgorithm digestAlgorithm
+  ) {
+    this.sizingStrategy = sizingStrategy;
+    this.hostConnectionLimiter = hostConnectionLimiter;
+    this.retryPolicy = retryPolicy;
+    this.hedge = hedge;
+    this.digestAlgorithm = digestAlgorithm;
+    for (RequestKind requestKind : RequestKind.values()) {
+      hedgeDelays.put(requestKind, new HedgeDelay());
+    }
+
+    // the client only needs a few threads since none of them block on the network
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+      Thread thread = new Thread(runnable);
+      thread.setDaemon(true);
+      return thread;
+    });
+    HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+        .executor(executor)
+        .followRedirects(HttpClient.Redirect.NORMAL);
+    if (retryPolicy.getConnectTimeoutMillis() > 0) {
+      httpClientBuilder.connectTimeout(Duration.ofMillis(retryPolicy.getConnectTimeoutMillis()));
+    }
+    httpClient = httpClientBuilder.build();
+
+    // URLs that do not use HTTP are sized with the blocking sizer on the client threads
+    urlResourceSizer = new UrlResourceSizer(
+        sizingStrategy,
+        hostConnectionLimiter,
+        retryPolicy,
+        digestAlgorithm
+    );
+  }
+
+  /**
+   * Stops the threads used by the sizer.
+   */
+  public void close() {
+    executor.shutdown();
+  }
+
+  /**
+   * Determines the size of the resource pointed to by the URL using the configured strategy. If a
+   * previously found size with validators is given, a conditional request is sent first and the
+   * previous size is reused when the server reports the resource has not been modified.
+   *
+   * @param url    The URL of the resource
+   * @param cached A previously found size of the resource, or null
+   * @return A future completed with the size of the resource and how it was found
+   */
+  public CompletableFuture<ResourceSize> size(URL url, ResourceSize cached) {
+    URI uri = toHttpUri(url);
+    if (uri == null) {
+      return CompletableFuture.supplyAsync(() -> urlResourceSizer.size(url, cached), executor);
+    }
+
+    // hold a connection to the host for every request made to size the resource
+    return hostConnectionLimiter.leaseAsync(url).thenCompose(lease ->
+        size(url, uri, cached, lease).whenComplete((resourceSize, throwable) -> lease.release())
+    );
+  }
+
+  /**
+   * Determines the size of the resource pointed to by an HTTP URL while holding a lease on a
+   * connection to its host.
+   *
+   * @param url    The URL of the resource
+   * @param uri    The URI of the resource
+   * @param cached A previously found size of the resource, or null
+   * @param lease  The lease on a connection to the host
+   * @return A future completed with the size of the resource and how it was found
+   */
+  private CompletableFuture<ResourceSize> size(URL url, URI uri, ResourceSize cached, Lease lease) {
+    CompletableFuture<ResourceSize> resourceSize = CompletableFuture.completedFuture(null);
+    if (cached != null && cached.hasValidators()) {
+      resourceSize = revalidate(uri, cached, lease);
+    }
+    if (sizingStrategy == SizingStrategy.METADATA) {
+      resourceSize = orElse(resourceSize, () -> sizeFromHead(uri, lease));
+      resourceSize = orElse(resourceSize, () -> sizeFromRange(uri, lease));
+    }
+    return orElse(resourceSize, () -> sizeFromBody(url, uri, lease, 1));
+  }
+
+  /**
+   * Chains a fallback that is only started if the previous step did not find a size.
+   *
+   * @param resourceSize The previous step
+   * @param fallback     Starts the fallback step
+   * @return A future completed with the first size found
+   */
+  private static CompletableFuture<ResourceSize> orElse(
+      CompletableFuture<ResourceSize> resourceSize,
+      FallbackStep fallback
+  ) {
+    return resourceSize.thenCompose(found ->
+        found != null ? CompletableFuture.completedFuture(found) : fallback.start()
+    );
+  }
+
+  /**
+   * Starts building a request for the URI, which times out if no response has arrived within the
+   * read timeout of the retry policy. Bodies counted by a CountingBodySubscriber also time out if
+   * no bytes arrive within the read timeout.
+   *
+   * @param uri The URI of the resource
+   * @return The request builder
+   */
+  private HttpRequest.Builder newRequest(URI uri) {
+    HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri);
+    if (retryPolicy.getReadTimeoutMillis() > 0) {
+      requestBuilder.timeout(Duration.ofMillis(retryPolicy.getReadTimeoutMillis()));
+    }
+    return requestBuilder;
+  }
+
+  /**
+   * Sends a request, hedged if hedging is on, recording on the lease whether its connection can be
+   * kept alive.
+   *
+   * @param request     The request
+   * @param requestKind The kind of request, whose latencies set its hedge delay
+   * @param bodyHandler Handles the response body
+   * @param lease       The lease on a connection to the host
+   * @return A future completed with the response
+   */
+  private <T> CompletableFuture<HttpResponse<T>> send(
+      HttpRequest request,
+      RequestKind requestKind,
+      HttpResponse.BodyHandler<T> bodyHandler,
+      Lease lease
+  ) {
+    Metrics.REQUESTS.increment();
+    return hedge
+        ? sendHedged(request, hedgeDelays.get(requestKind), bodyHandler, lease)
+        : httpClient.sendAsync(request, bodyHandler);
+  }
+
+  /**
+   * Sends a request, and sends it again on a second lease if no response has arrived by the hedge
+   * delay and the host has a connection free.
+   *
+   * @param request     The request
+   * @param hedgeDelay  The hedge delay of the kind of request
+   * @param bodyHandler Handles the response body
+   * @param lease       The lease the request is sent on
+   * @return A future completed with the first response that need not be retried, or with the last
+   *     failure or response if no copy of the request got one
+   */
+  private <T> CompletableFuture<HttpResponse<T>> sendHedged(
+      HttpRequest request,
+      HedgeDelay hedgeDelay,
+      HttpResponse.BodyHandler<T> bodyHandler,
+      Lease lease
+  ) {
+    sentRequests.increment();
+    CompletableFuture<HttpResponse<T>> winner = new CompletableFuture<>();
+    // copies of the request that may still complete the winner
+    AtomicInteger pending = new AtomicInteger(1);
+    CompletableFuture<HttpResponse<T>> primary =
+        race(request, hedgeDelay, bodyHandler, winner, pending, false);
+
+    long delayNanos = hedgeDelay.delayNanos;
+    if (delayNanos == 0) {
+      return winner;
+    }
+    CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor).execute(() -> {
+      if (winner.isDone() || hedgedRequests.sum() >= sentRequests.sum() * MAX_HEDGE_RATIO) {
+        return;
+      }
+      // the copy opens a connection of its own, so it needs a lease of its own
+      Lease hedgeLease = lease.tryLeaseAnother();
+      if (hedgeLease == null) {
+        return;
+      }
+      hedgedRequests.increment();
+      Metrics.HEDGED_REQUESTS.increment();
+      pending.incrementAndGet();
+      CompletableFuture<HttpResponse<T>> hedged =
+          race(request, hedgeDelay, bodyHandler, winner, pending, true);
+
+      // whichever copy loses runs until its body is cancelled, on a connection of its own while the
+      // first lease goes on to the next request, so the hedge's lease is held until both have ended
+      CompletableFuture.allOf(primary, hedged).whenComplete(
+          (ignored, throwable) -> hedgeLease.release()
+      );
+    });
+    return winner;
+  }
+
+  /**
+   * Sends one copy of a hedged request, completing the winner with its response if it is the
+   * first that need not be retried, or with its failure if no other copy is still pending. Once
+   * the winner is complete, the body of the copy is cancelled if it has not been read in full.
+   *
+   * @return The future of the copy, which completes once its exchange has ended
+   */
+  private <T> CompletableFuture<HttpResponse<T>> race(
+      HttpRequest request,
+      HedgeDelay hedgeDelay,
+      HttpResponse.BodyHandler<T> bodyHandler,
+      CompletableFuture<HttpResponse<T>> winner,
+      AtomicInteger pending,
+      boolean isHedge
+  ) {
+    long start = System.nanoTime();
+    HttpResponse.BodyHandler<T> cancellableBodyHandler = responseInfo -> {
+      CancellableBodySubscriber<T> body =
+          new CancellableBodySubscriber<>(bodyHandler.apply(responseInfo));
+      winner.whenComplete((response, throwable) -> body.cancel());
+      return body;
+    };
+
+    CompletableFuture<HttpResponse<T>> copy =
+        httpClient.sendAsync(request, cancellableBodyHandler);
+    copy.whenComplete((response, throwable) -> {
+      if (throwable == null && !RetryPolicy.isRetryable(response.statusCode())) {
+        hedgeDelay.record(System.nanoTime() - start);
+        if (winner.complete(response) && isHedge) {
+          Metrics.HEDGE_WINS.increment();
+        }
+      } else if (pending.decrementAndGet() == 0) {
+        if (throwable != null) {
+          winner.completeExceptionally(throwable);
+        } else {
+          winner.complete(response);
+        }
+      }
+    });
+    return copy;
+  }
+
+  /**
+   * Sends a request of a metadata step, retried like a download if it fails or is answered with a
+   * retryable error status. Once every attempt has failed, completes with null instead of failing,
+   * so the next step is tried.
+   *
+   * @param request     The request
+   * @param requestKind The kind of request
+   * @param bodyHandler Handles the response body
+   * @param lease       The lease on a connection to the host
+   * @param attempt     The number of this attempt, starting at 1
+   * @return A future completed with the last response, or null if none was received
+   */
+  private <T> CompletableFuture<HttpResponse<T>> sendWithRetries(
+      HttpRequest request,
+      RequestKind requestKind,
+      HttpResponse.BodyHandler<T> bodyHandler,
+      Lease lease,
+      int attempt
+  ) {
+    return send(request, requestKind, bodyHandler, lease)
+        .handle((response, throwable) -> {
+          boolean retryable = throwable != null || RetryPolicy.isRetryable(response.statusCode());
+          if (retryable && attempt < retryPolicy.getMaxAttempts()) {
+            return retryAfterBackoff(
+                attempt,
+                response,
+                () -> sendWithRetries(request, requestKind, bodyHandler, lease, attempt + 1)
+            );
+          }
+          return CompletableFuture.completedFuture(response);
+        })
+        .thenCompose(response -> response);
+  }
+
+  /**
+   * Starts the retry of a failed attempt once the backoff of the retry policy has passed.
+   *
+   * @param attempt  The number of the failed attempt, starting at 1
+   * @param response The retryable response of the failed attempt, or null if it got none
+   * @param retry    Starts the retry
+   * @return A future completed with the result of the retry
+   */
+  private <T> CompletableFuture<T> retryAfterBackoff(
+      int attempt,
+      HttpResponse<?> response,
+      Supplier<CompletableFuture<T>> retry
+  ) {
+    String retryAfter = response != null
+        ? response.headers().firstValue(RETRY_AFTER_HEADER).orElse(null)
+        : null;
+    long backoffMillis = retryPolicy.backoffMillis(attempt, retryAfter);
+    Metrics.RETRIES.increment();
+    return CompletableFuture
+        .runAsync(
+            () -> { },
+            CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS, executor)
+        )
+        .thenCompose(ignored -> retry.get());
+  }
+
+  /**
+   * Downloads the resource and counts the bytes of its body. An attempt that fails to connect,
+   * times out, or is answered with a retryable error status is retried after the backoff of the
+   * retry policy, up to its maximum number of attempts.
+   *
+   * @param url     The URL of the resource, used in error messages
+   * @param uri     The URI of the resource
+   * @param lease   The lease on a connection to the host
+   * @param attempt The number of this attempt, starting at 1
+   * @return A future completed with the size of the resource body
+   */
+  private CompletableFuture<ResourceSize> sizeFromBody(URL url, URI uri, Lease lease, int attempt) {
+    HttpRequest request = newRequest(uri).GET().build();
+
+    return send(request, RequestKind.DOWNLOAD, responseInfo -> newCountingBodySubscriber(), lease)
+        .handle((response, throwable) -> {
+          if (throwable == null && !RetryPolicy.isError(response.statusCode())) {
+            return CompletableFuture.completedFuture(
+                fromBody(response.body(), response.headers())
+            );
+          }
+
+          // an error status is only worth retrying if the server may answer differently next time
+          boolean retryable = throwable != null || RetryPolicy.isRetryable(response.statusCode());
+          if (retryable && attempt < retryPolicy.getMaxAttempts()) {
+            return retryAfterBackoff(
+                attempt,
+                response,
+                () -> sizeFromBody(url, uri, lease, attempt + 1)
+            );
+          }
+
+          // a connection to the URL could not be established. report error
+          return CompletableFuture.<ResourceSize>failedFuture(new ResourceSizingException(
+              ErrorCode.UNKNOWN_ERROR_WHILE_OPENING_URL_STREAM,
+              String.format(
+                  ErrorMessages.UNKNOWN_ERROR_WHILE_OPENING_URL_STREAM,
+                  url,
+                  throwable != null
+                      ? throwable.getMessage()
+                      : "Server returned HTTP response code: " + response.statusCode()
+              )
+          ));
+        })
+        .thenCompose(resourceSize -> resourceSize);
+  }
+
+  /**
+   * Attempts to find the size of the resource from the Content-Length of a HEAD response.
+   *
+   * @param uri   The URI of the resource
+   * @param lease The lease on a connection to the host
+   * @return A future completed with the size of the resource, or null if it was not reported
+   */
+  private CompletableFuture<ResourceSize> sizeFromHead(URI uri, Lease lease) {
+    HttpRequest request = newRequest(uri)
+        .method(HEAD_METHOD, HttpRequest.BodyPublishers.noBody())
+        .build();
+
+    return sendWithRetries(request, RequestKind.HEAD, BodyHandlers.discarding(), lease, 1)
+        .thenApply(response -> {
+          if (response == null || response.statusCode() != HttpURLConnection.HTTP_OK) {
+            return null;
+          }
+          return fromContentLength(response.headers());
+        });
+  }
+
+  /**
+   * Attempts to find the size of the resource from the Content-Range of a single byte range
+   * request. If the server ignores the range and sends the whole resource, the body is counted
+   * instead of being requested again.
+   *
+   * @param uri   The URI of the resource
+   * @param lease The lease on a connection to the host
+   * @return A future completed with the size of the resource, or null if it was not reported
+   */
+  private CompletableFuture<ResourceSize> sizeFromRange(URI uri, Lease lease) {
+    HttpRequest request = newRequest(uri)
+        .header(RANGE_HEADER, FIRST_BYTE_RANGE)
+        .GET()
+        .build();
+
+    HttpResponse.BodyHandler<CountedBody> bodyHandler =
+        responseInfo -> newCountingBodySubscriber();
+    return sendWithRetries(request, RequestKind.RANGE, bodyHandler, lease, 1)
+        .thenApply(response -> {
+          if (response == null) {
+            return null;
+          }
+          if (response.statusCode() == HttpURLConnection.HTTP_OK) {
+            // the range was ignored, so this response already contains the whole body
+            return fromBody(response.body(), response.headers());
+          }
+          if (response.statusCode() != HttpURLConnection.HTTP_PARTIAL
+              && response.statusCode() != HTTP_RANGE_NOT_SATISFIABLE) {
+            return null;
+          }
+
+          long completeLength = parseCompleteLength(
+              response.headers().firstValue(CONTENT_RANGE_HEADER).orElse(null)
+          );
+          if (!isValidSize(completeLength)) {
+            return null;
+          }
+          return withValidators(completeLength, SizeSource.CONTENT_RANGE, response.headers());
+        });
+  }
+
+  /**
+   * Sends a conditional request for the resource using the validators of a previously found size.
+   * A HEAD request is sent for the metadata strategy and a GET request otherwise, so a modified
+   * resource is sized from the same response.
+   *
+   * @param uri    The URI of the resource
+   * @param cached The previously found size of the resource
+   * @param lease  The lease on a connection to the host
+   * @return A future completed with the size of the resource, or null if it was not settled
+   */
+  private CompletableFuture<ResourceSize> revalidate(URI uri, ResourceSize cached, Lease lease) {
+    HttpRequest.Builder requestBuilder = newRequest(uri);
+    if (sizingStrategy == SizingStrategy.METADATA) {
+      requestBuilder.method(HEAD_METHOD, HttpRequest.BodyPublishers.noBody());
+    }
+    if (cached.getETag() != null) {
+      requestBuilder.header(IF_NONE_MATCH_HEADER, cached.getETag());
+    }
+    if (cached.getLastModified() != null) {
+      requestBuilder.header(IF_MODIFIED_SINCE_HEADER, cached.getLastModified());
+    }
+
+    HttpResponse.BodyHandler<CountedBody> bodyHandler =
+        responseInfo -> newCountingBodySubscriber();
+    return sendWithRetries(requestBuilder.build(), RequestKind.REVALIDATION, bodyHandler, lease, 1)
+        .thenApply(response -> {
+          if (response == null) {
+            return null;
+          }
+
+          HttpHeaders headers = response.headers();
+          if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            // servers may send updated validators with a 304
+            return new ResourceSize(
+                cached.getSize(),
+                SizeSource.REVALIDATED,
+                headers.firstValue(ETAG_HEADER).orElse(cached.getETag()),
+                headers.firstValue(LAST_MODIFIED_HEADER).orElse(cached.getLastModified()),
+                cached.getDigest()
+            );
+          }
+          if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            return null;
+          }
+          if (sizingStrategy != SizingStrategy.METADATA) {
+            return fromBody(response.body(), headers);
+          }
+          return fromContentLength(headers);
+        });
+  }
+
+  /**
+   * Creates a subscriber counting a response body, which fails if the body stalls for the read
+   * timeout.
+   *
+   * @return The subscriber
+   */
+  private CountingBodySubscriber newCountingBodySubscriber() {
+    return new CountingBodySubscriber(digestAlgorithm, retryPolicy.getReadTimeoutMillis());
+  }
+
+  /**
+   * Creates a ResourceSize from the Content-Length of a response.
+   *
+   * @param headers The response headers
+   * @return The size, or null if the Content-Length is missing or invalid
+   */
+  private static ResourceSize fromContentLength(HttpHeaders headers) {
+    long contentLength = headers.firstValueAsLong("Content-Length").orElse(-1);
+    if (!isValidSize(contentLength)) {
+      return null;
+    }
+    return withValidators(contentLength, SizeSource.CONTENT_LENGTH, headers);
+  }
+
+  /**
+   * Creates a ResourceSize from a counted response body.
+   *
+   * @param countedBody The size and digest of the body
+   * @param headers     The response headers
+   * @return The size
+   */
+  private static ResourceSize fromBody(CountedBody countedBody, HttpHeaders headers) {
+    return new ResourceSize(
+        (int) countedBody.getByteCount(),
+        SizeSource.BODY,
+        headers.firstValue(ETAG_HEADER).orElse(null),
+        headers.firstValue(LAST_MODIFIED_HEADER).orElse(null),
+        countedBody.getDigest()
+    );
+  }
+
+  /**
+   * Converts the URL to a URI if it uses HTTP.
+   *
+   * @param url The URL
+   * @return The URI, or null if the URL does not use HTTP or cannot be converted
+   */
+  private static URI toHttpUri(URL url) {
+    if (!isHttp(url)) {
+      return null;
+    }
+
+    try {
+      return url.toURI();
+    } catch (URISyntaxException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Creates a ResourceSize carrying the ETag and Last-Modified headers of the response.
+   *
+   * @param size       The size of the resource
+   * @param sizeSource How the size was found
+   * @param headers    The response headers
+   * @return The ResourceSize
+   */
+  private static ResourceSize withValidators(long size, SizeSource sizeSource, HttpHeaders headers) {
+    return new ResourceSize(
+        (int) size,
+        sizeSource,
+        headers.firstValue(ETAG_HEADER).orElse(null),
+        headers.firstValue(LAST_MODIFIED_HEADER).orElse(null)
+    );
+  }
+}
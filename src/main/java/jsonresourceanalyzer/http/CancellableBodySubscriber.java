@@ -0,0 +1,89 @@
+package jsonresourceanalyzer.http;
+
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Response body subscriber that hands the body to another subscriber until it is cancelled.
+ * Cancelling the future of an HttpClient exchange does not stop the exchange before Java 16, so a
+ * losing copy of a hedged request is stopped through its body instead: the subscription is
+ * cancelled, which closes the connection, and the body fails. A subscriber cancelled before the
+ * response headers arrive cancels its subscription as soon as it gets one.
+ *
+ * @param <T> The type of the body
+ */
+class CancellableBodySubscriber<T> implements BodySubscriber<T> {
+
+  private final BodySubscriber<T> delegate;
+  private final CompletableFuture<T> body = new CompletableFuture<>();
+  private volatile boolean cancelled;
+  private volatile Flow.Subscription subscription;
+
+  /**
+   * Creates a subscriber.
+   *
+   * @param delegate The subscriber handed the body until this one is cancelled
+   */
+  CancellableBodySubscriber(BodySubscriber<T> delegate) {
+    this.delegate = delegate;
+    delegate.getBody().whenComplete((value, throwable) -> {
+      if (throwable != null) {
+        body.completeExceptionally(throwable);
+      } else {
+        body.complete(value);
+      }
+    });
+  }
+
+  @Override
+  public CompletionStage<T> getBody() {
+    return body;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    // announce the subscription before checking for a cancel so the two cannot miss each other
+    this.subscription = subscription;
+    if (cancelled) {
+      subscription.cancel();
+      return;
+    }
+    delegate.onSubscribe(subscription);
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> byteBuffers) {
+    delegate.onNext(byteBuffers);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    delegate.onError(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    delegate.onComplete();
+  }
+
+  /**
+   * Stops the body unless it is already complete.
+   */
+  void cancel() {
+    if (body.isDone()) {
+      return;
+    }
+
+    cancelled = true;
+    Flow.Subscription currentSubscription = subscription;
+    if (currentSubscription != null) {
+      currentSubscription.cancel();
+    }
+    body.completeExceptionally(new CancellationException());
+  }
+}
@@ -0,0 +1,112 @@
+package jsonresourceanalyzer.http;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
+
+/**
+ * A digest of a resource body, fed with the same buffers its bytes are counted from so that the
+ * body is only read once. Each digest is used by one thread at a time, for one body.
+ */
+abstract class ContentDigest {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * Creates an empty digest.
+   *
+   * @param digestAlgorithm The algorithm of the digest
+   * @return The digest
+   */
+  static ContentDigest create(DigestAlgorithm digestAlgorithm) {
+    switch (digestAlgorithm) {
+      case CRC32C:
+        return new Crc32cDigest();
+      case SHA256:
+        return new Sha256Digest();
+      default:
+        return new XxHash64Digest();
+    }
+  }
+
+  /**
+   * Adds the remaining bytes of the buffer to the digest, leaving the buffer's position at its
+   * limit.
+   *
+   * @param byteBuffer The next bytes of the body
+   */
+  abstract void update(ByteBuffer byteBuffer);
+
+  /**
+   * Returns the digest of every byte added, in lower case hex.
+   *
+   * @return The hex digest
+   */
+  abstract String finish();
+
+  /**
+   * Formats the low bytes of a value as big-endian hex.
+   *
+   * @param value     The value
+   * @param byteCount The number of low bytes to format
+   * @return The hex string
+   */
+  static String toHex(long value, int byteCount) {
+    char[] hex = new char[byteCount * 2];
+    for (int i = hex.length - 1; i >= 0; i--) {
+      hex[i] = HEX_DIGITS[(int) value & 0xf];
+      value >>>= 4;
+    }
+    return new String(hex);
+  }
+
+  static String toHex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+      hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  private static class Crc32cDigest extends ContentDigest {
+
+    private final CRC32C crc32c = new CRC32C();
+
+    @Override
+    void update(ByteBuffer byteBuffer) {
+      crc32c.update(byteBuffer);
+    }
+
+    @Override
+    String finish() {
+      return toHex(crc32c.getValue(), Integer.BYTES);
+    }
+  }
+
+  private static class Sha256Digest extends ContentDigest {
+
+    private final MessageDigest messageDigest;
+
+    private Sha256Digest() {
+      try {
+        messageDigest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException ex) {
+        // every Java platform is required to support SHA-256
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    @Override
+    void update(ByteBuffer byteBuffer) {
+      messageDigest.update(byteBuffer);
+    }
+
+    @Override
+    String finish() {
+      return toHex(messageDigest.digest());
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package jsonresourceanalyzer.http;
+
+/**
+ * The number of bytes in a response body, and their digest if one was asked for.
+ */
+class CountedBody {
+
+  private final long byteCount;
+  private final String digest;
+
+  CountedBody(long byteCount, String digest) {
+    this.byteCount = byteCount;
+    this.digest = digest;
+  }
+
+  long getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * Returns the hex digest of the body, or null if no digest was asked for.
+   *
+   * @return The digest
+   */
+  String getDigest() {
+    return digest;
+  }
+}
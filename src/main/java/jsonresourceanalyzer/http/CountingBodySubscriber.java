@@ -0,0 +1,105 @@
+package jsonresourceanalyzer.http;
+
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
+import jsonresourceanalyzer.metrics.Metrics;
+
+/**
+ * Response body subscriber that counts the bytes of the body as they arrive without copying them,
+ * feeding the same buffers to a digest if one was asked for.
+ *
+ * <p>The timeout of an HttpRequest only bounds the wait for the response headers, so a body that
+ * stalls part way would otherwise hold its request forever. If no bytes arrive for the idle
+ * timeout, the subscription is cancelled, which closes the connection, and the body fails with an
+ * HttpTimeoutException that the retry policy handles like any other failed attempt.
+ */
+class CountingBodySubscriber implements BodySubscriber<CountedBody> {
+
+  private static final String READ_TIMED_OUT = "Read timed out";
+
+  private final CompletableFuture<CountedBody> result = new CompletableFuture<>();
+  private final ContentDigest contentDigest;
+  private final long idleTimeoutNanos;
+  private long byteCount;
+  private volatile long lastReadNanos;
+  private volatile Flow.Subscription subscription;
+
+  /**
+   * Creates a subscriber.
+   *
+   * @param digestAlgorithm   The digest to compute over the body, or null for none
+   * @param idleTimeoutMillis Milliseconds to wait between reads of the body, or 0 to wait forever
+   */
+  CountingBodySubscriber(DigestAlgorithm digestAlgorithm, long idleTimeoutMillis) {
+    contentDigest = digestAlgorithm != null ? ContentDigest.create(digestAlgorithm) : null;
+    idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+  }
+
+  @Override
+  public CompletionStage<CountedBody> getBody() {
+    return result;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    if (idleTimeoutNanos > 0) {
+      lastReadNanos = System.nanoTime();
+      scheduleIdleCheck(idleTimeoutNanos);
+    }
+    subscription.request(Long.MAX_VALUE);
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> byteBuffers) {
+    lastReadNanos = System.nanoTime();
+    for (ByteBuffer byteBuffer : byteBuffers) {
+      byteCount += byteBuffer.remaining();
+      if (contentDigest != null) {
+        contentDigest.update(byteBuffer);
+      }
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    result.completeExceptionally(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    Metrics.BYTES_DOWNLOADED.add(byteCount);
+    result.complete(
+        new CountedBody(byteCount, contentDigest != null ? contentDigest.finish() : null)
+    );
+  }
+
+  private void scheduleIdleCheck(long delayNanos) {
+    CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(this::checkIdle);
+  }
+
+  /**
+   * Fails the body if nothing has been read for the idle timeout, or checks again once the
+   * timeout would have passed since the last read.
+   */
+  private void checkIdle() {
+    if (result.isDone()) {
+      return;
+    }
+
+    long idleNanos = System.nanoTime() - lastReadNanos;
+    if (idleNanos < idleTimeoutNanos) {
+      scheduleIdleCheck(idleTimeoutNanos - idleNanos);
+      return;
+    }
+    subscription.cancel();
+    result.completeExceptionally(new HttpTimeoutException(READ_TIMED_OUT));
+  }
+}
@@ -0,0 +1,211 @@
+package jsonresourceanalyzer.http;
+
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the connections open to each host. Each sizing holds a lease on its host for as long as
+ * it is sending requests, which caps the number of requests, and so connections, open to any one
+ * host at once. Connections are kept alive between leases by the JDK's keep-alive caches, which
+ * the limiter cannot see into, so it counts leases and the leases that had to wait, not sockets.
+ *
+ * <p>Hosts without leases or waiters are evicted, so the limiter does not grow with every host a
+ * long running server has seen.
+ */
+public class HostConnectionLimiter {
+
+  /**
+   * A lease on a connection to a host. Leases must be released once their requests are done.
+   */
+  public class Lease {
+
+    private final Host host;
+
+    private Lease(Host host) {
+      this.host = host;
+    }
+
+    /**
+     * Returns the lease to the limiter.
+     */
+    public void release() {
+      HostConnectionLimiter.this.release(host);
+    }
+
+    /**
+     * Takes a second lease on the host of this one if a connection to it is free straight away, so
+     * a request sent alongside this lease's keeps to the limit.
+     *
+     * @return The lease, or null if every connection to the host is leased
+     */
+    public Lease tryLeaseAnother() {
+      return tryLease(host);
+    }
+  }
+
+  private class Host {
+
+    private final Deque<CompletableFuture<Lease>> waiters = new ArrayDeque<>();
+    private int leased;
+
+    /**
+     * Returns whether the host has nothing left for the limiter to track.
+     */
+    private boolean isIdle() {
+      return leased == 0 && waiters.isEmpty();
+    }
+  }
+
+  // hosts are checked for eviction at most this often, or once per idle timeout if it is longer
+  private static final long MIN_EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final int maxConnectionsPerHost;
+  private final long idleTimeoutNanos;
+  private final Map<String, Host> hosts;
+  private final LongAdder leaseWaits = new LongAdder();
+  private final LongAdder leases = new LongAdder();
+  private final long evictionIntervalNanos;
+  private long lastEvictionNanos;
+
+  public HostConnectionLimiter(int maxConnectionsPerHost, int idleTimeoutSeconds) {
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+    evictionIntervalNanos = Math.max(idleTimeoutNanos, MIN_EVICTION_INTERVAL_NANOS);
+    lastEvictionNanos = System.nanoTime();
+    hosts = new HashMap<>();
+  }
+
+  /**
+   * Configures the keep-alive caches of HttpURLConnection and HttpClient. HttpURLConnection keeps
+   * as many idle connections per host as the limiter leases, and HttpClient closes its idle
+   * connections after the idle timeout. HttpURLConnection only reads an idle timeout of its own
+   * from Java 19 on; before that it keeps an idle connection for as long as the server's
+   * Keep-Alive header says, or 5 seconds without one, whatever the idle timeout. The JDK reads
+   * these settings once, when a cache is first used, for every client of the JVM, so they cannot
+   * be set per limiter. This is only called by the command line entry point, before any
+   * connection is opened, and leaves alone any setting already given with -D. An application
+   * embedding the analyzer keeps the JVM's own settings.
+   *
+   * @param maxConnectionsPerHost Idle connections kept per host
+   * @param idleTimeoutSeconds    Seconds an idle connection is kept, where the JDK supports it
+   */
+  public static void configureKeepAlive(int maxConnectionsPerHost, int idleTimeoutSeconds) {
+    setDefaultProperty("http.keepAlive", "true");
+    setDefaultProperty("http.maxConnections", Integer.toString(maxConnectionsPerHost));
+    setDefaultProperty("http.keepAlive.time.server", Integer.toString(idleTimeoutSeconds));
+    setDefaultProperty("jdk.httpclient.keepalive.timeout", Integer.toString(idleTimeoutSeconds));
+  }
+
+  private static void setDefaultProperty(String key, String value) {
+    if (System.getProperty(key) == null) {
+      System.setProperty(key, value);
+    }
+  }
+
+  /**
+   * Leases a connection to the host of the URL, blocking until one is available.
+   *
+   * @param url The URL that will be requested
+   * @return The lease
+   */
+  public Lease lease(URL url) {
+    return leaseAsync(url).join();
+  }
+
+  /**
+   * Leases a connection to the host of the URL. The returned future completes once a connection
+   * is available, without blocking the calling thread.
+   *
+   * @param url The URL that will be requested
+   * @return A future completed with the lease
+   */
+  public CompletableFuture<Lease> leaseAsync(URL url) {
+    leases.increment();
+    String key = url.getProtocol().toLowerCase(Locale.ROOT) + "://"
+        + url.getHost().toLowerCase(Locale.ROOT) + ":"
+        + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+
+    synchronized (this) {
+      evictIdleHosts();
+      Host host = hosts.computeIfAbsent(key, hostKey -> new Host());
+      if (host.leased < maxConnectionsPerHost) {
+        host.leased++;
+        return CompletableFuture.completedFuture(new Lease(host));
+      }
+
+      leaseWaits.increment();
+      CompletableFuture<Lease> waiter = new CompletableFuture<>();
+      host.waiters.add(waiter);
+      return waiter;
+    }
+  }
+
+  /**
+   * Leases a connection to a host that already has a lease, if one is free.
+   *
+   * @param host The host
+   * @return The lease, or null if every connection to the host is leased
+   */
+  private synchronized Lease tryLease(Host host) {
+    if (host.leased >= maxConnectionsPerHost) {
+      return null;
+    }
+    leases.increment();
+    host.leased++;
+    return new Lease(host);
+  }
+
+  public long getLeaseCount() {
+    return leases.sum();
+  }
+
+  /**
+   * Returns the number of leases that had to wait for another lease on the same host.
+   *
+   * @return The lease wait count
+   */
+  public long getLeaseWaitCount() {
+    return leaseWaits.sum();
+  }
+
+  /**
+   * Returns a lease to the host, handing it to the next waiter if there is one.
+   *
+   * @param host The host of the lease
+   */
+  private void release(Host host) {
+    CompletableFuture<Lease> waiter;
+    Lease lease;
+    synchronized (this) {
+      waiter = host.waiters.poll();
+      if (waiter == null) {
+        host.leased--;
+        return;
+      }
+      lease = new Lease(host);
+    }
+
+    // complete outside of the lock since the waiter's callbacks may run on this thread
+    waiter.complete(lease);
+  }
+
+  /**
+   * Removes the hosts that have nothing left to track, once per eviction interval. Must be called
+   * holding the limiter's lock.
+   */
+  private void evictIdleHosts() {
+    long now = System.nanoTime();
+    if (now - lastEvictionNanos < evictionIntervalNanos) {
+      return;
+    }
+    lastEvictionNanos = now;
+    hosts.values().removeIf(Host::isIdle);
+  }
+}
@@ -0,0 +1,83 @@
+package jsonresourceanalyzer.http;
+
+import jsonresourceanalyzer.enums.SizeSource;
+
+/**
+ * The size of a URL resource along with how it was determined, the validators the server sent
+ * with it, and the digest of its body when it was downloaded with one asked for.
+ */
+public class ResourceSize {
+
+  private final int size;
+  private final SizeSource sizeSource;
+  private final String eTag;
+  private final String lastModified;
+  private final String digest;
+
+  public ResourceSize(int size, SizeSource sizeSource) {
+    this(size, sizeSource, null, null);
+  }
+
+  public ResourceSize(int size, SizeSource sizeSource, String eTag, String lastModified) {
+    this(size, sizeSource, eTag, lastModified, null);
+  }
+
+  public ResourceSize(
+      int size,
+      SizeSource sizeSource,
+      String eTag,
+      String lastModified,
+      String digest
+  ) {
+    this.size = size;
+    this.sizeSource = sizeSource;
+    this.eTag = eTag;
+    this.lastModified = lastModified;
+    this.digest = digest;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public SizeSource getSizeSource() {
+    return sizeSource;
+  }
+
+  /**
+   * Returns the ETag header sent with the resource, or null if there was none.
+   *
+   * @return The ETag
+   */
+  public String getETag() {
+    return eTag;
+  }
+
+  /**
+   * Returns the Last-Modified header sent with the resource, or null if there was none.
+   *
+   * @return The Last-Modified date
+   */
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Returns the hex digest of the resource body, or null if the body was not downloaded or no
+   * digest was asked for.
+   *
+   * @return The digest
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  /**
+   * Checks whether the resource can be revalidated with a conditional request.
+   *
+   * @return True if an ETag or Last-Modified date is known
+   */
+  public boolean hasValidators() {
+    return eTag != null || lastModified != null;
+  }
+}
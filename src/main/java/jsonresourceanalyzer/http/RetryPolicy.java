@@ -0,0 +1,120 @@
+package jsonresourceanalyzer.http;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeouts and retries of the requests made to size a resource. Failed attempts are retried after
+ * an exponential backoff with full jitter: the wait before retry n is drawn uniformly from zero to
+ * the base backoff doubled n - 1 times, capped at MAX_BACKOFF_MILLIS, so the retries of many
+ * objects failing together spread out instead of arriving at the origin in waves. A Retry-After
+ * header sent with a 429 or 503 is honoured up to the same cap.
+ */
+public class RetryPolicy {
+
+  private static final long MAX_BACKOFF_MILLIS = 10_000;
+  private static final int HTTP_REQUEST_TIMEOUT = 408;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final int maxAttempts;
+  private final long backoffMillis;
+
+  /**
+   * Creates a policy.
+   *
+   * @param connectTimeoutSeconds Seconds to wait for a connection to open, or 0 for no limit
+   * @param readTimeoutSeconds    Seconds to wait for a response or a read, or 0 for no limit
+   * @param maxAttempts           Attempts made before giving up, including the first
+   * @param backoffMillis         Backoff before the first retry in milliseconds
+   */
+  public RetryPolicy(
+      int connectTimeoutSeconds,
+      int readTimeoutSeconds,
+      int maxAttempts,
+      long backoffMillis
+  ) {
+    this.connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(connectTimeoutSeconds);
+    this.readTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(readTimeoutSeconds);
+    this.maxAttempts = maxAttempts;
+    this.backoffMillis = backoffMillis;
+  }
+
+  /**
+   * Returns the milliseconds to wait for a connection to open, where 0 means no limit.
+   *
+   * @return The connect timeout
+   */
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  /**
+   * Returns the milliseconds to wait for a response, or for the next read of its body, where 0
+   * means no limit.
+   *
+   * @return The read timeout
+   */
+  public int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Draws the wait before retrying a failed attempt.
+   *
+   * @param attempt    The number of the failed attempt, starting at 1
+   * @param retryAfter The Retry-After header of the failed response, or null
+   * @return The wait in milliseconds
+   */
+  long backoffMillis(int attempt, String retryAfter) {
+    long ceiling = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(attempt - 1, 30));
+    long wait = ThreadLocalRandom.current().nextLong(ceiling + 1);
+    return Math.max(wait, Math.min(MAX_BACKOFF_MILLIS, parseRetryAfterMillis(retryAfter)));
+  }
+
+  /**
+   * Checks whether a response status means the same request may succeed if sent again: a request
+   * timeout, too many requests, or a server error.
+   *
+   * @param statusCode The status of the response
+   * @return True if the request should be retried
+   */
+  static boolean isRetryable(int statusCode) {
+    return statusCode == HTTP_REQUEST_TIMEOUT
+        || statusCode == HTTP_TOO_MANY_REQUESTS
+        || statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+  }
+
+  /**
+   * Checks whether a response status is an error.
+   *
+   * @param statusCode The status of the response
+   * @return True for 4xx and 5xx statuses
+   */
+  static boolean isError(int statusCode) {
+    return statusCode >= HttpURLConnection.HTTP_BAD_REQUEST;
+  }
+
+  /**
+   * Parses a Retry-After header given in seconds. A Retry-After given as an HTTP date is ignored.
+   *
+   * @param retryAfter The header value, or null
+   * @return The wait asked for in milliseconds, or 0
+   */
+  private static long parseRetryAfterMillis(String retryAfter) {
+    if (retryAfter == null) {
+      return 0;
+    }
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+    } catch (NumberFormatException ex) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,599 @@
+package jsonresourceanalyzer.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.ResourceSizingException;
+import jsonresourceanalyzer.enums.SizeSource;
+import jsonresourceanalyzer.enums.SizingStrategy;
+import jsonresourceanalyzer.metrics.Metrics;
+import jsonresourceanalyzer.http.HostConnectionLimiter.Lease;
+
+/**
+ * This class is responsible for determining the size of the resource pointed to by a URL.
+ */
+public class UrlResourceSizer {
+
+  private interface RequestSetup {
+
+    void setUp(HttpURLConnection httpConnection) throws IOException;
+  }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int EOF = -1;
+  static final String CONTENT_RANGE_HEADER = "Content-Range";
+  static final String ETAG_HEADER = "ETag";
+  static final String FIRST_BYTE_RANGE = "bytes=0-0";
+  static final String HEAD_METHOD = "HEAD";
+  static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+  static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+  static final String LAST_MODIFIED_HEADER = "Last-Modified";
+  static final String RANGE_HEADER = "Range";
+  static final String RETRY_AFTER_HEADER = "Retry-After";
+  static final String HTTP_SCHEME = "http";
+  static final String HTTPS_SCHEME = "https";
+
+  // each worker thread reuses its own buffer rather than allocating one per resource
+  private static final ThreadLocal<byte[]> buffers =
+      ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+  private final DigestAlgorithm digestAlgorithm;
+  private final HostConnectionLimiter hostConnectionLimiter;
+  private final RetryPolicy retryPolicy;
+  private final SizingStrategy sizingStrategy;
+
+  /**
+   * Creates a sizer.
+   *
+   * @param sizingStrategy     How sizes are found
+   * @param hostConnectionLimiter Limiter of the connections to each host
+   * @param retryPolicy        Timeouts and retries of each request
+   * @param digestAlgorithm    The digest computed over every downloaded body, or null for none
+   */
+  public UrlResourceSizer(
+      SizingStrategy sizingStrategy,
+      HostConnectionLimiter hostConnectionLimiter,
+      RetryPolicy retryPolicy,
+      DigestAlgorithm digestAlgorithm
+  ) {
+    this.sizingStrategy = sizingStrategy;
+    this.hostConnectionLimiter = hostConnectionLimiter;
+    this.retryPolicy = retryPolicy;
+    this.digestAlgorithm = digestAlgorithm;
+  }
+
+  /**
+   * Determines the size of the resource pointed to by the URL using the configured strategy.
+   *
+   * @param url The URL of the resource
+   * @return The size of the resource and how it was found
+   */
+  public ResourceSize size(URL url) {
+    return size(url, null);
+  }
+
+  /**
+   * Determines the size of the resource pointed to by the URL using the configured strategy. If a
+   * previously found size with validators is given, a conditional request is sent first and the
+   * previous size is reused when the server reports the resource has not been modified.
+   *
+   * @param url    The URL of the resource
+   * @param cached A previously found size of the resource, or null
+   * @return The size of the resource and how it was found
+   */
+  public ResourceSize size(URL url, ResourceSize cached) {
+    if (!isHttp(url)) {
+      return sizeFromBody(url);
+    }
+
+    // hold a connection to the host for every request made to size the resource
+    Lease lease = hostConnectionLimiter.lease(url);
+    try {
+      return sizeHttp(url, cached);
+    } finally {
+      lease.release();
+    }
+  }
+
+  /**
+   * Determines the size of the resource pointed to by an HTTP URL while holding a lease on a
+   * connection to its host.
+   *
+   * @param url    The URL of the resource
+   * @param cached A previously found size of the resource, or null
+   * @return The size of the resource and how it was found
+   */
+  private ResourceSize sizeHttp(URL url, ResourceSize cached) {
+    if (cached != null && cached.hasValidators()) {
+      ResourceSize resourceSize = revalidate(url, cached);
+      if (resourceSize != null) {
+        return resourceSize;
+      }
+    }
+
+    if (sizingStrategy == SizingStrategy.METADATA) {
+      ResourceSize resourceSize = sizeFromHead(url);
+      if (resourceSize == null) {
+        resourceSize = sizeFromRange(url);
+      }
+      if (resourceSize != null) {
+        return resourceSize;
+      }
+    }
+
+    return sizeFromBody(url);
+  }
+
+  /**
+   * Checks whether the URL uses HTTP or HTTPS.
+   *
+   * @param url The URL
+   * @return True if the URL uses HTTP
+   */
+  static boolean isHttp(URL url) {
+    return HTTP_SCHEME.equalsIgnoreCase(url.getProtocol())
+        || HTTPS_SCHEME.equalsIgnoreCase(url.getProtocol());
+  }
+
+  /**
+   * Opens the connection with the timeouts of the retry policy, recording how long it took.
+   *
+   * @param urlConnection The unconnected connection
+   */
+  private void connect(URLConnection urlConnection) throws IOException {
+    urlConnection.setConnectTimeout(retryPolicy.getConnectTimeoutMillis());
+    urlConnection.setReadTimeout(retryPolicy.getReadTimeoutMillis());
+    Metrics.REQUESTS.increment();
+    long start = System.nanoTime();
+    urlConnection.connect();
+    Metrics.CONNECT_LATENCY.record(System.nanoTime() - start);
+  }
+
+  /**
+   * Finishes with a response whose body is not needed. Short bodies are drained so the
+   * connection can be kept alive, and the connection is closed otherwise.
+   *
+   * @param httpConnection The connection the response was received on
+   */
+  private static void finish(HttpURLConnection httpConnection) {
+    try {
+      boolean isError = httpConnection.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST;
+      InputStream inputStream = isError
+          ? httpConnection.getErrorStream()
+          : httpConnection.getInputStream();
+
+      if (inputStream != null) {
+        byte[] buffer = buffers.get();
+        int drained = 0;
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != EOF) {
+          drained += bytesRead;
+          if (drained > BUFFER_SIZE) {
+            throw new IOException("Response body is too large to drain.");
+          }
+        }
+        inputStream.close();
+      }
+    } catch (IOException ex) {
+      abandon(httpConnection);
+    }
+  }
+
+  /**
+   * Closes the connection of an attempt that failed without a response to finish, such as one
+   * that timed out, so that it is not left open or kept alive with the response unread.
+   *
+   * @param urlConnection The connection of the attempt, or null if it was never opened
+   */
+  private static void abandon(URLConnection urlConnection) {
+    if (urlConnection instanceof HttpURLConnection) {
+      ((HttpURLConnection) urlConnection).disconnect();
+    }
+  }
+
+  /**
+   * Counts the bytes remaining in the body of a response and closes it, computing the digest of
+   * the body from the same buffer if one was asked for.
+   *
+   * @param inputStream   The body to count
+   * @param urlConnection The connection the response was received on
+   * @return The size of the body
+   */
+  private ResourceSize countBody(
+      InputStream inputStream,
+      URLConnection urlConnection
+  ) throws IOException {
+    byte[] buffer = buffers.get();
+    ContentDigest contentDigest =
+        digestAlgorithm != null ? ContentDigest.create(digestAlgorithm) : null;
+
+    // read bytes from the url stream until the end of the file is reached
+    int urlResourceSize = 0;
+    try (InputStream stream = inputStream) {
+      int bytesRead;
+      while ((bytesRead = stream.read(buffer)) != EOF) {
+        urlResourceSize += bytesRead;
+        if (contentDigest != null) {
+          contentDigest.update(ByteBuffer.wrap(buffer, 0, bytesRead));
+        }
+      }
+    }
+    Metrics.BYTES_DOWNLOADED.add(urlResourceSize);
+
+    return new ResourceSize(
+        urlResourceSize,
+        SizeSource.BODY,
+        urlConnection.getHeaderField(ETAG_HEADER),
+        urlConnection.getHeaderField(LAST_MODIFIED_HEADER),
+        contentDigest != null ? contentDigest.finish() : null
+    );
+  }
+
+  /**
+   * Downloads the resource and counts the bytes of its body. An attempt that fails to connect,
+   * times out, or is answered with a retryable error status is retried after the backoff of the
+   * retry policy, up to its maximum number of attempts.
+   *
+   * @param url The URL of the resource
+   * @return The size of the resource body
+   */
+  private ResourceSize sizeFromBody(URL url) {
+    IOException failure = null;
+    boolean failedReading = false;
+    String retryAfter = null;
+    for (int attempt = 1; attempt <= retryPolicy.getMaxAttempts(); attempt++) {
+      if (attempt > 1) {
+        if (!backOff(attempt - 1, retryAfter)) {
+          break;
+        }
+        Metrics.RETRIES.increment();
+      }
+
+      URLConnection urlConnection = null;
+      boolean connected = false;
+      InputStream urlInputStream;
+      try {
+        urlConnection = url.openConnection();
+        connect(urlConnection);
+        connected = true;
+        urlInputStream = urlConnection.getInputStream();
+      } catch (IOException ex) {
+        failure = ex;
+        failedReading = false;
+        retryAfter = null;
+
+        int statusCode = connected && urlConnection instanceof HttpURLConnection
+            ? getResponseCode((HttpURLConnection) urlConnection)
+            : -1;
+        if (!RetryPolicy.isError(statusCode)) {
+          // no response was received, such as when connecting or waiting for it timed out
+          abandon(urlConnection);
+          continue;
+        }
+
+        // an error status is only worth retrying if the server may answer differently next time
+        HttpURLConnection httpConnection = (HttpURLConnection) urlConnection;
+        retryAfter = httpConnection.getHeaderField(RETRY_AFTER_HEADER);
+        finish(httpConnection);
+        if (!RetryPolicy.isRetryable(statusCode)) {
+          break;
+        }
+        continue;
+      }
+
+      try {
+        return countBody(urlInputStream, urlConnection);
+      } catch (IOException ex) {
+        // a body that stalls past the read timeout is requested again
+        failure = ex;
+        failedReading = true;
+        retryAfter = null;
+        abandon(urlConnection);
+      }
+    }
+
+    if (failedReading) {
+      throw new ResourceSizingException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_READING_URL_STREAM,
+          String.format(
+              ErrorMessages.UNKNOWN_ERROR_WHILE_READING_URL_STREAM,
+              url,
+              failure.getMessage()
+          )
+      );
+    }
+
+    // a connection to the URL could not be established. report error
+    throw new ResourceSizingException(
+        ErrorCode.UNKNOWN_ERROR_WHILE_OPENING_URL_STREAM,
+        String.format(
+            ErrorMessages.UNKNOWN_ERROR_WHILE_OPENING_URL_STREAM,
+            url,
+            failure.getMessage()
+        )
+    );
+  }
+
+  /**
+   * Waits out the backoff before retrying a failed attempt.
+   *
+   * @param attempt    The number of the failed attempt, starting at 1
+   * @param retryAfter The Retry-After header of the failed response, or null
+   * @return False if the thread was interrupted, in which case no retry should be made
+   */
+  private boolean backOff(int attempt, String retryAfter) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(retryPolicy.backoffMillis(attempt, retryAfter));
+      return true;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Sends a request of a metadata step, retrying it like a download after the backoff of the retry
+   * policy if it fails or is answered with a retryable error status. The connection of every
+   * failed attempt is finished or closed before the next.
+   *
+   * @param url          The HTTP URL of the resource
+   * @param requestSetup Sets the method and headers of each attempt's request
+   * @return The connection the last response was received on, or null if every attempt failed
+   *     without a response
+   */
+  private HttpURLConnection sendWithRetries(URL url, RequestSetup requestSetup) {
+    String retryAfter = null;
+    for (int attempt = 1; attempt <= retryPolicy.getMaxAttempts(); attempt++) {
+      if (attempt > 1) {
+        if (!backOff(attempt - 1, retryAfter)) {
+          break;
+        }
+        Metrics.RETRIES.increment();
+      }
+
+      retryAfter = null;
+      HttpURLConnection httpConnection = null;
+      try {
+        httpConnection = openHttpConnection(url);
+        requestSetup.setUp(httpConnection);
+        connect(httpConnection);
+        int responseCode = httpConnection.getResponseCode();
+        if (!RetryPolicy.isRetryable(responseCode) || attempt == retryPolicy.getMaxAttempts()) {
+          return httpConnection;
+        }
+        retryAfter = httpConnection.getHeaderField(RETRY_AFTER_HEADER);
+        finish(httpConnection);
+      } catch (IOException ex) {
+        abandon(httpConnection);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the status of a response that has been received.
+   *
+   * @param httpConnection The connection the response was received on
+   * @return The status, or -1 if there is none
+   */
+  private static int getResponseCode(HttpURLConnection httpConnection) {
+    try {
+      return httpConnection.getResponseCode();
+    } catch (IOException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * Opens an HTTP connection to the URL.
+   *
+   * @param url The HTTP URL to connect to
+   * @return The unconnected HTTP connection
+   */
+  private static HttpURLConnection openHttpConnection(URL url) throws IOException {
+    return (HttpURLConnection) url.openConnection();
+  }
+
+  /**
+   * Parses the complete length from a Content-Range header such as "bytes 0-0/1234".
+   *
+   * @param contentRange The Content-Range header value
+   * @return The complete length, or -1 if it is missing or unknown
+   */
+  static long parseCompleteLength(String contentRange) {
+    if (contentRange == null) {
+      return -1;
+    }
+
+    int slashIndex = contentRange.lastIndexOf('/');
+    if (slashIndex == -1) {
+      return -1;
+    }
+
+    try {
+      return Long.parseLong(contentRange.substring(slashIndex + 1).trim());
+    } catch (NumberFormatException ex) {
+      // the complete length is "*" when the server does not know it
+      return -1;
+    }
+  }
+
+  /**
+   * Attempts to find the size of the resource from the Content-Length of a HEAD response.
+   *
+   * @param url The URL of the resource
+   * @return The size of the resource, or null if the server did not report it
+   */
+  private ResourceSize sizeFromHead(URL url) {
+    HttpURLConnection httpConnection = sendWithRetries(
+        url,
+        connection -> connection.setRequestMethod(HEAD_METHOD)
+    );
+    if (httpConnection == null) {
+      // fall back to the next strategy
+      return null;
+    }
+    int responseCode = getResponseCode(httpConnection);
+
+    try {
+      long contentLength = httpConnection.getContentLengthLong();
+      if (responseCode != HttpURLConnection.HTTP_OK || !isValidSize(contentLength)) {
+        return null;
+      }
+
+      return withValidators((int) contentLength, SizeSource.CONTENT_LENGTH, httpConnection);
+    } finally {
+      finish(httpConnection);
+    }
+  }
+
+  /**
+   * Attempts to find the size of the resource from the Content-Range of a single byte range
+   * request. If the server ignores the range and sends the whole resource, the body is counted
+   * instead of being requested again.
+   *
+   * @param url The URL of the resource
+   * @return The size of the resource, or null if the server did not report it
+   */
+  private ResourceSize sizeFromRange(URL url) {
+    HttpURLConnection httpConnection = sendWithRetries(
+        url,
+        connection -> connection.setRequestProperty(RANGE_HEADER, FIRST_BYTE_RANGE)
+    );
+    if (httpConnection == null) {
+      // fall back to downloading the body
+      return null;
+    }
+    int responseCode = getResponseCode(httpConnection);
+
+    if (responseCode == HttpURLConnection.HTTP_OK) {
+      // the range was ignored, so this response already contains the whole body
+      return sizeFromResponseBody(url, httpConnection);
+    }
+
+    // a 206 carries the range of the first byte and a 416 is returned for empty resources, both
+    // report the complete length after the "/"
+    try {
+      long completeLength = parseCompleteLength(httpConnection.getHeaderField(CONTENT_RANGE_HEADER));
+      if ((responseCode != HttpURLConnection.HTTP_PARTIAL && responseCode != 416)
+          || !isValidSize(completeLength)) {
+        return null;
+      }
+
+      return withValidators((int) completeLength, SizeSource.CONTENT_RANGE, httpConnection);
+    } finally {
+      finish(httpConnection);
+    }
+  }
+
+  /**
+   * Counts the body of a response that has already been received.
+   *
+   * @param url            The URL of the resource
+   * @param httpConnection The connection the response was received on
+   * @return The size of the resource body, or null if the body could not be opened
+   */
+  private ResourceSize sizeFromResponseBody(URL url, HttpURLConnection httpConnection) {
+    try {
+      InputStream urlInputStream = httpConnection.getInputStream();
+      return countBody(urlInputStream, httpConnection);
+    } catch (IOException ex) {
+      abandon(httpConnection);
+      return null;
+    }
+  }
+
+  /**
+   * Sends a conditional request for the resource using the validators of a previously found size.
+   * A HEAD request is sent for the metadata strategy and a GET request otherwise, so a modified
+   * resource is sized from the same response.
+   *
+   * @param url    The URL of the resource
+   * @param cached The previously found size of the resource
+   * @return The size of the resource, or null if the conditional request did not settle it
+   */
+  private ResourceSize revalidate(URL url, ResourceSize cached) {
+    HttpURLConnection httpConnection = sendWithRetries(url, connection -> {
+      if (sizingStrategy == SizingStrategy.METADATA) {
+        connection.setRequestMethod(HEAD_METHOD);
+      }
+      if (cached.getETag() != null) {
+        connection.setRequestProperty(IF_NONE_MATCH_HEADER, cached.getETag());
+      }
+      if (cached.getLastModified() != null) {
+        connection.setRequestProperty(IF_MODIFIED_SINCE_HEADER, cached.getLastModified());
+      }
+    });
+    if (httpConnection == null) {
+      // fall back to sizing the resource without the cached size
+      return null;
+    }
+    int responseCode = getResponseCode(httpConnection);
+
+    if (responseCode == HttpURLConnection.HTTP_OK && sizingStrategy != SizingStrategy.METADATA) {
+      return sizeFromResponseBody(url, httpConnection);
+    }
+
+    try {
+      if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        // servers may send updated validators with a 304
+        String eTag = httpConnection.getHeaderField(ETAG_HEADER);
+        String lastModified = httpConnection.getHeaderField(LAST_MODIFIED_HEADER);
+        return new ResourceSize(
+            cached.getSize(),
+            SizeSource.REVALIDATED,
+            eTag != null ? eTag : cached.getETag(),
+            lastModified != null ? lastModified : cached.getLastModified(),
+            cached.getDigest()
+        );
+      }
+
+      long contentLength = httpConnection.getContentLengthLong();
+      if (responseCode != HttpURLConnection.HTTP_OK || !isValidSize(contentLength)) {
+        return null;
+      }
+
+      return withValidators((int) contentLength, SizeSource.CONTENT_LENGTH, httpConnection);
+    } finally {
+      finish(httpConnection);
+    }
+  }
+
+  /**
+   * Creates a ResourceSize carrying the ETag and Last-Modified headers of the response.
+   *
+   * @param size           The size of the resource
+   * @param sizeSource     How the size was found
+   * @param httpConnection The connection the response was received on
+   * @return The ResourceSize
+   */
+  private static ResourceSize withValidators(
+      int size,
+      SizeSource sizeSource,
+      URLConnection httpConnection
+  ) {
+    return new ResourceSize(
+        size,
+        sizeSource,
+        httpConnection.getHeaderField(ETAG_HEADER),
+        httpConnection.getHeaderField(LAST_MODIFIED_HEADER)
+    );
+  }
+
+  /**
+   * Checks that a size reported by the server is known and fits in an integer.
+   *
+   * @param size The reported size
+   * @return True if the size can be used
+   */
+  static boolean isValidSize(long size) {
+    return size >= 0 && size <= Integer.MAX_VALUE;
+  }
+}
@@ -0,0 +1,120 @@
+package jsonresourceanalyzer.http;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming 64 bit xxHash with a seed of 0. The body is consumed in 32 byte stripes read as four
+ * little-endian longs straight from the buffers it arrives in. Only the bytes of a stripe split
+ * across two buffers are copied, into a small array kept for the next update.
+ */
+class XxHash64Digest extends ContentDigest {
+
+  private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME_3 = 0x165667B19E3779F9L;
+  private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+  private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+  private static final int STRIPE_SIZE = 32;
+
+  private long v1 = PRIME_1 + PRIME_2;
+  private long v2 = PRIME_2;
+  private long v3 = 0;
+  private long v4 = -PRIME_1;
+  private long totalLength;
+
+  // bytes of an incomplete stripe, waiting for the next update
+  private final ByteBuffer pending =
+      ByteBuffer.allocate(STRIPE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+  @Override
+  void update(ByteBuffer byteBuffer) {
+    totalLength += byteBuffer.remaining();
+
+    // complete a stripe left over from the last update first
+    if (pending.position() > 0) {
+      while (pending.hasRemaining() && byteBuffer.hasRemaining()) {
+        pending.put(byteBuffer.get());
+      }
+      if (pending.hasRemaining()) {
+        return;
+      }
+      processStripe(pending, 0);
+      pending.clear();
+    }
+
+    ByteOrder order = byteBuffer.order();
+    byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+    int position = byteBuffer.position();
+    int limit = byteBuffer.limit();
+    for (; position + STRIPE_SIZE <= limit; position += STRIPE_SIZE) {
+      processStripe(byteBuffer, position);
+    }
+    byteBuffer.order(order);
+    byteBuffer.position(position);
+    pending.put(byteBuffer);
+  }
+
+  @Override
+  String finish() {
+    long hash;
+    if (totalLength >= STRIPE_SIZE) {
+      hash = Long.rotateLeft(v1, 1)
+          + Long.rotateLeft(v2, 7)
+          + Long.rotateLeft(v3, 12)
+          + Long.rotateLeft(v4, 18);
+      hash = mergeRound(hash, v1);
+      hash = mergeRound(hash, v2);
+      hash = mergeRound(hash, v3);
+      hash = mergeRound(hash, v4);
+    } else {
+      hash = PRIME_5;
+    }
+    hash += totalLength;
+
+    // the tail of the body is whatever is pending
+    int length = pending.position();
+    int index = 0;
+    for (; index + Long.BYTES <= length; index += Long.BYTES) {
+      hash ^= round(0, pending.getLong(index));
+      hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+    }
+    if (index + Integer.BYTES <= length) {
+      hash ^= (pending.getInt(index) & 0xFFFFFFFFL) * PRIME_1;
+      hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+      index += Integer.BYTES;
+    }
+    for (; index < length; index++) {
+      hash ^= (pending.get(index) & 0xFFL) * PRIME_5;
+      hash = Long.rotateLeft(hash, 11) * PRIME_1;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= PRIME_2;
+    hash ^= hash >>> 29;
+    hash *= PRIME_3;
+    hash ^= hash >>> 32;
+    return toHex(hash, Long.BYTES);
+  }
+
+  /**
+   * Mixes the 32 bytes at the index of a little-endian buffer into the accumulators.
+   */
+  private void processStripe(ByteBuffer byteBuffer, int index) {
+    v1 = round(v1, byteBuffer.getLong(index));
+    v2 = round(v2, byteBuffer.getLong(index + 8));
+    v3 = round(v3, byteBuffer.getLong(index + 16));
+    v4 = round(v4, byteBuffer.getLong(index + 24));
+  }
+
+  private static long round(long accumulator, long input) {
+    accumulator += input * PRIME_2;
+    accumulator = Long.rotateLeft(accumulator, 31);
+    return accumulator * PRIME_1;
+  }
+
+  private static long mergeRound(long hash, long accumulator) {
+    hash ^= round(0, accumulator);
+    return hash * PRIME_1 + PRIME_4;
+  }
+}
@@ -0,0 +1,291 @@
+package jsonresourceanalyzer.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records made of string fields. Every record is written as one line
+ * prefixed with the CRC32 of its contents, so a record torn by a crash is detected and skipped
+ * when the log is read back instead of corrupting the records around it.
+ */
+public class ChecksummedLog {
+
+  /**
+   * Handler which is called for every intact record when a log is read.
+   */
+  public interface RecordHandler {
+
+    void onRecord(String[] fields);
+  }
+
+  private static final char FIELD_SEPARATOR = '\t';
+  private static final char RECORD_SEPARATOR = '\n';
+  private static final String NULL_FIELD = "\\0";
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+  private final FileOutputStream fileOutputStream;
+  private final Writer writer;
+
+  /**
+   * Opens the log for appending, creating it if it does not exist.
+   *
+   * @param file The log file
+   */
+  public ChecksummedLog(File file) throws IOException {
+    boolean endsWithTornRecord = endsWithTornRecord(file);
+
+    fileOutputStream = new FileOutputStream(file, true);
+    writer = new BufferedWriter(new OutputStreamWriter(fileOutputStream, StandardCharsets.UTF_8));
+
+    // terminate a record torn by a crash so it is not joined with the next record appended
+    if (endsWithTornRecord) {
+      writer.write(RECORD_SEPARATOR);
+    }
+  }
+
+  /**
+   * Appends a record to the log. The record is buffered until the log is flushed.
+   *
+   * @param fields The fields of the record, which may be null
+   */
+  public synchronized void append(String... fields) throws IOException {
+    writer.write(encode(fields));
+  }
+
+  /**
+   * Closes the log after flushing and syncing it.
+   */
+  public synchronized void close() throws IOException {
+    sync();
+    writer.close();
+  }
+
+  /**
+   * Writes buffered records to the operating system.
+   */
+  public synchronized void flush() throws IOException {
+    writer.flush();
+  }
+
+  /**
+   * Writes buffered records to the operating system and forces them to the storage device.
+   */
+  public synchronized void sync() throws IOException {
+    writer.flush();
+    fileOutputStream.getChannel().force(false);
+  }
+
+  /**
+   * Reads every intact record of the log. Records whose checksum does not match are skipped.
+   *
+   * @param file          The log file
+   * @param recordHandler Called for every intact record in the order they were appended
+   * @return The number of records that were skipped because they were damaged
+   */
+  public static int read(File file, RecordHandler recordHandler) throws IOException {
+    if (!file.exists()) {
+      return 0;
+    }
+
+    int damagedRecords = 0;
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+
+        String[] fields = decode(line);
+        if (fields == null) {
+          damagedRecords++;
+        } else {
+          recordHandler.onRecord(fields);
+        }
+      }
+    }
+    return damagedRecords;
+  }
+
+  /**
+   * Atomically replaces the log with the given records. The records are written and synced to a
+   * temporary file which is then moved over the log, so a crash leaves either the old or the new
+   * log in place.
+   *
+   * @param file    The log file
+   * @param records The records the log should contain
+   */
+  public static void rewrite(File file, Iterable<String[]> records) throws IOException {
+    File temporaryFile = new File(file.getPath() + TEMPORARY_FILE_SUFFIX);
+
+    try (FileOutputStream temporaryOutputStream = new FileOutputStream(temporaryFile)) {
+      Writer temporaryWriter = new BufferedWriter(
+          new OutputStreamWriter(temporaryOutputStream, StandardCharsets.UTF_8)
+      );
+      for (String[] record : records) {
+        temporaryWriter.write(encode(record));
+      }
+      temporaryWriter.flush();
+      temporaryOutputStream.getChannel().force(false);
+    }
+
+    Files.move(
+        temporaryFile.toPath(),
+        file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE
+    );
+  }
+
+  /**
+   * Checks whether the last record of the file is missing its record separator.
+   *
+   * @param file The log file
+   * @return True if the file ends part way through a record
+   */
+  private static boolean endsWithTornRecord(File file) throws IOException {
+    if (!file.exists() || file.length() == 0) {
+      return false;
+    }
+
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      randomAccessFile.seek(randomAccessFile.length() - 1);
+      return randomAccessFile.read() != RECORD_SEPARATOR;
+    }
+  }
+
+  /**
+   * Computes the checksum of the encoded fields of a record.
+   *
+   * @param encodedFields The encoded fields
+   * @return The checksum as a hex string
+   */
+  private static String checksum(String encodedFields) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(encodedFields.getBytes(StandardCharsets.UTF_8));
+    return Long.toHexString(crc32.getValue());
+  }
+
+  /**
+   * Decodes a line of the log into the fields of its record.
+   *
+   * @param line The line
+   * @return The fields, or null if the line is damaged
+   */
+  private static String[] decode(String line) {
+    int separatorIndex = line.indexOf(FIELD_SEPARATOR);
+    if (separatorIndex == -1) {
+      return null;
+    }
+
+    String encodedFields = line.substring(separatorIndex + 1);
+    if (!checksum(encodedFields).equals(line.substring(0, separatorIndex))) {
+      return null;
+    }
+
+    List<String> fields = new ArrayList<>();
+    int fieldStart = 0;
+    for (int i = 0; i <= encodedFields.length(); i++) {
+      if (i == encodedFields.length() || encodedFields.charAt(i) == FIELD_SEPARATOR) {
+        fields.add(unescape(encodedFields.substring(fieldStart, i)));
+        fieldStart = i + 1;
+      }
+    }
+    return fields.toArray(new String[0]);
+  }
+
+  /**
+   * Encodes the fields of a record as a line of the log.
+   *
+   * @param fields The fields
+   * @return The line, including its record separator
+   */
+  private static String encode(String[] fields) {
+    StringBuilder encodedFields = new StringBuilder();
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        encodedFields.append(FIELD_SEPARATOR);
+      }
+      encodedFields.append(escape(fields[i]));
+    }
+
+    return checksum(encodedFields.toString())
+        + FIELD_SEPARATOR
+        + encodedFields
+        + RECORD_SEPARATOR;
+  }
+
+  private static String escape(String field) {
+    if (field == null) {
+      return NULL_FIELD;
+    }
+
+    StringBuilder escaped = new StringBuilder(field.length());
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      switch (c) {
+        case '\\':
+          escaped.append("\\\\");
+          break;
+        case '\t':
+          escaped.append("\\t");
+          break;
+        case '\n':
+          escaped.append("\\n");
+          break;
+        case '\r':
+          escaped.append("\\r");
+          break;
+        default:
+          escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  private static String unescape(String field) {
+    if (NULL_FIELD.equals(field)) {
+      return null;
+    }
+
+    StringBuilder unescaped = new StringBuilder(field.length());
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (c != '\\' || i + 1 == field.length()) {
+        unescaped.append(c);
+        continue;
+      }
+
+      char escapedChar = field.charAt(++i);
+      switch (escapedChar) {
+        case 't':
+          unescaped.append('\t');
+          break;
+        case 'n':
+          unescaped.append('\n');
+          break;
+        case 'r':
+          unescaped.append('\r');
+          break;
+        default:
+          unescaped.append(escapedChar);
+      }
+    }
+    return unescaped.toString();
+  }
+}
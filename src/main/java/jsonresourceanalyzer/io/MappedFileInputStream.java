@@ -0,0 +1,134 @@
+package jsonresourceanalyzer.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An InputStream reading a file through memory mapped windows instead of read system calls, so the
+ * bytes are taken from the page cache without first being copied into a kernel provided buffer. A
+ * mapping is limited to 2GB, so larger files are read through consecutive windows, each mapped when
+ * the previous one is used up. Marks are supported without any buffering, so the start of the file
+ * can be looked at and read again.
+ */
+public class MappedFileInputStream extends InputStream {
+
+  private static final long WINDOW_SIZE = 1L << 30;
+
+  private final FileChannel fileChannel;
+  private final long fileSize;
+  private long markPosition = -1;
+  private long nextWindowStart;
+  private MappedByteBuffer window;
+
+  /**
+   * Opens the file and maps its first window.
+   *
+   * @param file The file to read
+   */
+  public MappedFileInputStream(File file) throws IOException {
+    fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    fileSize = fileChannel.size();
+    mapNextWindow();
+  }
+
+  @Override
+  public int available() {
+    return window.remaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    // the mapping itself is released once the window is garbage collected
+    fileChannel.close();
+  }
+
+  /**
+   * Marks the current position. Any number of bytes may be read before reset is called.
+   *
+   * @param readLimit Ignored
+   */
+  @Override
+  public void mark(int readLimit) {
+    markPosition = nextWindowStart - window.limit() + window.position();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!hasRemaining()) {
+      return -1;
+    }
+    return window.get() & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!hasRemaining()) {
+      return -1;
+    }
+
+    int count = Math.min(length, window.remaining());
+    window.get(bytes, offset, count);
+    return count;
+  }
+
+  /**
+   * Returns to the marked position, mapping the window holding it again if it has been left.
+   */
+  @Override
+  public void reset() throws IOException {
+    if (markPosition < 0) {
+      throw new IOException("Mark not set");
+    }
+
+    long windowStart = nextWindowStart - window.limit();
+    if (markPosition >= windowStart) {
+      window.position((int) (markPosition - windowStart));
+    } else {
+      nextWindowStart = markPosition;
+      mapNextWindow();
+    }
+  }
+
+  @Override
+  public long skip(long count) throws IOException {
+    long skipped = 0;
+    while (skipped < count && hasRemaining()) {
+      int step = (int) Math.min(count - skipped, window.remaining());
+      window.position(window.position() + step);
+      skipped += step;
+    }
+    return skipped;
+  }
+
+  /**
+   * Returns whether there are bytes left to read, moving to the next window when the current one
+   * is used up.
+   *
+   * @return false at the end of the file
+   */
+  private boolean hasRemaining() throws IOException {
+    if (!window.hasRemaining() && nextWindowStart < fileSize) {
+      mapNextWindow();
+    }
+    return window.hasRemaining();
+  }
+
+  private void mapNextWindow() throws IOException {
+    long windowSize = Math.min(WINDOW_SIZE, fileSize - nextWindowStart);
+    window = fileChannel.map(MapMode.READ_ONLY, nextWindowStart, windowSize);
+    nextWindowStart += windowSize;
+  }
+}
@@ -0,0 +1,258 @@
+package jsonresourceanalyzer.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An OutputStream writing a single gzip stream whose blocks are compressed in parallel, in the way
+ * pigz does. Input is cut into blocks which are deflated independently on a pool of threads, each
+ * primed with the last 32KB of data before it so compression barely suffers. Every block but
+ * the last ends with a sync flush, which aligns it to a byte boundary so the compressed blocks can
+ * simply be concatenated in order. The CRC32 for the trailer is computed as data is written.
+ *
+ * <p>Every stream compresses on one pool of daemon threads, one per core, shared by the streams of
+ * all the analyses of a JVM. A flush always writes out everything written before it. Since each
+ * block costs a sync flush marker and restarts the match history at its dictionary, a caller
+ * flushing often can use lazyFlush instead, which only cuts a short block once it holds a minimum
+ * amount of data and leaves less than that buffered until a later flush, a full block or close.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+  private static final int BLOCK_SIZE = 128 * 1024;
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+  private static final int MIN_FLUSH_BLOCK_SIZE = 16 * 1024;
+  private static final int THREADS = Runtime.getRuntime().availableProcessors();
+  private static final String COMPRESSION_THREAD_NAME = "gzip-compressor";
+  private static final byte[] GZIP_HEADER = {
+      0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+
+  private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(
+      () -> new Deflater(Deflater.DEFAULT_COMPRESSION, true)
+  );
+  private static final ExecutorService COMPRESSION_POOL = Executors.newFixedThreadPool(
+      THREADS,
+      runnable -> {
+        Thread thread = new Thread(runnable, COMPRESSION_THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+      }
+  );
+
+  private final OutputStream outputStream;
+  private final int maxPendingBlocks;
+  private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+  private final CRC32 crc = new CRC32();
+
+  private byte[] block = new byte[BLOCK_SIZE];
+  private int blockLength;
+  private byte[] dictionary;
+  private long totalLength;
+  private boolean closed;
+
+  /**
+   * Creates the stream and writes the gzip header.
+   *
+   * @param outputStream Stream the gzip stream is written to
+   */
+  public ParallelGzipOutputStream(OutputStream outputStream) throws IOException {
+    this.outputStream = outputStream;
+    // allow some blocks to queue up behind the ones being compressed
+    this.maxPendingBlocks = THREADS * 2;
+    outputStream.write(GZIP_HEADER);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (blockLength == block.length) {
+      submitBlock(false);
+    }
+    block[blockLength++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    while (length > 0) {
+      if (blockLength == block.length) {
+        submitBlock(false);
+      }
+      int count = Math.min(length, block.length - blockLength);
+      System.arraycopy(bytes, offset, block, blockLength, count);
+      blockLength += count;
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * Cuts the data written so far into a block, then waits for every block cut to be compressed,
+   * writes them to the underlying stream and flushes it. Once this returns, the underlying stream
+   * holds a valid gzip prefix ending with the last byte written.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (blockLength > 0) {
+      submitBlock(false);
+    }
+    writePendingBlocks();
+  }
+
+  /**
+   * Writes out the blocks cut so far like flush, but only cuts the data written since the last
+   * block into a block of its own once there is at least the minimum flush size of it.
+   */
+  public void lazyFlush() throws IOException {
+    if (blockLength >= MIN_FLUSH_BLOCK_SIZE) {
+      submitBlock(false);
+    }
+    writePendingBlocks();
+  }
+
+  /**
+   * Returns whether data written is buffered and would be written out by the next flush.
+   *
+   * @return Whether data is buffered
+   */
+  public boolean hasBufferedData() {
+    return blockLength > 0;
+  }
+
+  /**
+   * Compresses the last block, writes the gzip trailer and closes the underlying stream.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    submitBlock(true);
+    while (!pendingBlocks.isEmpty()) {
+      writeOldestBlock();
+    }
+
+    writeIntLittleEndian((int) crc.getValue());
+    writeIntLittleEndian((int) totalLength);
+    outputStream.close();
+  }
+
+  /**
+   * Hands the current block to the compression pool, first writing out the oldest pending block if
+   * too many are pending.
+   *
+   * @param last Whether this is the final block of the stream
+   */
+  private void submitBlock(boolean last) throws IOException {
+    while (pendingBlocks.size() >= maxPendingBlocks) {
+      writeOldestBlock();
+    }
+
+    byte[] input = block;
+    int inputLength = blockLength;
+    byte[] inputDictionary = dictionary;
+    crc.update(input, 0, inputLength);
+    totalLength += inputLength;
+    pendingBlocks.addLast(
+        COMPRESSION_POOL.submit(() -> deflate(input, inputLength, inputDictionary, last))
+    );
+
+    // the last 32KB written so far primes the compression of the next block
+    dictionary = nextDictionary(inputDictionary, input, inputLength);
+    block = new byte[BLOCK_SIZE];
+    blockLength = 0;
+  }
+
+  /**
+   * Returns the last 32KB of the data written, which may span the previous dictionary when the
+   * block was shorter than that.
+   *
+   * @param dictionary  Dictionary the block was compressed with, or null for the first block
+   * @param block       The block
+   * @param blockLength Number of bytes used in the block
+   * @return Dictionary for the next block
+   */
+  private static byte[] nextDictionary(byte[] dictionary, byte[] block, int blockLength) {
+    if (blockLength >= DICTIONARY_SIZE || dictionary == null) {
+      return Arrays.copyOfRange(block, Math.max(0, blockLength - DICTIONARY_SIZE), blockLength);
+    }
+
+    int kept = Math.min(dictionary.length, DICTIONARY_SIZE - blockLength);
+    byte[] next = new byte[kept + blockLength];
+    System.arraycopy(dictionary, dictionary.length - kept, next, 0, kept);
+    System.arraycopy(block, 0, next, kept, blockLength);
+    return next;
+  }
+
+  private void writePendingBlocks() throws IOException {
+    while (!pendingBlocks.isEmpty()) {
+      writeOldestBlock();
+    }
+    outputStream.flush();
+  }
+
+  private void writeOldestBlock() throws IOException {
+    try {
+      outputStream.write(pendingBlocks.removeFirst().get());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(ex.getMessage());
+    } catch (ExecutionException ex) {
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  private void writeIntLittleEndian(int value) throws IOException {
+    outputStream.write(value);
+    outputStream.write(value >>> 8);
+    outputStream.write(value >>> 16);
+    outputStream.write(value >>> 24);
+  }
+
+  /**
+   * Deflates one block on a compression thread.
+   *
+   * @param input      The block
+   * @param length     Number of bytes used in the block
+   * @param dictionary Tail of the previous block, or null for the first block
+   * @param last       Whether to finish the deflate stream after this block
+   * @return The compressed block
+   */
+  private static byte[] deflate(byte[] input, int length, byte[] dictionary, boolean last) {
+    Deflater deflater = DEFLATERS.get();
+    deflater.reset();
+    if (dictionary != null) {
+      deflater.setDictionary(dictionary);
+    }
+    deflater.setInput(input, 0, length);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+    byte[] buffer = new byte[16 * 1024];
+    if (last) {
+      deflater.finish();
+      while (!deflater.finished()) {
+        int count = deflater.deflate(buffer);
+        compressed.write(buffer, 0, count);
+      }
+    } else {
+      // a sync flush is complete once it leaves room in the output buffer
+      int count;
+      do {
+        count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+        compressed.write(buffer, 0, count);
+      } while (count == buffer.length);
+    }
+    return compressed.toByteArray();
+  }
+}
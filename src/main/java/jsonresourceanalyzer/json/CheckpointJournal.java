@@ -0,0 +1,289 @@
+package jsonresourceanalyzer.json;
+
+import java.io.File;
+import java.io.IOException;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.constants.InfoMessages;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.StorageException;
+import jsonresourceanalyzer.enums.SizeSource;
+import jsonresourceanalyzer.io.ChecksummedLog;
+
+/**
+ * Journal of the objects written to the output during a run, so that a run which did not finish
+ * can be resumed. The writer thread records every object it writes and commits the journal, with a
+ * single sync, each time it flushes the output. When a run starts with a journal left behind,
+ * objects already recorded in it are restored from it instead of being validated again, and the
+ * output is rebuilt from scratch. The journal is deleted once the output is complete.
+ *
+ * <p>The records of an earlier run are held in an open-addressing table of primitive arrays keyed
+ * by a 64 bit hash of the path, as PreviousOutputIndex holds a previous output: the hashes of the
+ * path and url, the size and its source, and only the digests this run can restore. That is
+ * around 25 bytes per record plus its digest, however long the paths and urls are.
+ */
+public class CheckpointJournal {
+
+  // indexes of the fields of a journal record
+  private static final int PATH_FIELD = 0;
+  private static final int URL_FIELD = 1;
+  private static final int SIZE_FIELD = 2;
+  private static final int SIZE_SOURCE_FIELD = 3;
+  private static final int DIGEST_ALGORITHM_FIELD = 4;
+  private static final int DIGEST_FIELD = 5;
+  private static final int FIELD_COUNT = 6;
+
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final double MAX_LOAD_FACTOR = 0.7;
+  // size source of a body sized without the digest this run asks for, which is not restored
+  private static final byte UNDIGESTED_BODY = -1;
+  private static final byte NO_SIZE_SOURCE = 0;
+
+  private final DigestAlgorithm digestAlgorithm;
+  private final File file;
+  private final ChecksummedLog log;
+  // path hash of each completed record, with 0 marking an empty slot
+  private long[] pathHashes = new long[INITIAL_CAPACITY];
+  private long[] urlHashes = new long[INITIAL_CAPACITY];
+  private int[] sizes = new int[INITIAL_CAPACITY];
+  // ordinal of the size source plus one, NO_SIZE_SOURCE or UNDIGESTED_BODY
+  private byte[] sizeSources = new byte[INITIAL_CAPACITY];
+  private String[] digests = new String[INITIAL_CAPACITY];
+  private int completed;
+  private long restored;
+  private long recorded;
+  private long uncommitted;
+  private long commits;
+
+  /**
+   * Loads the records of a journal left by an earlier run, if there is one, and opens the journal
+   * for appending.
+   *
+   * @param argParser Parsed arguments giving the journal file
+   */
+  public CheckpointJournal(ArgParser argParser) {
+    file = argParser.getJournalFile();
+    digestAlgorithm = argParser.getDigestAlgorithm();
+
+    ChecksummedLog openedLog = null;
+    try {
+      // a record damaged by a crash is skipped, so its object is simply validated again
+      ChecksummedLog.read(file, fields -> {
+        if (fields.length == FIELD_COUNT) {
+          put(fields);
+        }
+      });
+      openedLog = new ChecksummedLog(file);
+    } catch (IOException ex) {
+      fail(ex);
+    }
+    log = openedLog;
+  }
+
+  /**
+   * Completes the InputJsonObject from the journal if an earlier run already wrote it. A body
+   * sized without the digest this run asks for is validated again, so that it gets one.
+   *
+   * @param inputJsonObject An InputJsonObject just read
+   * @return Whether the object was restored and needs no validation
+   */
+  public synchronized boolean restore(InputJsonObject inputJsonObject) {
+    if (completed == 0 || inputJsonObject.getPath() == null || inputJsonObject.getUrl() == null) {
+      return false;
+    }
+
+    int slot = find(PreviousOutputIndex.hash(inputJsonObject.getPath()));
+    if (slot < 0
+        || urlHashes[slot] != PreviousOutputIndex.hash(inputJsonObject.getUrl())
+        || sizeSources[slot] == UNDIGESTED_BODY) {
+      return false;
+    }
+
+    inputJsonObject.setSize(sizes[slot]);
+    if (sizeSources[slot] != NO_SIZE_SOURCE) {
+      inputJsonObject.setSizeSource(SizeSource.values()[sizeSources[slot] - 1]);
+    }
+    if (digests[slot] != null) {
+      inputJsonObject.setDigest(digests[slot]);
+      // each path is only read once, so its digest is no longer needed
+      digests[slot] = null;
+    }
+    inputJsonObject.setJournaled(true);
+    restored++;
+    return true;
+  }
+
+  /**
+   * Records that the InputJsonObject has been written to the output. The record is buffered until
+   * the next commit. Only called from the writer thread.
+   *
+   * @param inputJsonObject The InputJsonObject written
+   */
+  void record(InputJsonObject inputJsonObject) {
+    if (inputJsonObject.isJournaled()) {
+      return;
+    }
+
+    try {
+      log.append(
+          inputJsonObject.getPath(),
+          inputJsonObject.getUrl(),
+          Integer.toString(inputJsonObject.getSize()),
+          inputJsonObject.getSizeSource() != null ? inputJsonObject.getSizeSource().getName() : null,
+          inputJsonObject.getDigest() != null ? digestAlgorithm.getName() : null,
+          inputJsonObject.getDigest()
+      );
+      recorded++;
+      uncommitted++;
+    } catch (IOException ex) {
+      fail(ex);
+    }
+  }
+
+  /**
+   * Makes every record appended since the last commit durable with a single sync, so the cost of
+   * syncing is shared by the whole batch. Only called from the writer thread.
+   */
+  void commit() {
+    if (uncommitted == 0) {
+      return;
+    }
+
+    try {
+      log.sync();
+      uncommitted = 0;
+      commits++;
+    } catch (IOException ex) {
+      fail(ex);
+    }
+  }
+
+  /**
+   * Closes the journal, keeping it so a later run can resume from it. Called when the run fails.
+   */
+  public void close() {
+    try {
+      log.close();
+    } catch (IOException ex) {
+      fail(ex);
+    }
+  }
+
+  /**
+   * Closes and deletes the journal. Called once the output is complete.
+   */
+  public void delete() {
+    close();
+    file.delete();
+  }
+
+  /**
+   * Prints the number of objects restored and recorded, and the number of commits.
+   */
+  public synchronized void reportStatistics() {
+    System.err.println(String.format(
+        InfoMessages.CHECKPOINT_JOURNAL_STATISTICS,
+        restored,
+        recorded,
+        commits
+    ));
+  }
+
+  /**
+   * Adds a record to the table, replacing an earlier record of the same path.
+   *
+   * @param fields The fields of the record
+   */
+  private void put(String[] fields) {
+    int size;
+    try {
+      size = Integer.parseInt(fields[SIZE_FIELD]);
+    } catch (NumberFormatException ex) {
+      // a record that cannot be restored leaves its object to be validated again
+      return;
+    }
+    if (completed >= pathHashes.length * MAX_LOAD_FACTOR) {
+      grow();
+    }
+
+    long pathHash = PreviousOutputIndex.hash(fields[PATH_FIELD]);
+    int mask = pathHashes.length - 1;
+    int slot = (int) pathHash & mask;
+    while (pathHashes[slot] != 0 && pathHashes[slot] != pathHash) {
+      slot = (slot + 1) & mask;
+    }
+    if (pathHashes[slot] == 0) {
+      completed++;
+    }
+
+    SizeSource sizeSource = SizeSource.fromName(fields[SIZE_SOURCE_FIELD]);
+    boolean digestMatches = digestAlgorithm != null
+        && digestAlgorithm.getName().equals(fields[DIGEST_ALGORITHM_FIELD]);
+    pathHashes[slot] = pathHash;
+    urlHashes[slot] = PreviousOutputIndex.hash(fields[URL_FIELD]);
+    sizes[slot] = size;
+    if (sizeSource == SizeSource.BODY && digestAlgorithm != null && !digestMatches) {
+      // a body sized without the digest this run asks for is validated again, so it gets one
+      sizeSources[slot] = UNDIGESTED_BODY;
+    } else {
+      sizeSources[slot] =
+          sizeSource != null ? (byte) (sizeSource.ordinal() + 1) : NO_SIZE_SOURCE;
+    }
+    digests[slot] = digestMatches ? fields[DIGEST_FIELD] : null;
+  }
+
+  /**
+   * Returns the slot holding the record of a path.
+   *
+   * @param pathHash Hash of the path
+   * @return The slot, or -1 if no record has the path
+   */
+  private int find(long pathHash) {
+    int mask = pathHashes.length - 1;
+    for (int slot = (int) pathHash & mask; pathHashes[slot] != 0; slot = (slot + 1) & mask) {
+      if (pathHashes[slot] == pathHash) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Doubles the table and reinserts every record by its path hash.
+   */
+  private void grow() {
+    long[] oldPathHashes = pathHashes;
+    long[] oldUrlHashes = urlHashes;
+    int[] oldSizes = sizes;
+    byte[] oldSizeSources = sizeSources;
+    String[] oldDigests = digests;
+    pathHashes = new long[oldPathHashes.length * 2];
+    urlHashes = new long[oldUrlHashes.length * 2];
+    sizes = new int[oldSizes.length * 2];
+    sizeSources = new byte[oldSizeSources.length * 2];
+    digests = new String[oldDigests.length * 2];
+
+    int mask = pathHashes.length - 1;
+    for (int i = 0; i < oldPathHashes.length; i++) {
+      if (oldPathHashes[i] != 0) {
+        int slot = (int) oldPathHashes[i] & mask;
+        while (pathHashes[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        pathHashes[slot] = oldPathHashes[i];
+        urlHashes[slot] = oldUrlHashes[i];
+        sizes[slot] = oldSizes[i];
+        sizeSources[slot] = oldSizeSources[i];
+        digests[slot] = oldDigests[i];
+      }
+    }
+  }
+
+  private static void fail(IOException ex) {
+    throw new StorageException(
+        ErrorCode.UNKNOWN_ERROR_WHILE_ACCESSING_JOURNAL,
+        String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_ACCESSING_JOURNAL, ex.getMessage())
+    );
+  }
+}
@@ -0,0 +1,221 @@
+package jsonresourceanalyzer.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.InvalidInputException;
+
+/**
+ * Splits the top level array of an input stream, or the records of newline delimited JSON, into
+ * chunks of whole objects that can be parsed independently. The input is scanned byte by byte,
+ * tracking nesting depth and whether the scan is inside a string, so only braces and brackets
+ * outside of strings count. Each chunk is handed over as a complete JSON array of its objects. The
+ * scan also checks the top level structure that the chunk parsers cannot see: that the input is
+ * an array of objects separated by single commas, and that nothing but whitespace follows the end
+ * of the array. Newline delimited records may only be separated by whitespace.
+ */
+class InputChunker {
+
+  /**
+   * Event handler which is called by the InputChunker for every chunk of objects.
+   */
+  interface ChunkEventHandler {
+
+    /**
+     * Called with a chunk of objects, in input order.
+     *
+     * @param chunk         Buffer holding the chunk as a JSON array
+     * @param length        Number of bytes of the buffer used by the chunk
+     * @param firstSequence Sequence number of the first object in the chunk
+     */
+    void onChunk(byte[] chunk, int length, long firstSequence);
+  }
+
+  private static final int READ_BUFFER_SIZE = 1 << 20;
+  private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+  private final InputStream inputStream;
+  private final int chunkSize;
+  private final boolean ndjson;
+  private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+  private int readPosition;
+  private int readLimit;
+
+  InputChunker(InputStream inputStream, int chunkSize, boolean ndjson) {
+    this.inputStream = inputStream;
+    this.chunkSize = chunkSize;
+    this.ndjson = ndjson;
+  }
+
+  /**
+   * Skips a byte order mark and reads up to and including the "[" that opens the top level array.
+   * Newline delimited JSON has no array, so nothing more is read.
+   *
+   * @return false if the input should start with an array but does not
+   */
+  boolean readStart() throws IOException {
+    fill();
+    if (readLimit >= UTF8_BOM.length
+        && Arrays.equals(readBuffer, 0, UTF8_BOM.length, UTF8_BOM, 0, UTF8_BOM.length)) {
+      readPosition = UTF8_BOM.length;
+    }
+    return ndjson || nextNonWhitespace() == '[';
+  }
+
+  /**
+   * Reads the rest of the input, calling the handler with each chunk of objects. Chunks end at the
+   * first object boundary after the chunk size is reached.
+   *
+   * @param chunkEventHandler The handler to call for each chunk
+   */
+  void readChunks(ChunkEventHandler chunkEventHandler) throws IOException {
+    long sequence = 0;
+    long chunkFirstSequence = 0;
+    byte[] chunk = null;
+    int chunkLength = 0;
+
+    int b = nextNonWhitespace();
+    boolean expectObject = false;
+    while (ndjson ? b >= 0 : b != ']' || expectObject) {
+      // every top level value must be an object
+      if (b != '{') {
+        invalidJson();
+      }
+
+      if (chunk == null) {
+        chunk = new byte[chunkSize + 2];
+        chunk[0] = '[';
+        chunkLength = 1;
+        chunkFirstSequence = sequence;
+      } else {
+        chunk = ensureCapacity(chunk, chunkLength + 1);
+        chunk[chunkLength++] = ',';
+      }
+
+      // copy the object, ending when the brace that opened it is closed. Bytes are scanned in the
+      // read buffer and copied to the chunk a buffer's worth at a time
+      int depth = 1;
+      boolean inString = false;
+      boolean escaped = false;
+      int spanStart = readPosition - 1;
+      while (depth > 0) {
+        if (readPosition == readLimit) {
+          chunk = append(chunk, chunkLength, spanStart, readPosition);
+          chunkLength += readPosition - spanStart;
+          fill();
+          if (readLimit == 0) {
+            invalidJson();
+          }
+          spanStart = 0;
+        }
+
+        byte c = readBuffer[readPosition++];
+        if (inString) {
+          if (escaped) {
+            escaped = false;
+          } else if (c == '\\') {
+            escaped = true;
+          } else if (c == '"') {
+            inString = false;
+          }
+        } else if (c == '"') {
+          inString = true;
+        } else if (c == '{' || c == '[') {
+          depth++;
+        } else if (c == '}' || c == ']') {
+          depth--;
+        }
+      }
+      chunk = append(chunk, chunkLength, spanStart, readPosition);
+      chunkLength += readPosition - spanStart;
+      sequence++;
+
+      if (chunkLength >= chunkSize) {
+        chunk = ensureCapacity(chunk, chunkLength + 1);
+        chunk[chunkLength++] = ']';
+        chunkEventHandler.onChunk(chunk, chunkLength, chunkFirstSequence);
+        chunk = null;
+      }
+
+      // records are separated by whitespace only
+      b = nextNonWhitespace();
+      if (ndjson) {
+        continue;
+      }
+
+      // objects are followed by a comma and another object, or by the end of the array
+      expectObject = b == ',';
+      if (expectObject) {
+        b = nextNonWhitespace();
+      } else if (b != ']') {
+        invalidJson();
+      }
+    }
+
+    if (chunk != null) {
+      chunk = ensureCapacity(chunk, chunkLength + 1);
+      chunk[chunkLength++] = ']';
+      chunkEventHandler.onChunk(chunk, chunkLength, chunkFirstSequence);
+    }
+
+    // nothing may follow the end of the array
+    if (!ndjson && nextNonWhitespace() >= 0) {
+      invalidJson();
+    }
+  }
+
+  /**
+   * Closes the input stream.
+   */
+  void close() throws IOException {
+    inputStream.close();
+  }
+
+  /**
+   * Copies bytes of the read buffer to the end of the chunk, growing it when needed.
+   *
+   * @return The chunk, or a larger copy of it
+   */
+  private byte[] append(byte[] chunk, int chunkLength, int from, int to) {
+    chunk = ensureCapacity(chunk, chunkLength + to - from);
+    System.arraycopy(readBuffer, from, chunk, chunkLength, to - from);
+    return chunk;
+  }
+
+  private static byte[] ensureCapacity(byte[] chunk, int capacity) {
+    if (capacity <= chunk.length) {
+      return chunk;
+    }
+    return Arrays.copyOf(chunk, Math.max(capacity, chunk.length * 2));
+  }
+
+  private void fill() throws IOException {
+    readPosition = 0;
+    readLimit = Math.max(0, inputStream.read(readBuffer));
+  }
+
+  private int next() throws IOException {
+    if (readPosition == readLimit) {
+      fill();
+      if (readLimit == 0) {
+        return -1;
+      }
+    }
+    return readBuffer[readPosition++] & 0xff;
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    int b;
+    do {
+      b = next();
+    } while (b == ' ' || b == '\t' || b == '\n' || b == '\r');
+    return b;
+  }
+
+  private void invalidJson() throws IOException {
+    close();
+    throw new InvalidInputException(ErrorCode.INVALID_JSON, ErrorMessages.INVALID_JSON);
+  }
+}
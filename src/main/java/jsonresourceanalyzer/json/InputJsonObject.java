@@ -1,14 +1,17 @@
 package jsonresourceanalyzer.json;
 
 import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.InvalidInputException;
 import jsonresourceanalyzer.constants.ErrorMessages;
 import java.util.HashMap;
+import jsonresourceanalyzer.enums.SizeSource;
 
 public class InputJsonObject {
 
   protected static final String PATH = "path";
   protected static final String SIZE = "size";
   protected static final String URL = "url";
+  protected static final String SIZE_SOURCE = "sizeSource";
 
   protected static HashMap<String, Class<?>> validPropertyNames;
 
@@ -28,14 +31,28 @@ public class InputJsonObject {
     return validPropertyNames.containsKey(propertyName);
   }
 
+  private String digest;
+  private boolean journaled;
   private String path;
+  private long sequence;
   private Integer size;
   private String url;
+  private SizeSource sizeSource;
+  private boolean metadataOnly;
 
   public String getPath() {
     return path;
   }
 
+  /**
+   * Returns the position of this object in the input array, starting at 0.
+   *
+   * @return The sequence number
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
   public Integer getSize() {
     return size;
   }
@@ -44,6 +61,51 @@ public class InputJsonObject {
     return url;
   }
 
+  public SizeSource getSizeSource() {
+    return sizeSource;
+  }
+
+  /**
+   * Returns the hex digest of the resource body, or null if none was computed.
+   *
+   * @return The digest
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  public void setDigest(String digest) {
+    this.digest = digest;
+  }
+
+  /**
+   * Returns whether this object was restored from the checkpoint journal, and so is already
+   * recorded in it.
+   *
+   * @return Whether this object was restored from the journal
+   */
+  public boolean isJournaled() {
+    return journaled;
+  }
+
+  public void setJournaled(boolean journaled) {
+    this.journaled = journaled;
+  }
+
+  /**
+   * Returns whether checking this object with metadata requests is enough, because it is unchanged
+   * since the previous output or was left out of the validation sample.
+   *
+   * @return Whether this object is only checked with metadata requests
+   */
+  public boolean isMetadataOnly() {
+    return metadataOnly;
+  }
+
+  public void setMetadataOnly(boolean metadataOnly) {
+    this.metadataOnly = metadataOnly;
+  }
+
   public void setProperty(String name, Object value) {
     switch (name) {
       case PATH:
@@ -56,22 +118,34 @@ public class InputJsonObject {
         url = (String) value;
         break;
       default:
-        System.err.println(String.format(ErrorMessages.UNKNOWN_PROPERTY, name));
-        System.exit(ErrorCode.UNKNOWN_PROPERTY.getValue());
+        throw new InvalidInputException(
+            ErrorCode.UNKNOWN_PROPERTY,
+            String.format(ErrorMessages.UNKNOWN_PROPERTY, name)
+        );
     }
   }
 
+  public void setSequence(long sequence) {
+    this.sequence = sequence;
+  }
+
   public void setSize(Integer size) {
     this.size = size;
   }
 
+  public void setSizeSource(SizeSource sizeSource) {
+    this.sizeSource = sizeSource;
+  }
+
   /**
    * Validates that this has no null fields.
    */
   public void validate() {
     if (path == null || size == null || url == null) {
-      System.err.println(ErrorMessages.INVALID_JSON_INPUT_OBJECT);
-      System.exit(ErrorCode.INVALID_JSON_INPUT_OBJECT.getValue());
+      throw new InvalidInputException(
+          ErrorCode.INVALID_JSON_INPUT_OBJECT,
+          ErrorMessages.INVALID_JSON_INPUT_OBJECT
+      );
     }
   }
 }
@@ -1,116 +1,350 @@
 package jsonresourceanalyzer.json;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToLongFunction;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.cache.DiskSizeCache;
+import jsonresourceanalyzer.cache.UrlSizeCache;
+import jsonresourceanalyzer.constants.InfoMessages;
 import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.InvalidInputException;
 import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.enums.FetchEngine;
+import jsonresourceanalyzer.enums.SizingStrategy;
+import jsonresourceanalyzer.http.AsyncUrlResourceSizer;
+import jsonresourceanalyzer.http.HostConnectionLimiter;
+import jsonresourceanalyzer.http.ResourceSize;
+import jsonresourceanalyzer.http.RetryPolicy;
+import jsonresourceanalyzer.http.UrlResourceSizer;
+import jsonresourceanalyzer.metrics.Metrics;
 
 /**
  * This class is responsible for validating a InputJsonObject.
  */
 public class InputJsonObjectValidator {
 
-  public static void validate(InputJsonObject inputJsonObject) {
-    new InputJsonObjectValidator(inputJsonObject).validate();
-  }
-
-  private static final int MAX_ATTEMPTS = 5;
-  private static final int EOF = -1;
+  private final AsyncUrlResourceSizer asyncUrlResourceSizer;
+  private final DiskSizeCache diskSizeCache;
+  // whether objects not limited to metadata are sized by downloading their bodies
+  private final boolean downloading;
+  private final HostConnectionLimiter hostConnectionLimiter;
+  private final AsyncUrlResourceSizer metadataAsyncUrlResourceSizer;
+  private final UrlResourceSizer metadataUrlResourceSizer;
+  private final UrlSizeCache metadataUrlSizeCache;
+  private final UrlResourceSizer urlResourceSizer;
+  private final UrlSizeCache urlSizeCache;
 
-  private final InputJsonObject inputJsonObject;
+  /**
+   * Creates a validator. When there is a previous output, objects marked unchanged since then are
+   * only checked with metadata requests, whatever the sizing strategy, and so are objects left out
+   * of the validation sample. A server's jobs may each name a previous output, a sample or the
+   * metadata strategy, so a validator for a server always has both kinds of sizer. Metadata
+   * requests are conditional when the disk cache holds validators for the url.
+   *
+   * @param argParser Parsed arguments
+   */
+  public InputJsonObjectValidator(ArgParser argParser) {
+    hostConnectionLimiter = new HostConnectionLimiter(
+        argParser.getMaxConnectionsPerHost(),
+        argParser.getIdleTimeout()
+    );
+    RetryPolicy retryPolicy = new RetryPolicy(
+        argParser.getConnectTimeout(),
+        argParser.getReadTimeout(),
+        argParser.getMaxAttempts(),
+        argParser.getRetryBackoff()
+    );
+    // a server's jobs each choose their own strategy, so its full sizers download and jobs asking
+    // for metadata have their objects checked by the metadata sizers
+    SizingStrategy sizingStrategy =
+        argParser.isServe() ? SizingStrategy.DOWNLOAD : argParser.getSizingStrategy();
+    asyncUrlResourceSizer = argParser.getFetchEngine() == FetchEngine.ASYNC
+        ? new AsyncUrlResourceSizer(
+            sizingStrategy,
+            hostConnectionLimiter,
+            retryPolicy,
+            argParser.isHedge(),
+            argParser.getDigestAlgorithm()
+        )
+        : null;
+    diskSizeCache = argParser.getDiskCacheFile() != null
+        ? new DiskSizeCache(
+            argParser.getDiskCacheFile(),
+            argParser.getDiskCacheMaxAge() * 1000L,
+            argParser.getDigestAlgorithm()
+        )
+        : null;
+    downloading = sizingStrategy == SizingStrategy.DOWNLOAD;
+    urlResourceSizer = new UrlResourceSizer(
+        sizingStrategy,
+        hostConnectionLimiter,
+        retryPolicy,
+        argParser.getDigestAlgorithm()
+    );
 
-  private InputJsonObjectValidator(InputJsonObject inputJsonObject) {
-    this.inputJsonObject = inputJsonObject;
+    // metadata only objects share the sizers when metadata is already the strategy
+    boolean separateMetadataSizers =
+        (argParser.getPreviousOutputFile() != null
+            || argParser.isSampling()
+            || argParser.isServe())
+        && sizingStrategy != SizingStrategy.METADATA;
+    metadataAsyncUrlResourceSizer = separateMetadataSizers && asyncUrlResourceSizer != null
+        ? new AsyncUrlResourceSizer(
+            SizingStrategy.METADATA,
+            hostConnectionLimiter,
+            retryPolicy,
+            argParser.isHedge(),
+            argParser.getDigestAlgorithm()
+        )
+        : asyncUrlResourceSizer;
+    metadataUrlResourceSizer = separateMetadataSizers
+        ? new UrlResourceSizer(
+            SizingStrategy.METADATA,
+            hostConnectionLimiter,
+            retryPolicy,
+            argParser.getDigestAlgorithm()
+        )
+        : urlResourceSizer;
+    urlSizeCache = argParser.getUrlCacheSize() > 0
+        ? new UrlSizeCache(argParser.getUrlCacheSize())
+        : null;
+    // sizes found by the metadata sizers must not stand in for a download, so each kind of sizer
+    // has a cache of its own
+    metadataUrlSizeCache = separateMetadataSizers && urlSizeCache != null
+        ? new UrlSizeCache(argParser.getUrlCacheSize())
+        : urlSizeCache;
   }
 
   /**
-   * Counts the size of the resource pointed to by the URL in bytes.
-   *
-   * @return The integer size in bytes
+   * Releases the resources held by the validator, writing out the disk cache if there is one.
    */
-  private int countUrlResourceSizeInBytes() {
-    InputStream urlInputStream = openUrlInputStream();
-
-    // read bytes from the url stream until the end of the file is reached
-    int urlResourceSize = 0;
-    int byteRead = 0;
-    while (byteRead != EOF) {
-      try {
-        byteRead = urlInputStream.read();
-        if (byteRead != EOF) {
-          urlResourceSize++;
-        }
-      } catch (IOException ex) {
-        System.err.println(
-            String.format(
-                ErrorMessages.UNKNOWN_ERROR_WHILE_READING_URL_STREAM,
-                inputJsonObject.getUrl(),
-                ex.getMessage()
-            )
-        );
-        System.exit(ErrorCode.UNKNOWN_ERROR_WHILE_READING_URL_STREAM.getValue());
-      }
+  public void close() {
+    if (asyncUrlResourceSizer != null) {
+      asyncUrlResourceSizer.close();
+    }
+    if (metadataAsyncUrlResourceSizer != asyncUrlResourceSizer) {
+      metadataAsyncUrlResourceSizer.close();
+    }
+    if (diskSizeCache != null) {
+      diskSizeCache.close();
     }
+  }
 
-    try {
-      urlInputStream.close();
-    } catch (IOException ex) {
+  /**
+   * Prints statistics about the host connections and the work saved by the URL size caches to
+   * stderr.
+   */
+  public void reportStatistics() {
+    long requests = Math.max(Metrics.REQUESTS.sum(), 1);
+    System.err.println(
+        String.format(
+            InfoMessages.REQUEST_STATISTICS,
+            Metrics.REQUESTS.sum(),
+            Metrics.RETRIES.sum(),
+            Metrics.RETRIES.sum() * 100.0 / requests,
+            Metrics.HEDGED_REQUESTS.sum(),
+            Metrics.HEDGED_REQUESTS.sum() * 100.0 / requests,
+            Metrics.HEDGE_WINS.sum()
+        )
+    );
+    System.err.println(
+        String.format(
+            InfoMessages.HOST_CONNECTION_STATISTICS,
+            hostConnectionLimiter.getLeaseCount(),
+            hostConnectionLimiter.getLeaseWaitCount()
+        )
+    );
+    if (diskSizeCache != null) {
       System.err.println(
-          String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_CLOSING_URL_INPUT_STREAM, ex.getMessage())
+          String.format(
+              InfoMessages.DISK_SIZE_CACHE_STATISTICS,
+              diskSizeCache.getEntryCount(),
+              diskSizeCache.getRevalidationCount()
+          )
       );
-      System.exit(ErrorCode.UNKNOWN_ERROR_WHILE_CLOSING_URL_STREAM.getValue());
     }
+    if (urlSizeCache != null) {
+      System.err.println(
+          String.format(
+              InfoMessages.URL_SIZE_CACHE_STATISTICS,
+              sumUrlSizeCacheCounts(UrlSizeCache::getHitCount),
+              sumUrlSizeCacheCounts(UrlSizeCache::getMergedCount),
+              sumUrlSizeCacheCounts(UrlSizeCache::getMissCount),
+              sumUrlSizeCacheCounts(UrlSizeCache::getEvictionCount)
+          )
+      );
+    }
+  }
 
-    return urlResourceSize;
+  /**
+   * Adds up a count of the URL size caches, of which there are two when metadata only objects have
+   * their own.
+   *
+   * @param count The count of one cache
+   * @return The count of every cache
+   */
+  private long sumUrlSizeCacheCounts(ToLongFunction<UrlSizeCache> count) {
+    long sum = count.applyAsLong(urlSizeCache);
+    if (metadataUrlSizeCache != urlSizeCache) {
+      sum += count.applyAsLong(metadataUrlSizeCache);
+    }
+    return sum;
   }
 
   /**
-   * Opens an input stream from the URL.
+   * Parses the URL of the InputJsonObject.
    *
-   * @return The URL's input stream
+   * @param inputJsonObject The InputJsonObject
+   * @return The URL
    */
-  private InputStream openUrlInputStream() {
-    URL url;
+  private static URL parseUrl(InputJsonObject inputJsonObject) {
     try {
-      url = new URL(inputJsonObject.getUrl());
+      return new URL(inputJsonObject.getUrl());
     } catch (MalformedURLException ex) {
-      System.err.println(String.format(ErrorMessages.INVALID_URL, inputJsonObject.getUrl()));
-      System.exit(ErrorCode.INVALID_URL.getValue());
-      return null;
+      throw new InvalidInputException(
+          ErrorCode.INVALID_URL,
+          String.format(ErrorMessages.INVALID_URL, inputJsonObject.getUrl())
+      );
     }
+  }
 
-    // attempt to open the stream 5 times
-    IOException ioException = null;
-    for (int i = 0; i < MAX_ATTEMPTS; i++) {
-      try {
-        return url.openStream();
-      } catch (IOException ex) {
-        ioException = ex;
-      }
+  /**
+   * Determines the size of the resource pointed to by the URL of the InputJsonObject.
+   *
+   * @param inputJsonObject The InputJsonObject whose URL resource should be sized
+   * @return The size of the resource and how it was found
+   */
+  private ResourceSize sizeUrlResource(InputJsonObject inputJsonObject) {
+    URL url = parseUrl(inputJsonObject);
+    UrlResourceSizer sizer = inputJsonObject.isMetadataOnly()
+        ? metadataUrlResourceSizer
+        : urlResourceSizer;
+    UrlSizeCache cache = inputJsonObject.isMetadataOnly() ? metadataUrlSizeCache : urlSizeCache;
+    boolean downloaded = downloading && !inputJsonObject.isMetadataOnly();
+    if (cache == null) {
+      return sizeUrlResource(url, sizer, downloaded);
     }
+    return cache.get(url, cacheMissUrl -> sizeUrlResource(cacheMissUrl, sizer, downloaded));
+  }
 
-    // a connection to the URL could not be established. report error and exit
-    System.err.println(
-        String.format(
-            ErrorMessages.UNKNOWN_ERROR_WHILE_OPENING_URL_STREAM,
-            inputJsonObject.getUrl(),
-            ioException.getMessage()
-        )
+  /**
+   * Starts determining the size of the resource pointed to by the URL of the InputJsonObject
+   * without blocking.
+   *
+   * @param inputJsonObject The InputJsonObject whose URL resource should be sized
+   * @return A future completed with the size of the resource and how it was found
+   */
+  private CompletableFuture<ResourceSize> sizeUrlResourceAsync(InputJsonObject inputJsonObject) {
+    URL url = parseUrl(inputJsonObject);
+    AsyncUrlResourceSizer sizer = inputJsonObject.isMetadataOnly()
+        ? metadataAsyncUrlResourceSizer
+        : asyncUrlResourceSizer;
+    UrlSizeCache cache = inputJsonObject.isMetadataOnly() ? metadataUrlSizeCache : urlSizeCache;
+    boolean downloaded = downloading && !inputJsonObject.isMetadataOnly();
+    if (cache == null) {
+      return sizeUrlResourceAsync(url, sizer, downloaded);
+    }
+    return cache.getAsync(
+        url,
+        cacheMissUrl -> sizeUrlResourceAsync(cacheMissUrl, sizer, downloaded)
+    );
+  }
+
+  /**
+   * Starts determining the size of the resource pointed to by the URL without blocking,
+   * revalidating the size stored in the disk cache if there is one.
+   *
+   * @param url        The URL of the resource
+   * @param sizer      The sizer to use
+   * @param downloaded Whether the sizer downloads the body, and so must compute its digest
+   * @return A future completed with the size of the resource and how it was found
+   */
+  private CompletableFuture<ResourceSize> sizeUrlResourceAsync(
+      URL url,
+      AsyncUrlResourceSizer sizer,
+      boolean downloaded
+  ) {
+    long start = System.nanoTime();
+    CompletableFuture<ResourceSize> resourceSize = diskSizeCache == null
+        ? sizer.size(url, null)
+        : sizer.size(url, diskSizeCache.get(url, downloaded)).thenApply(size -> {
+          diskSizeCache.put(url, size);
+          return size;
+        });
+    return resourceSize.whenComplete(
+        (size, throwable) -> Metrics.SIZING_LATENCY.recordSince(start)
     );
-    System.exit(ErrorCode.UNKNOWN_ERROR_WHILE_OPENING_URL_STREAM.getValue());
-    return null;
+  }
+
+  /**
+   * Determines the size of the resource pointed to by the URL, revalidating the size stored in the
+   * disk cache if there is one.
+   *
+   * @param url        The URL of the resource
+   * @param sizer      The sizer to use
+   * @param downloaded Whether the sizer downloads the body, and so must compute its digest
+   * @return The size of the resource and how it was found
+   */
+  private ResourceSize sizeUrlResource(URL url, UrlResourceSizer sizer, boolean downloaded) {
+    long start = System.nanoTime();
+    try {
+      if (diskSizeCache == null) {
+        return sizer.size(url);
+      }
+
+      ResourceSize resourceSize = sizer.size(url, diskSizeCache.get(url, downloaded));
+      diskSizeCache.put(url, resourceSize);
+      return resourceSize;
+    } finally {
+      Metrics.SIZING_LATENCY.recordSince(start);
+    }
   }
 
   /**
    * Validates that the InputJsonObject has a valid URL and corrects the size if it differs.
+   *
+   * @param inputJsonObject The InputJsonObject to validate
+   */
+  public void validate(InputJsonObject inputJsonObject) {
+    inputJsonObject.validate();
+    applyResourceSize(inputJsonObject, sizeUrlResource(inputJsonObject));
+  }
+
+  /**
+   * Starts validating the InputJsonObject with the asynchronous fetch engine. The returned future
+   * completes once the size has been corrected.
+   *
+   * @param inputJsonObject The InputJsonObject to validate
+   * @return A future completed with the validated InputJsonObject
    */
-  public void validate() {
+  public CompletableFuture<InputJsonObject> validateAsync(InputJsonObject inputJsonObject) {
+    if (asyncUrlResourceSizer == null) {
+      validate(inputJsonObject);
+      return CompletableFuture.completedFuture(inputJsonObject);
+    }
+
     inputJsonObject.validate();
+    return sizeUrlResourceAsync(inputJsonObject).thenApply(resourceSize -> {
+      applyResourceSize(inputJsonObject, resourceSize);
+      return inputJsonObject;
+    });
+  }
+
+  /**
+   * Records how the size of the URL resource was found and corrects the size of the
+   * InputJsonObject if it differs.
+   *
+   * @param inputJsonObject The InputJsonObject being validated
+   * @param resourceSize    The size of its URL resource
+   */
+  private void applyResourceSize(InputJsonObject inputJsonObject, ResourceSize resourceSize) {
+    inputJsonObject.setSizeSource(resourceSize.getSizeSource());
+    inputJsonObject.setDigest(resourceSize.getDigest());
 
     // report warning and correct size if url resource size differs from reported size in the InputJsonObject
-    int urlResourceSize = countUrlResourceSizeInBytes();
+    int urlResourceSize = resourceSize.getSize();
     if (urlResourceSize != inputJsonObject.getSize()) {
       System.err.println(
           String.format(
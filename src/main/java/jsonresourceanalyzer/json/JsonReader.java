@@ -4,13 +4,33 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.io.MappedFileInputStream;
+import jsonresourceanalyzer.metrics.Metrics;
 import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.AnalyzerException;
+import jsonresourceanalyzer.exceptions.InvalidInputException;
+import jsonresourceanalyzer.enums.InputFormat;
 import jsonresourceanalyzer.constants.ErrorMessages;
 
 /**
- * This class is responsible for reading the JSON from either the file or url provided.
+ * This class is responsible for reading the JSON from either the file or url provided. Files may
+ * be read in parallel, in which case the InputChunker splits them into chunks of whole objects and
+ * each chunk is parsed by its own JsonReader on a pool of parse threads. Any failure, including
+ * one thrown by an event handler on a parse thread, is rethrown by readFile once the parse threads
+ * have stopped, and the input is closed.
  */
 public class JsonReader {
 
@@ -44,30 +64,153 @@ public class JsonReader {
     Object read() throws IOException;
   }
 
+  private static final int CHUNK_SIZE = 4 << 20;
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final String PARSE_THREAD_NAME = "json-parser";
+  // one object in every 64 has its parse time recorded
+  private static final long PARSE_TIMING_SAMPLE_MASK = 63;
+
   private JsonParser jsonParser;
+  private final PathIndex pathIndex;
+  // first failure of a parse thread, shared by every chunk of a file read in parallel
+  private final AtomicReference<RuntimeException> parseFailure;
+  private boolean ndjson;
+  private InputStream parallelInput;
+  private int parseThreads;
   private ObjectReadEventHandler objectReadEventHandler;
   private ReadCompleteEventHandler readCompleteEventHandler;
   private ReadStartEventHandler readStartEventHandler;
 
   public JsonReader(ArgParser argParser) {
+    // URL input is always parsed on one thread
+    this(argParser, openInput(argParser), argParser.getUrl() == null);
+  }
+
+  /**
+   * Creates a JsonReader reading the given stream in place of the input named by the arguments.
+   * The stream is closed once it has been read, or reading has failed.
+   *
+   * @param argParser   Parsed arguments
+   * @param inputStream The stream to read
+   */
+  public JsonReader(ArgParser argParser, InputStream inputStream) {
+    this(argParser, inputStream, true);
+  }
+
+  private JsonReader(ArgParser argParser, InputStream inputStream, boolean parallel) {
+    pathIndex = new PathIndex();
+    parseFailure = new AtomicReference<>();
+    ndjson = argParser.getInputFormat() == InputFormat.NDJSON;
+
     JsonFactory jsonFactory = new JsonFactory();
     try {
-      if (argParser.getFile() != null) {
-        jsonParser = jsonFactory.createParser(argParser.getFile());
+      inputStream = decompressIfGzipped(inputStream);
+
+      if (parallel && argParser.getParseThreads() > 1) {
+        // files and streams parsed in parallel are scanned by the InputChunker
+        parallelInput = inputStream;
+        parseThreads = argParser.getParseThreads();
       } else {
-        jsonParser = jsonFactory.createParser(argParser.getUrl());
+        jsonParser = jsonFactory.createParser(inputStream);
       }
 
     } catch (JsonParseException parseException) {
       close();
-      System.err.println(ErrorMessages.INVALID_JSON);
-      System.exit(ErrorCode.INVALID_JSON.getValue());
+      throw new InvalidInputException(ErrorCode.INVALID_JSON, ErrorMessages.INVALID_JSON);
 
     } catch (IOException ioException) {
-      System.err.println(
+      throw new InvalidInputException(
+          ErrorCode.INVALID_INPUT_STREAM,
           String.format(ErrorMessages.INVALID_INPUT_STREAM, ioException.getMessage())
       );
-      System.exit(ErrorCode.INVALID_INPUT_STREAM.getValue());
+    }
+  }
+
+  /**
+   * Opens the input named by the arguments.
+   *
+   * @param argParser Parsed arguments
+   * @return Stream of the input file, standard input or the input URL
+   */
+  private static InputStream openInput(ArgParser argParser) {
+    try {
+      if (argParser.isStdin()) {
+        return System.in;
+      } else if (argParser.getFile() != null) {
+        return openFile(argParser.getFile(), argParser.isMmap());
+      }
+      // a stalled input fails at the timeouts rather than holding the run
+      URLConnection urlConnection = argParser.getUrl().openConnection();
+      urlConnection.setConnectTimeout(
+          (int) TimeUnit.SECONDS.toMillis(argParser.getConnectTimeout())
+      );
+      urlConnection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(argParser.getReadTimeout()));
+      return urlConnection.getInputStream();
+    } catch (IOException ex) {
+      throw new InvalidInputException(
+          ErrorCode.INVALID_INPUT_STREAM,
+          String.format(ErrorMessages.INVALID_INPUT_STREAM, ex.getMessage())
+      );
+    }
+  }
+
+  /**
+   * Opens the input file, either as a stream of read system calls or through memory mapping.
+   *
+   * @param file The input file
+   * @param mmap Whether to memory map the file
+   * @return Stream of the file contents
+   */
+  private static InputStream openFile(File file, boolean mmap) throws IOException {
+    if (mmap) {
+      return new MappedFileInputStream(file);
+    }
+    return new FileInputStream(file);
+  }
+
+  /**
+   * Wraps the input in a gzip decompressing stream when it starts with the gzip magic number, so
+   * gzipped manifests are read without being decompressed to disk first. Only a stream that cannot
+   * be marked is buffered to look at its first bytes. A memory mapped file is read in place, since
+   * the parser and the InputChunker copy from it into buffers of their own.
+   *
+   * @param inputStream The raw input
+   * @return The input, decompressed if it is gzipped
+   */
+  static InputStream decompressIfGzipped(InputStream inputStream) throws IOException {
+    if (!inputStream.markSupported()) {
+      inputStream = new BufferedInputStream(inputStream, GZIP_BUFFER_SIZE);
+    }
+    inputStream.mark(2);
+    int magic = inputStream.read() | (inputStream.read() << 8);
+    inputStream.reset();
+
+    if (magic == GZIP_MAGIC) {
+      return new GZIPInputStream(inputStream, GZIP_BUFFER_SIZE);
+    }
+    return inputStream;
+  }
+
+  /**
+   * Creates a JsonReader for one chunk of a file read in parallel, sharing the path index and the
+   * object read event handler of the JsonReader reading the whole file.
+   *
+   * @param parent JsonReader reading the whole file
+   * @param chunk  Buffer holding the chunk as a JSON array
+   * @param length Number of bytes of the buffer used by the chunk
+   */
+  private JsonReader(JsonReader parent, byte[] chunk, int length) {
+    pathIndex = parent.pathIndex;
+    parseFailure = parent.parseFailure;
+    objectReadEventHandler = parent.objectReadEventHandler;
+    try {
+      jsonParser = new JsonFactory().createParser(chunk, 0, length);
+    } catch (IOException ex) {
+      throw new InvalidInputException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_PARSING,
+          String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_PARSING, ex.getMessage())
+      );
     }
   }
 
@@ -78,10 +221,10 @@ public class JsonReader {
     try {
       jsonParser.close();
     } catch (IOException ex) {
-      System.err.println(
+      throw new InvalidInputException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_CLOSING_INPUT_STREAM,
           String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_CLOSING_INPUT_STREAM, ex.getMessage())
       );
-      System.exit(ErrorCode.UNKNOWN_ERROR_WHILE_CLOSING_INPUT_STREAM.getValue());
     }
   }
 
@@ -118,8 +261,7 @@ public class JsonReader {
       int integer = jsonParser.nextIntValue(-1);
       if (integer == -1) {
         close();
-        System.err.println(ErrorMessages.INVALID_JSON);
-        System.exit(ErrorCode.INVALID_JSON.getValue());
+        throw new InvalidInputException(ErrorCode.INVALID_JSON, ErrorMessages.INVALID_JSON);
       }
       return integer;
     });
@@ -164,10 +306,47 @@ public class JsonReader {
    * readCompleteEventHandler is called.
    */
   public void readFile() {
+    try {
+      readInput();
+    } catch (RuntimeException ex) {
+      closeQuietly();
+      throw ex;
+    }
+  }
+
+  /**
+   * Closes the input after reading has failed, when it may still be open.
+   */
+  private void closeQuietly() {
+    try {
+      if (jsonParser != null) {
+        jsonParser.close();
+      }
+      if (parallelInput != null) {
+        parallelInput.close();
+      }
+    } catch (IOException ex) {
+      // reading has already failed, and that failure is the one reported
+    }
+  }
+
+  private void readInput() {
+    if (parallelInput != null) {
+      readFileInParallel();
+      return;
+    }
+
+    if (ndjson) {
+      readRecords();
+      return;
+    }
+
     if (nextToken() != JsonToken.START_ARRAY) {
       close();
-      System.err.println(ErrorMessages.INVALID_JSON_FORMAT_NOT_ARRAY);
-      System.exit(ErrorCode.INVALID_JSON_FORMAT_NOT_ARRAY.getValue());
+      throw new InvalidInputException(
+          ErrorCode.INVALID_JSON_FORMAT_NOT_ARRAY,
+          ErrorMessages.INVALID_JSON_FORMAT_NOT_ARRAY
+      );
     }
 
     // notify read start event handler that reading has begun
@@ -186,9 +365,166 @@ public class JsonReader {
       return;
     }
 
+    readObjects(0);
+
+    close();
+
+    // notify read complete event handler that reading has completed
+    if (readCompleteEventHandler != null) {
+      readCompleteEventHandler.onReadComplete();
+    }
+  }
+
+  /**
+   * Reads newline delimited JSON, where every top level value must be an object and there is no
+   * enclosing array.
+   */
+  private void readRecords() {
+    // notify read start event handler that reading has begun
+    if (readStartEventHandler != null) {
+      readStartEventHandler.onReadStart();
+    }
+
+    // advance to the first record, unless the input is empty
+    if (nextToken() != null) {
+      readObjects(0);
+    }
+
+    close();
+
+    // notify read complete event handler that reading has completed
+    if (readCompleteEventHandler != null) {
+      readCompleteEventHandler.onReadComplete();
+    }
+  }
+
+  /**
+   * Reads the input file in parallel: the InputChunker scans it on this thread while the chunks it
+   * finds are parsed on the parse threads. At most two chunks per parse thread are held at once.
+   * Once any thread fails, no more chunks are parsed and the parse threads are interrupted, since
+   * they may be waiting on objects that will never complete.
+   */
+  private void readFileInParallel() {
+    ExecutorService parsePool = Executors.newFixedThreadPool(parseThreads, runnable -> {
+      Thread thread = new Thread(runnable, PARSE_THREAD_NAME);
+      thread.setDaemon(true);
+      return thread;
+    });
+    Semaphore chunkPermits = new Semaphore(parseThreads * 2);
+
+    try {
+      InputChunker inputChunker = new InputChunker(parallelInput, CHUNK_SIZE, ndjson);
+      if (!inputChunker.readStart()) {
+        inputChunker.close();
+        throw new InvalidInputException(
+            ErrorCode.INVALID_JSON_FORMAT_NOT_ARRAY,
+            ErrorMessages.INVALID_JSON_FORMAT_NOT_ARRAY
+        );
+      }
+
+      // notify read start event handler that reading has begun
+      if (readStartEventHandler != null) {
+        readStartEventHandler.onReadStart();
+      }
+
+      inputChunker.readChunks((chunk, length, firstSequence) -> {
+        throwIfParseFailed();
+        chunkPermits.acquireUninterruptibly();
+        parsePool.execute(() -> {
+          try {
+            if (parseFailure.get() == null) {
+              new JsonReader(this, chunk, length).readChunk(firstSequence);
+            }
+          } catch (RuntimeException ex) {
+            parseFailure.compareAndSet(null, ex);
+          } finally {
+            chunkPermits.release();
+          }
+        });
+      });
+      inputChunker.close();
+
+    } catch (IOException ex) {
+      parseFailure.compareAndSet(null, new InvalidInputException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_PARSING,
+          String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_PARSING, ex.getMessage())
+      ));
+
+    } catch (RuntimeException ex) {
+      parseFailure.compareAndSet(null, ex);
+
+    } finally {
+      if (parseFailure.get() == null) {
+        parsePool.shutdown();
+      } else {
+        parsePool.shutdownNow();
+      }
+      try {
+        parsePool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException ex) {
+        parseFailure.compareAndSet(null, new AnalyzerException(
+            ErrorCode.WORK_DISPATCHER_THREAD_INTERRUPTED,
+            ErrorMessages.WORK_DISPATCHER_THREAD_INTERRUPTED
+        ));
+      }
+    }
+    throwIfParseFailed();
+
+    // notify read complete event handler that reading has completed
+    if (readCompleteEventHandler != null) {
+      readCompleteEventHandler.onReadComplete();
+    }
+  }
+
+  /**
+   * Throws the first failure of the threads reading a file in parallel, if there is one.
+   */
+  private void throwIfParseFailed() {
+    RuntimeException failure = parseFailure.get();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Reads every object of a chunk built by the InputChunker.
+   *
+   * @param firstSequence Sequence number of the first object in the chunk
+   */
+  private void readChunk(long firstSequence) {
+    // chunks are always non-empty arrays
+    nextToken();
+    nextToken();
+    readObjects(firstSequence);
+    close();
+  }
+
+  /**
+   * Reads objects until the end of the array or, for newline delimited JSON, the end of the input,
+   * starting from the current token, and ensures that nothing follows the array.
+   *
+   * @param firstSequence Sequence number of the first object
+   */
+  private void readObjects(long firstSequence) {
     // while the end of the stream hasn't been reached
+    long sequence = firstSequence;
     while (jsonParser.currentToken() != null) {
+      // another parse thread has failed, so the rest of the chunk is not needed
+      if (parseFailure.get() != null) {
+        return;
+      }
+
+      // parsing an object takes about as long as reading the clock twice, so only a sample of
+      // objects is timed
+      boolean timed = (sequence & PARSE_TIMING_SAMPLE_MASK) == 0;
+      long start = timed ? System.nanoTime() : 0;
       InputJsonObject jsonObject = readObject();
+      jsonObject.setSequence(sequence++);
+      validatePathIsUnique(jsonObject);
+      if (timed) {
+        Metrics.PARSE_LATENCY.recordSince(start);
+      }
+      Metrics.OBJECTS_READ.increment();
 
       // notify object read event handler that an object has been read
       if (objectReadEventHandler != null) {
@@ -199,17 +535,9 @@ public class JsonReader {
       // if it was ensure that the next token is the end of the file
       if (nextToken() == JsonToken.END_ARRAY && nextToken() != null) {
         close();
-        System.err.println(ErrorMessages.INVALID_JSON);
-        System.exit(ErrorCode.INVALID_JSON.getValue());
+        throw new InvalidInputException(ErrorCode.INVALID_JSON, ErrorMessages.INVALID_JSON);
       }
     }
-
-    close();
-
-    // notify read complete event handler that reading has completed
-    if (readCompleteEventHandler != null) {
-      readCompleteEventHandler.onReadComplete();
-    }
   }
 
   /**
@@ -221,8 +549,7 @@ public class JsonReader {
     // make sure that there is nothing unexpected before attempting to read the next json object
     if (jsonParser.currentToken() != JsonToken.START_OBJECT) {
       close();
-      System.err.println(ErrorMessages.INVALID_JSON);
-      System.exit(ErrorCode.INVALID_JSON.getValue());
+      throw new InvalidInputException(ErrorCode.INVALID_JSON, ErrorMessages.INVALID_JSON);
     }
 
     // grab the next 3 fields and add them to the InputJsonObject
@@ -240,8 +567,7 @@ public class JsonReader {
 
     if (nextToken() != JsonToken.END_OBJECT) {
       close();
-      System.err.println(ErrorMessages.INVALID_JSON);
-      System.exit(ErrorCode.INVALID_JSON.getValue());
+      throw new InvalidInputException(ErrorCode.INVALID_JSON, ErrorMessages.INVALID_JSON);
     }
 
     return inputJsonObject;
@@ -249,7 +575,7 @@ public class JsonReader {
 
   /**
    * Attempts the wrapped read operation on the JSON input stream. If an IOException is thrown, it
-   * is logged and the system exits with the appropriate code.
+   * is rethrown as an InvalidInputException.
    *
    * @param readWrapper Wrapper read operation
    * @return The value returned by the readWrapper
@@ -260,7 +586,7 @@ public class JsonReader {
 
   /**
    * Attempts the wrapped read operation on the JSON input stream. If an IOException is thrown, it
-   * is logged and the system exits with the appropriate code.
+   * is rethrown as an InvalidInputException.
    *
    * @param readWrapper Wrapper read operation
    * @param returnType  Return type of the readWrapper
@@ -271,9 +597,37 @@ public class JsonReader {
       return (T) readWrapper.read();
     } catch (IOException ex) {
       close();
-      System.err.println(String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_PARSING, ex.getMessage()));
-      System.exit(ErrorCode.UNKNOWN_ERROR_WHILE_PARSING.getValue());
-      return null;
+      throw new InvalidInputException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_PARSING,
+          String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_PARSING, ex.getMessage())
+      );
+    }
+  }
+
+  /**
+   * Validates the path of the InputJsonObject has not been read before, so that duplicates are
+   * reported before any of their URLs are fetched.
+   *
+   * @param inputJsonObject The InputJsonObject just read
+   */
+  private void validatePathIsUnique(InputJsonObject inputJsonObject) {
+    // missing properties are reported when the object is validated
+    if (inputJsonObject.getPath() == null) {
+      return;
+    }
+
+    // the index is shared by every parse thread when reading in parallel
+    boolean added;
+    synchronized (pathIndex) {
+      added = pathIndex.add(inputJsonObject.getPath());
+    }
+
+    if (!added) {
+      close();
+      throw new InvalidInputException(
+          ErrorCode.INVALID_JSON_PATH_VALUE_DUPLICATES,
+          String.format(ErrorMessages.INVALID_JSON_PATH_VALUE_DUPLICATES, inputJsonObject.getPath())
+      );
     }
   }
 
@@ -285,8 +639,10 @@ public class JsonReader {
   private void validateProperty(String propertyName) {
     if (!InputJsonObject.isValidProperty(propertyName)) {
       close();
-      System.err.println(String.format(ErrorMessages.UNKNOWN_PROPERTY, propertyName));
-      System.exit(ErrorCode.UNKNOWN_PROPERTY.getValue());
+      throw new InvalidInputException(
+          ErrorCode.UNKNOWN_PROPERTY,
+          String.format(ErrorMessages.UNKNOWN_PROPERTY, propertyName)
+      );
     }
   }
 }
@@ -3,16 +3,35 @@ package jsonresourceanalyzer.json;
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.concurrency.BoundedMpscQueue;
+import jsonresourceanalyzer.io.ParallelGzipOutputStream;
+import jsonresourceanalyzer.enums.DigestAlgorithm;
 import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.AnalyzerException;
+import jsonresourceanalyzer.exceptions.StorageException;
 import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.enums.OutputFormat;
+import jsonresourceanalyzer.enums.SizeSource;
+import jsonresourceanalyzer.enums.SizingStrategy;
+import jsonresourceanalyzer.metrics.Metrics;
 
 /**
- * This class is responsible for writing the JSON to the output file.
+ * This class is responsible for writing the JSON to the output file. Worker threads hand objects to
+ * a single writer thread through a bounded queue, so they never wait on each other to write. The
+ * writer thread flushes the output every {@value #FLUSH_BATCH_SIZE} objects, or after
+ * {@value #FLUSH_INTERVAL_MILLIS}ms when objects arrive slowly. Paths are known to be unique by the
+ * time objects are written, since JsonReader rejects duplicates as they are read. If writing
+ * fails, the writer thread drops the objects still queued so producers never block on it, and the
+ * failure is rethrown to the next producer and by endFile.
  */
 public class JsonWriter {
 
@@ -21,22 +40,123 @@ public class JsonWriter {
     void write() throws IOException;
   }
 
+  private static final int FLUSH_BATCH_SIZE = 4096;
+  private static final long FLUSH_INTERVAL_MILLIS = 100;
+  private static final int WRITE_QUEUE_CAPACITY = 8192;
+  private static final String WRITER_THREAD_NAME = "json-writer";
+  // one object in every 64 has the time taken to hand it to the writer recorded
+  private static final long WRITE_TIMING_SAMPLE_MASK = 63;
+
   private JsonGenerator jsonGenerator;
-  private final SortedSet<String> pathSet;
+  private ParallelGzipOutputStream gzipOutputStream;
+  private final BoundedMpscQueue<InputJsonObject> writeQueue;
+  private final SizeSource defaultSizeSource;
+  private final DigestAlgorithm digestAlgorithm;
+  private final boolean ndjson;
+  private final CheckpointJournal checkpointJournal;
+  private Thread writerThread;
+  private volatile boolean writerParked;
+  private volatile boolean writing;
+  private volatile RuntimeException failure;
 
   public JsonWriter(ArgParser argParser) {
-    // since there is potential to have a large set, use a BST instead of a HashMap to optimize memory usage
-    pathSet = Collections.synchronizedSortedSet(new TreeSet<>());
+    this(argParser, null);
+  }
+
+  /**
+   * Creates a JsonWriter that records every object it writes in the checkpoint journal, and
+   * commits the journal whenever it flushes the output.
+   *
+   * @param argParser         Parsed arguments
+   * @param checkpointJournal The journal, or null to keep none
+   */
+  public JsonWriter(ArgParser argParser, CheckpointJournal checkpointJournal) {
+    this(argParser, openOutput(argParser), checkpointJournal);
+  }
+
+  /**
+   * Creates a JsonWriter writing to the given stream in place of the output named by the
+   * arguments. The stream is closed when the output ends.
+   *
+   * @param argParser         Parsed arguments
+   * @param outputStream      The stream to write to
+   * @param checkpointJournal The journal, or null to keep none
+   */
+  public JsonWriter(
+      ArgParser argParser,
+      OutputStream outputStream,
+      CheckpointJournal checkpointJournal
+  ) {
+    this.checkpointJournal = checkpointJournal;
+    writeQueue = new BoundedMpscQueue<>(WRITE_QUEUE_CAPACITY);
+
+    // a size counted from the body is what the download strategy implies, so it is the only source
+    // left out of the output
+    defaultSizeSource =
+        argParser.getSizingStrategy() == SizingStrategy.DOWNLOAD ? SizeSource.BODY : null;
+    ndjson = argParser.getOutputFormat() == OutputFormat.NDJSON;
+    digestAlgorithm = argParser.getDigestAlgorithm();
 
-    JsonFactory jsonFactory = new JsonFactory();
+    JsonFactory jsonFactory = createFactory(argParser.getOutputFormat());
 
     try {
-      jsonGenerator = jsonFactory.createGenerator(argParser.getOutputFile(), JsonEncoding.UTF8);
+      if (argParser.isGzipOutput()) {
+        gzipOutputStream = new ParallelGzipOutputStream(outputStream);
+        outputStream = gzipOutputStream;
+      }
+      jsonGenerator = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8);
+
+      // gzipped output is flushed by flush, which chooses how much of it to write out
+      if (gzipOutputStream != null) {
+        jsonGenerator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+      }
+
+      // records are terminated by a newline instead of being separated by a space
+      if (ndjson) {
+        jsonGenerator.setRootValueSeparator(null);
+      }
+    } catch (IOException ex) {
+      throw new StorageException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_OPENING_OUTPUT_FILE,
+          String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_OPENING_OUTPUT_FILE, ex.getMessage())
+      );
+    }
+  }
+
+  /**
+   * Opens the output named by the arguments.
+   *
+   * @param argParser Parsed arguments
+   * @return Stream of the output file or standard output
+   */
+  private static OutputStream openOutput(ArgParser argParser) {
+    try {
+      return argParser.isStdout()
+          ? new FileOutputStream(FileDescriptor.out)
+          : new FileOutputStream(argParser.getOutputFile());
     } catch (IOException ex) {
-      System.err.println(
+      throw new StorageException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_OPENING_OUTPUT_FILE,
           String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_OPENING_OUTPUT_FILE, ex.getMessage())
       );
-      System.exit(ErrorCode.UNKNOWN_ERROR_WHILE_OPENING_OUTPUT_FILE.getValue());
+    }
+  }
+
+  /**
+   * Creates the Jackson factory for the output format. Every format is written through the same
+   * JsonGenerator calls, so they all carry the same data.
+   *
+   * @param outputFormat The output format
+   * @return Factory creating generators for the format
+   */
+  static JsonFactory createFactory(OutputFormat outputFormat) {
+    switch (outputFormat) {
+      case SMILE:
+        return new SmileFactory();
+      case CBOR:
+        return new CBORFactory();
+      default:
+        return new JsonFactory();
     }
   }
 
@@ -47,31 +167,203 @@ public class JsonWriter {
     try {
       jsonGenerator.close();
     } catch (IOException ex) {
-      System.err.println(
+      throw new StorageException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_CLOSING_OUTPUT_STREAM,
           String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_CLOSING_OUTPUT_STREAM, ex.getMessage())
       );
-      System.exit(ErrorCode.UNKNOWN_ERROR_WHILE_CLOSING_OUTPUT_STREAM.getValue());
     }
   }
 
   /**
-   * Ends the output file by writing "}" and closing the stream.
+   * Ends the output file by writing "}", unless writing newline delimited JSON, and closing the
+   * stream. Waits for the writer thread to write every object queued before this call.
    */
   public void endFile() {
-    wrapWrite(() -> jsonGenerator.writeEndObject());
+    stopWriterThread();
+    if (failure != null) {
+      throw failure;
+    }
+
+    if (!ndjson) {
+      wrapWrite(() -> jsonGenerator.writeEndObject());
+    }
     close();
   }
 
   /**
-   * Begins the output file by writing "{" to the stream.
+   * Closes the output stream without ending the output, once the analysis has failed. Objects
+   * already queued are still written, and the journal committed, so a later run can resume from
+   * them, but the output is left incomplete.
+   */
+  public void abort() {
+    if (writerThread != null) {
+      stopWriterThread();
+    }
+    try {
+      if (failure == null) {
+        flush(false);
+      }
+      jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+      jsonGenerator.close();
+    } catch (IOException | RuntimeException ex) {
+      // the analysis has already failed, and that failure is the one reported
+    }
+  }
+
+  /**
+   * Waits for the writer thread to write every object queued, and stops it.
+   */
+  private void stopWriterThread() {
+    writing = false;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join();
+    } catch (InterruptedException ex) {
+      throw new AnalyzerException(
+          ErrorCode.WORK_DISPATCHER_THREAD_INTERRUPTED,
+          ErrorMessages.WORK_DISPATCHER_THREAD_INTERRUPTED
+      );
+    }
+  }
+
+  /**
+   * Begins the output file by writing "{" to the stream, unless writing newline delimited JSON,
+   * and starts the writer thread.
    */
   public void startFile() {
-    wrapWrite(() -> jsonGenerator.writeStartObject());
+    if (!ndjson) {
+      wrapWrite(() -> jsonGenerator.writeStartObject());
+    }
+
+    writing = true;
+    writerThread = new Thread(this::runWriterThread, WRITER_THREAD_NAME);
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Flushes the output, then commits the journal. A lazy flush of gzipped output may keep data
+   * short of its minimum block buffered, which the journal does not depend on: a resumed run
+   * rebuilds the output from the journal rather than appending to it.
+   *
+   * @param lazy Whether gzipped output may keep a short block buffered
+   */
+  private void flush(boolean lazy) {
+    wrapWrite(() -> {
+      jsonGenerator.flush();
+      if (gzipOutputStream != null) {
+        if (lazy) {
+          gzipOutputStream.lazyFlush();
+        } else {
+          gzipOutputStream.flush();
+        }
+      }
+    });
+    if (checkpointJournal != null) {
+      checkpointJournal.commit();
+    }
+  }
+
+  /**
+   * Body of the writer thread. Once writing fails, the failure is kept for the producers and
+   * queued objects are dropped until endFile is called.
+   */
+  private void runWriterThread() {
+    try {
+      writeQueuedObjects();
+    } catch (RuntimeException ex) {
+      failure = ex;
+      dropQueuedObjects();
+    }
+  }
+
+  /**
+   * Takes objects off the queue without writing them until endFile is called and the queue is
+   * empty, so producers are never blocked by a full queue.
+   */
+  private void dropQueuedObjects() {
+    long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+    while (writing || !writeQueue.isEmpty()) {
+      if (writeQueue.poll() != null) {
+        Metrics.WRITE_QUEUE_DEPTH.decrement();
+        continue;
+      }
+
+      writerParked = true;
+      if (writeQueue.isEmpty() && writing) {
+        LockSupport.parkNanos(flushIntervalNanos);
+      }
+      writerParked = false;
+    }
   }
 
   /**
-   * Wraps the write operation in a try/catch to handle the IOException and exit with appropriate
-   * code.
+   * Writes objects as they are queued until endFile is called and the
+   * queue is empty, flushing by batch size or by time.
+   */
+  private void writeQueuedObjects() {
+    long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+    long lastFlushNanos = System.nanoTime();
+    int unflushed = 0;
+
+    while (true) {
+      InputJsonObject inputJsonObject = writeQueue.poll();
+      if (inputJsonObject != null) {
+        Metrics.WRITE_QUEUE_DEPTH.decrement();
+        write(inputJsonObject);
+        Metrics.OBJECTS_WRITTEN.increment();
+        if (checkpointJournal != null) {
+          checkpointJournal.record(inputJsonObject);
+        }
+        if (++unflushed >= FLUSH_BATCH_SIZE) {
+          flush(false);
+          lastFlushNanos = System.nanoTime();
+          unflushed = 0;
+        }
+        continue;
+      }
+
+      // the queue is empty; flush what has been written if it has waited long enough, or straight
+      // away for newline delimited records so consumers downstream see them as soon as possible.
+      // Flushing straight away may leave a short gzipped block buffered, but not past the interval
+      long sinceFlushNanos = System.nanoTime() - lastFlushNanos;
+      boolean due = sinceFlushNanos >= flushIntervalNanos;
+      if ((unflushed > 0 && (ndjson || due)) || (due && hasBufferedOutput())) {
+        flush(!due);
+        if (!hasBufferedOutput()) {
+          lastFlushNanos = System.nanoTime();
+          sinceFlushNanos = 0;
+        }
+        unflushed = 0;
+      }
+
+      if (!writing) {
+        // endFile is only called once every producer has finished, so nothing else can arrive
+        if (writeQueue.isEmpty()) {
+          return;
+        }
+        continue;
+      }
+
+      // announce the park before checking the queue again so a producer cannot miss waking us
+      writerParked = true;
+      if (writeQueue.isEmpty() && writing) {
+        LockSupport.parkNanos(
+            unflushed > 0 || hasBufferedOutput()
+                ? flushIntervalNanos - sinceFlushNanos
+                : flushIntervalNanos
+        );
+      }
+      writerParked = false;
+    }
+  }
+
+  private boolean hasBufferedOutput() {
+    return gzipOutputStream != null && gzipOutputStream.hasBufferedData();
+  }
+
+  /**
+   * Wraps the write operation in a try/catch to rethrow the IOException as a StorageException.
    *
    * @param writerWrapper WriterWrapper with write operation embedded.
    */
@@ -79,31 +371,59 @@ public class JsonWriter {
     try {
       writerWrapper.write();
     } catch (IOException ex) {
-      System.err.println(
+      throw new StorageException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_WRITING,
           String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_WRITING, ex.getMessage())
       );
-      System.exit(ErrorCode.UNKNOWN_ERROR_WHILE_WRITING.getValue());
     }
   }
 
   /**
-   * Writes the InputJsonObject to the output stream.
+   * Queues the InputJsonObject to be written to the output stream by the writer thread. Waits only
+   * when the queue is full. Throws the writer thread's failure once writing has failed.
    *
    * @param inputJsonObject The InputJsonObject to write to output
    */
-  public synchronized void writeObject(InputJsonObject inputJsonObject) {
-    // check to see if the InputJsonObject path value has already been written to the output file
-    // if so, report invalid JSON error and exit with appropriate code
-    if (!pathSet.add(inputJsonObject.getPath())) {
-      System.err.println(
-          String.format(ErrorMessages.INVALID_JSON_PATH_VALUE_DUPLICATES, inputJsonObject.getPath())
+  public void writeObject(InputJsonObject inputJsonObject) {
+    if (failure != null) {
+      throw failure;
+    }
+
+    // like parsing, handing an object over is too quick to time every one of them
+    boolean timed = (inputJsonObject.getSequence() & WRITE_TIMING_SAMPLE_MASK) == 0;
+    long start = timed ? System.nanoTime() : 0;
+    Metrics.WRITE_QUEUE_DEPTH.increment();
+    try {
+      writeQueue.put(inputJsonObject);
+    } catch (InterruptedException ex) {
+      throw new AnalyzerException(
+          ErrorCode.WORK_DISPATCHER_THREAD_INTERRUPTED,
+          ErrorMessages.WORK_DISPATCHER_THREAD_INTERRUPTED
       );
-      System.exit(ErrorCode.INVALID_JSON_PATH_VALUE_DUPLICATES.getValue());
     }
+    if (timed) {
+      Metrics.WRITE_WAIT_LATENCY.recordSince(start);
+    }
+    if (writerParked) {
+      LockSupport.unpark(writerThread);
+    }
+  }
 
+  /**
+   * Writes the InputJsonObject to the output stream. Only called from the writer thread.
+   *
+   * @param inputJsonObject The InputJsonObject to write to output
+   */
+  private void write(InputJsonObject inputJsonObject) {
     wrapWrite(() -> {
-      jsonGenerator.writeFieldName(inputJsonObject.getPath());
-      jsonGenerator.writeStartObject();
+      // newline delimited records carry their path, since there is no enclosing object to key them
+      if (ndjson) {
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeStringField(InputJsonObject.PATH, inputJsonObject.getPath());
+      } else {
+        jsonGenerator.writeFieldName(inputJsonObject.getPath());
+        jsonGenerator.writeStartObject();
+      }
 
       // write size property
       jsonGenerator.writeNumberField(InputJsonObject.SIZE, inputJsonObject.getSize());
@@ -111,7 +431,24 @@ public class JsonWriter {
       // write url property
       jsonGenerator.writeStringField(InputJsonObject.URL, inputJsonObject.getUrl());
 
+      // write size source property
+      if (inputJsonObject.getSizeSource() != null
+          && inputJsonObject.getSizeSource() != defaultSizeSource) {
+        jsonGenerator.writeStringField(
+            InputJsonObject.SIZE_SOURCE,
+            inputJsonObject.getSizeSource().getName()
+        );
+      }
+
+      // write the digest under the name of its algorithm
+      if (digestAlgorithm != null && inputJsonObject.getDigest() != null) {
+        jsonGenerator.writeStringField(digestAlgorithm.getName(), inputJsonObject.getDigest());
+      }
+
       jsonGenerator.writeEndObject();
+      if (ndjson) {
+        jsonGenerator.writeRaw('\n');
+      }
     });
   }
 }
@@ -0,0 +1,162 @@
+package jsonresourceanalyzer.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact set of path values, used to find duplicate paths as the input is read. Each path is
+ * stored once as length-prefixed UTF-8 bytes in large byte pages, and an open-addressing table
+ * holds the location and 32 bit hash of every path. Comparing hashes first means the stored bytes
+ * are only read for likely matches. Overall this costs roughly 20 bytes per path on top of its
+ * UTF-8 length; a TreeSet of Strings holding the same short paths uses around 100 in total.
+ *
+ * <p>Not thread safe. When a file is parsed in parallel chunks every parse thread adds to the one
+ * index of the file, holding the index's monitor for each add, since a duplicate can be in any
+ * two chunks. An add is a hash and a probe or two, short next to parsing the object, so the lock
+ * is only contended when many parse threads read objects that are little more than a path.
+ */
+public class PathIndex {
+
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final double MAX_LOAD_FACTOR = 0.7;
+  private static final int PAGE_SIZE = 1 << 20;
+
+  private final List<byte[]> pages = new ArrayList<>();
+  private byte[] currentPage;
+  private int pagePosition;
+
+  // location of each path as (page << 32 | position) + 1, with 0 marking an empty slot
+  private long[] locations = new long[INITIAL_CAPACITY];
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Adds the path to the index.
+   *
+   * @param path The path value
+   * @return false if the path was already in the index
+   */
+  public boolean add(String path) {
+    byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(bytes);
+
+    int mask = locations.length - 1;
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      long location = locations[slot];
+      if (location == 0) {
+        locations[slot] = store(bytes) + 1;
+        hashes[slot] = hash;
+        if (++size > locations.length * MAX_LOAD_FACTOR) {
+          grow();
+        }
+        return true;
+      }
+      if (hashes[slot] == hash && matches(location - 1, bytes)) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of paths in the index.
+   *
+   * @return The number of paths
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Copies the bytes into the current page, prefixed with their length as a varint, starting a new
+   * page when they do not fit.
+   *
+   * @param bytes UTF-8 bytes of a path
+   * @return Location of the stored bytes
+   */
+  private long store(byte[] bytes) {
+    int required = bytes.length + 5;
+    if (currentPage == null || currentPage.length - pagePosition < required) {
+      currentPage = new byte[Math.max(PAGE_SIZE, required)];
+      pages.add(currentPage);
+      pagePosition = 0;
+    }
+
+    long location = ((long) (pages.size() - 1) << 32) | pagePosition;
+    int length = bytes.length;
+    while (length >= 0x80) {
+      currentPage[pagePosition++] = (byte) (length | 0x80);
+      length >>>= 7;
+    }
+    currentPage[pagePosition++] = (byte) length;
+    System.arraycopy(bytes, 0, currentPage, pagePosition, bytes.length);
+    pagePosition += bytes.length;
+    return location;
+  }
+
+  /**
+   * Compares the stored bytes at the location with the given bytes.
+   *
+   * @param location Location of stored bytes
+   * @param bytes    UTF-8 bytes of a path
+   * @return Whether they are equal
+   */
+  private boolean matches(long location, byte[] bytes) {
+    byte[] page = pages.get((int) (location >>> 32));
+    int position = (int) location;
+
+    int length = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = page[position++];
+      length |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+
+    return length == bytes.length
+        && Arrays.equals(page, position, position + length, bytes, 0, bytes.length);
+  }
+
+  /**
+   * Doubles the table and reinserts every location by its stored hash.
+   */
+  private void grow() {
+    long[] oldLocations = locations;
+    int[] oldHashes = hashes;
+    locations = new long[oldLocations.length * 2];
+    hashes = new int[oldHashes.length * 2];
+
+    int mask = locations.length - 1;
+    for (int i = 0; i < oldLocations.length; i++) {
+      if (oldLocations[i] != 0) {
+        int slot = oldHashes[i] & mask;
+        while (locations[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        locations[slot] = oldLocations[i];
+        hashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+  /**
+   * 32 bit FNV-1a hash of the bytes, with a final mix so the low bits used for the slot depend on
+   * every byte.
+   *
+   * @param bytes UTF-8 bytes of a path
+   * @return The hash
+   */
+  private static int hash(byte[] bytes) {
+    int hash = 0x811c9dc5;
+    for (byte b : bytes) {
+      hash ^= b;
+      hash *= 0x01000193;
+    }
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+}
@@ -0,0 +1,297 @@
+package jsonresourceanalyzer.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.format.DataFormatDetector;
+import com.fasterxml.jackson.core.format.DataFormatMatcher;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.constants.InfoMessages;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.StorageException;
+import jsonresourceanalyzer.enums.OutputFormat;
+import jsonresourceanalyzer.enums.SizeSource;
+
+/**
+ * Index of the entries of a previous run's output, used to tell which entries of this run are
+ * unchanged since then. Only a 64 bit hash of each path and url is kept, with the size, in an
+ * open-addressing table of primitive arrays: 20 bytes per slot, or under 30 bytes per entry at the
+ * table's load, however long the paths and urls are. Two different paths or urls sharing a 64 bit
+ * hash is unlikely enough, even across millions of entries, to be ignored.
+ *
+ * <p>The index is read in full before the input, and only read afterwards, so lookups are thread
+ * safe.
+ */
+public class PreviousOutputIndex {
+
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final double MAX_LOAD_FACTOR = 0.7;
+  private static final int NO_SIZE = -1;
+
+  private final boolean trusted;
+  private final LongAdder trustedCount = new LongAdder();
+  private final LongAdder unchangedCount = new LongAdder();
+  private final LongAdder changedCount = new LongAdder();
+
+  // path hash of each entry, with 0 marking an empty slot
+  private long[] pathHashes = new long[INITIAL_CAPACITY];
+  private long[] urlHashes = new long[INITIAL_CAPACITY];
+  private int[] sizes = new int[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Reads the previous output given by the arguments. Its format is found from the file, since it
+   * need not be the output format of this run: Smile and CBOR by their leading bytes, and newline
+   * delimited records by the first field of the first object holding a value rather than an entry.
+   * The previous output is trusted when it was last modified within the trust age.
+   *
+   * @param argParser Parsed arguments giving the previous output file and trust age
+   */
+  public PreviousOutputIndex(ArgParser argParser) {
+    long age = System.currentTimeMillis() - argParser.getPreviousOutputFile().lastModified();
+    trusted = age < TimeUnit.SECONDS.toMillis(argParser.getPreviousTrustAge());
+
+    try (InputStream inputStream = JsonReader.decompressIfGzipped(
+        new FileInputStream(argParser.getPreviousOutputFile())
+    )) {
+      DataFormatMatcher formatMatcher = new DataFormatDetector(
+          JsonWriter.createFactory(OutputFormat.JSON),
+          JsonWriter.createFactory(OutputFormat.SMILE),
+          JsonWriter.createFactory(OutputFormat.CBOR)
+      ).findFormat(inputStream);
+      // output too short to tell its format, such as newline delimited output with no records, is
+      // read as JSON
+      readOutput(
+          formatMatcher.hasMatch()
+              ? formatMatcher.createParserWithMatch()
+              : JsonWriter.createFactory(OutputFormat.JSON)
+                  .createParser(formatMatcher.getDataStream())
+      );
+    } catch (IOException ex) {
+      fail(ex.getMessage());
+    }
+  }
+
+  /**
+   * Completes the InputJsonObject from the previous output if it is trusted and the object is
+   * unchanged, so it needs no validation at all.
+   *
+   * @param inputJsonObject An InputJsonObject just read
+   * @return Whether the object was restored and needs no validation
+   */
+  public boolean restore(InputJsonObject inputJsonObject) {
+    if (!trusted || !contains(inputJsonObject)) {
+      return false;
+    }
+
+    inputJsonObject.setSizeSource(SizeSource.PREVIOUS_OUTPUT);
+    trustedCount.increment();
+    return true;
+  }
+
+  /**
+   * Returns whether the previous output has an entry with the same path, url and size as the
+   * InputJsonObject.
+   *
+   * @param inputJsonObject The InputJsonObject being validated
+   * @return Whether the object is unchanged since the previous run
+   */
+  public boolean isUnchanged(InputJsonObject inputJsonObject) {
+    boolean unchanged = contains(inputJsonObject);
+    (unchanged ? unchangedCount : changedCount).increment();
+    return unchanged;
+  }
+
+  /**
+   * Prints the number of entries in the previous output, and how many objects of this run were
+   * trusted, unchanged or changed.
+   */
+  public void reportStatistics() {
+    System.err.println(String.format(
+        InfoMessages.PREVIOUS_OUTPUT_STATISTICS,
+        size,
+        trustedCount.sum(),
+        unchangedCount.sum(),
+        changedCount.sum()
+    ));
+  }
+
+  private boolean contains(InputJsonObject inputJsonObject) {
+    // objects missing a property are reported when they are validated
+    if (inputJsonObject.getPath() == null
+        || inputJsonObject.getSize() == null
+        || inputJsonObject.getUrl() == null) {
+      return false;
+    }
+
+    long pathHash = hash(inputJsonObject.getPath());
+    int mask = pathHashes.length - 1;
+    for (int slot = (int) pathHash & mask; pathHashes[slot] != 0; slot = (slot + 1) & mask) {
+      if (pathHashes[slot] == pathHash) {
+        return sizes[slot] == inputJsonObject.getSize()
+            && urlHashes[slot] == hash(inputJsonObject.getUrl());
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads either an output object or newline delimited output records, telling them apart by the
+   * value of the first field: an output object maps each path to an entry object, while a record
+   * holds the path itself.
+   */
+  private void readOutput(JsonParser jsonParser) throws IOException {
+    JsonToken token = jsonParser.nextToken();
+    if (token == null) {
+      // newline delimited output with no records
+      return;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      fail(ErrorMessages.INVALID_JSON);
+    }
+    if (jsonParser.nextToken() != JsonToken.FIELD_NAME) {
+      // an output object without entries
+      return;
+    }
+
+    String name = jsonParser.getCurrentName();
+    if (jsonParser.nextToken() == JsonToken.START_OBJECT) {
+      readEntry(jsonParser, name, false);
+      readObject(jsonParser);
+    } else {
+      readEntry(jsonParser, null, true);
+      readRecords(jsonParser);
+    }
+  }
+
+  /**
+   * Reads the rest of an output object, mapping each path to an entry.
+   */
+  private void readObject(JsonParser jsonParser) throws IOException {
+    while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+      String path = jsonParser.getCurrentName();
+      if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+        fail(ErrorMessages.INVALID_JSON);
+      }
+      readEntry(jsonParser, path, false);
+    }
+  }
+
+  /**
+   * Reads newline delimited output records, each of which carries its path.
+   */
+  private void readRecords(JsonParser jsonParser) throws IOException {
+    JsonToken token;
+    while ((token = jsonParser.nextToken()) != null) {
+      if (token != JsonToken.START_OBJECT) {
+        fail(ErrorMessages.INVALID_JSON);
+      }
+      readEntry(jsonParser, null, false);
+    }
+  }
+
+  /**
+   * Reads the fields of an entry, up to and including its end, and adds it to the index. Entries
+   * without a path or url are ignored.
+   *
+   * @param path    The path the entry is keyed by, or null to take it from its path field
+   * @param atValue Whether the value of the first field has already been read
+   */
+  private void readEntry(JsonParser jsonParser, String path, boolean atValue) throws IOException {
+    String url = null;
+    int entrySize = NO_SIZE;
+    while (atValue || jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = jsonParser.getCurrentName();
+      JsonToken value = atValue ? jsonParser.getCurrentToken() : jsonParser.nextToken();
+      atValue = false;
+      if (InputJsonObject.PATH.equals(name) && value == JsonToken.VALUE_STRING) {
+        path = jsonParser.getText();
+      } else if (InputJsonObject.URL.equals(name) && value == JsonToken.VALUE_STRING) {
+        url = jsonParser.getText();
+      } else if (InputJsonObject.SIZE.equals(name) && value == JsonToken.VALUE_NUMBER_INT) {
+        entrySize = jsonParser.getIntValue();
+      } else {
+        jsonParser.skipChildren();
+      }
+    }
+
+    if (path != null && url != null) {
+      put(hash(path), hash(url), entrySize);
+    }
+  }
+
+  private void put(long pathHash, long urlHash, int entrySize) {
+    if (size >= pathHashes.length * MAX_LOAD_FACTOR) {
+      grow();
+    }
+
+    int mask = pathHashes.length - 1;
+    int slot = (int) pathHash & mask;
+    while (pathHashes[slot] != 0 && pathHashes[slot] != pathHash) {
+      slot = (slot + 1) & mask;
+    }
+    if (pathHashes[slot] == 0) {
+      size++;
+    }
+    pathHashes[slot] = pathHash;
+    urlHashes[slot] = urlHash;
+    sizes[slot] = entrySize;
+  }
+
+  /**
+   * Doubles the table and reinserts every entry by its path hash.
+   */
+  private void grow() {
+    long[] oldPathHashes = pathHashes;
+    long[] oldUrlHashes = urlHashes;
+    int[] oldSizes = sizes;
+    pathHashes = new long[oldPathHashes.length * 2];
+    urlHashes = new long[oldUrlHashes.length * 2];
+    sizes = new int[oldSizes.length * 2];
+
+    int mask = pathHashes.length - 1;
+    for (int i = 0; i < oldPathHashes.length; i++) {
+      if (oldPathHashes[i] != 0) {
+        int slot = (int) oldPathHashes[i] & mask;
+        while (pathHashes[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        pathHashes[slot] = oldPathHashes[i];
+        urlHashes[slot] = oldUrlHashes[i];
+        sizes[slot] = oldSizes[i];
+      }
+    }
+  }
+
+  /**
+   * 64 bit FNV-1a hash of the characters of the value, with a final mix so the low bits used for
+   * the slot depend on every character. Never 0, which marks an empty slot. Also keys the table of
+   * the CheckpointJournal.
+   *
+   * @param value A path or url
+   * @return The hash
+   */
+  static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return hash != 0 ? hash : 1;
+  }
+
+  private static void fail(String cause) {
+    throw new StorageException(
+        ErrorCode.UNKNOWN_ERROR_WHILE_READING_PREVIOUS_OUTPUT,
+        String.format(ErrorMessages.UNKNOWN_ERROR_WHILE_READING_PREVIOUS_OUTPUT, cause)
+    );
+  }
+}
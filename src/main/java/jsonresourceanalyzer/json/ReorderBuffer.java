@@ -0,0 +1,125 @@
+package jsonresourceanalyzer.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.AnalyzerException;
+
+/**
+ * Holds validated InputJsonObjects that completed ahead of their predecessors and passes them to
+ * the JsonWriter in input order. The buffer has a fixed number of slots indexed by sequence number,
+ * and the reader is paused while the newest entry read is a full buffer ahead of the oldest entry
+ * not yet written, so memory stays bounded however long the oldest entry takes.
+ */
+public class ReorderBuffer {
+
+  private final JsonWriter jsonWriter;
+  private final InputJsonObject[] slots;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notFull = lock.newCondition();
+
+  private long nextSequence;
+  private boolean draining;
+  private boolean aborted;
+
+  public ReorderBuffer(ArgParser argParser, JsonWriter jsonWriter) {
+    this.jsonWriter = jsonWriter;
+    this.slots = new InputJsonObject[argParser.getReorderBufferSize()];
+  }
+
+  /**
+   * Blocks until the InputJsonObject fits in the buffer, which is once every object more than a
+   * buffer's length before it has been written. Must be called in input order before the object is
+   * dispatched.
+   *
+   * @param inputJsonObject The InputJsonObject about to be dispatched
+   */
+  public void reserve(InputJsonObject inputJsonObject) {
+    lock.lock();
+    try {
+      while (!aborted && inputJsonObject.getSequence() - nextSequence >= slots.length) {
+        notFull.await();
+      }
+    } catch (InterruptedException ex) {
+      throw new AnalyzerException(
+          ErrorCode.WORK_DISPATCHER_THREAD_INTERRUPTED,
+          ErrorMessages.WORK_DISPATCHER_THREAD_INTERRUPTED
+      );
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds a validated InputJsonObject to the buffer and writes every object that is now next in
+   * input order. Only one thread writes at a time; the others return as soon as their object is
+   * buffered.
+   *
+   * @param inputJsonObject The validated InputJsonObject
+   */
+  public void complete(InputJsonObject inputJsonObject) {
+    List<InputJsonObject> ready = new ArrayList<>();
+
+    lock.lock();
+    try {
+      if (aborted) {
+        return;
+      }
+      slots[slotIndex(inputJsonObject.getSequence())] = inputJsonObject;
+      if (draining) {
+        // the thread currently writing will pick this object up
+        return;
+      }
+      draining = true;
+
+      while (true) {
+        // take the run of consecutive objects at the head of the buffer, freeing their slots
+        InputJsonObject next;
+        while ((next = slots[slotIndex(nextSequence)]) != null) {
+          slots[slotIndex(nextSequence)] = null;
+          ready.add(next);
+          nextSequence++;
+        }
+
+        if (ready.isEmpty()) {
+          draining = false;
+          return;
+        }
+        notFull.signalAll();
+
+        // write outside of the lock so other workers can keep buffering their results
+        lock.unlock();
+        try {
+          ready.forEach(jsonWriter::writeObject);
+        } finally {
+          lock.lock();
+        }
+        ready.clear();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops the buffer from pausing the reader once the analysis has failed, since the objects the
+   * reader is waiting on may never complete. Objects completed afterwards are dropped.
+   */
+  public void abort() {
+    lock.lock();
+    try {
+      aborted = true;
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int slotIndex(long sequence) {
+    return (int) (sequence % slots.length);
+  }
+}
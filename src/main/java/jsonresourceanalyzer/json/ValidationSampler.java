@@ -0,0 +1,203 @@
+package jsonresourceanalyzer.json;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.constants.InfoMessages;
+import jsonresourceanalyzer.enums.UnsampledValidation;
+
+/**
+ * Chooses which objects of a run are checked in full when only a sample of them is, and estimates
+ * from that sample how often the reported sizes of each host are wrong. The sample is stratified
+ * by host: the first --sample-min objects of every host are always chosen, so that small hosts get
+ * an estimate of their own, and every later object is chosen at random with the sample rate.
+ *
+ * <p>The mismatch rate of a host is reported with a 95% Wilson score interval, which stays within
+ * 0 to 100% and remains meaningful when no mismatch, or only a few, were found. The interval
+ * treats the sampled objects of a host as a random sample of all of them, which the objects
+ * chosen by the minimum only are if a host's entries are not ordered by how likely they are to be
+ * wrong.
+ */
+public class ValidationSampler {
+
+  // the normal quantile of a two sided 95% confidence interval
+  private static final double CONFIDENCE_Z = 1.959964;
+  private static final double PERCENT = 100;
+
+  /**
+   * Counts of the objects of one host.
+   */
+  private static class Stratum {
+
+    private final AtomicLong objects = new AtomicLong();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder sampledMismatches = new LongAdder();
+    private final LongAdder unsampledCorrections = new LongAdder();
+  }
+
+  private final double sampleRate;
+  private final int sampleMin;
+  private final UnsampledValidation unsampledValidation;
+  private final Map<String, Stratum> strata = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a sampler for the sample rate, minimum and handling of unsampled objects given by the
+   * arguments.
+   *
+   * @param argParser Parsed arguments
+   */
+  public ValidationSampler(ArgParser argParser) {
+    sampleRate = argParser.getSampleRate();
+    sampleMin = argParser.getSampleMin();
+    unsampledValidation = argParser.getUnsampledValidation();
+  }
+
+  public UnsampledValidation getUnsampledValidation() {
+    return unsampledValidation;
+  }
+
+  /**
+   * Decides whether the InputJsonObject is checked in full. An object without a valid url is
+   * always chosen, so that validating it reports the problem.
+   *
+   * @param inputJsonObject An InputJsonObject just read
+   * @return Whether the object is part of the sample
+   */
+  public boolean sample(InputJsonObject inputJsonObject) {
+    String host = host(inputJsonObject.getUrl());
+    if (host == null) {
+      return true;
+    }
+
+    Stratum stratum = strata.computeIfAbsent(host, key -> new Stratum());
+    boolean sampled = stratum.objects.getAndIncrement() < sampleMin
+        || ThreadLocalRandom.current().nextDouble(PERCENT) < sampleRate;
+    if (sampled) {
+      stratum.sampled.increment();
+    }
+    return sampled;
+  }
+
+  /**
+   * Records whether the size of a validated object differed from the reported one.
+   *
+   * @param inputJsonObject The validated InputJsonObject
+   * @param reportedSize    The size given in the input
+   * @param sampled         Whether the object was checked in full
+   */
+  public void record(InputJsonObject inputJsonObject, Integer reportedSize, boolean sampled) {
+    if (reportedSize.equals(inputJsonObject.getSize())) {
+      return;
+    }
+
+    String host = host(inputJsonObject.getUrl());
+    Stratum stratum = host != null ? strata.get(host) : null;
+    if (stratum != null) {
+      (sampled ? stratum.sampledMismatches : stratum.unsampledCorrections).increment();
+    }
+  }
+
+  /**
+   * Prints how many objects were sampled, and for every host the mismatches found in its sample
+   * with the estimated mismatch rate of all its objects.
+   */
+  public void reportStatistics() {
+    long objects = 0;
+    long sampled = 0;
+    for (Stratum stratum : strata.values()) {
+      objects += stratum.objects.get();
+      sampled += stratum.sampled.sum();
+    }
+    System.err.println(String.format(
+        InfoMessages.SAMPLING_STATISTICS,
+        objects,
+        sampled,
+        objects > 0 ? sampled * PERCENT / objects : 0,
+        unsampledValidation.getName(),
+        objects - sampled
+    ));
+
+    for (Map.Entry<String, Stratum> entry : new TreeMap<>(strata).entrySet()) {
+      Stratum stratum = entry.getValue();
+      long hostSampled = stratum.sampled.sum();
+      long mismatches = stratum.sampledMismatches.sum();
+      System.err.println(String.format(
+          InfoMessages.SAMPLED_HOST_STATISTICS,
+          entry.getKey(),
+          stratum.objects.get(),
+          hostSampled,
+          mismatches,
+          hostSampled > 0 ? mismatches * PERCENT / hostSampled : 0,
+          wilsonLowerBound(mismatches, hostSampled) * PERCENT,
+          wilsonUpperBound(mismatches, hostSampled) * PERCENT,
+          stratum.unsampledCorrections.sum()
+      ));
+    }
+  }
+
+  /**
+   * Returns the lower bound of the 95% Wilson score interval of a proportion.
+   *
+   * @param successes Trials that succeeded
+   * @param trials    All trials
+   * @return The lower bound, or 0 without any trial
+   */
+  private static double wilsonLowerBound(long successes, long trials) {
+    if (trials == 0) {
+      return 0;
+    }
+    return Math.max(0, wilsonCenter(successes, trials) - wilsonHalfWidth(successes, trials));
+  }
+
+  /**
+   * Returns the upper bound of the 95% Wilson score interval of a proportion.
+   *
+   * @param successes Trials that succeeded
+   * @param trials    All trials
+   * @return The upper bound, or 1 without any trial
+   */
+  private static double wilsonUpperBound(long successes, long trials) {
+    if (trials == 0) {
+      return 1;
+    }
+    return Math.min(1, wilsonCenter(successes, trials) + wilsonHalfWidth(successes, trials));
+  }
+
+  private static double wilsonCenter(long successes, long trials) {
+    double p = (double) successes / trials;
+    double z2 = CONFIDENCE_Z * CONFIDENCE_Z;
+    return (p + z2 / (2 * trials)) / (1 + z2 / trials);
+  }
+
+  private static double wilsonHalfWidth(long successes, long trials) {
+    double p = (double) successes / trials;
+    double z2 = CONFIDENCE_Z * CONFIDENCE_Z;
+    return CONFIDENCE_Z / (1 + z2 / trials)
+        * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials));
+  }
+
+  /**
+   * Returns the host of a url, in lower case and with its port if it has one.
+   *
+   * @return The host, or null if the url is missing or invalid
+   */
+  private static String host(String url) {
+    if (url == null) {
+      return null;
+    }
+    try {
+      URL parsedUrl = new URL(url);
+      String host = parsedUrl.getHost().toLowerCase(Locale.ROOT);
+      return parsedUrl.getPort() != -1 ? host + ":" + parsedUrl.getPort() : host;
+    } catch (MalformedURLException ex) {
+      return null;
+    }
+  }
+}
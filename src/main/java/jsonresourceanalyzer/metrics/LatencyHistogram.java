@@ -0,0 +1,121 @@
+package jsonresourceanalyzer.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with logarithmic buckets each split into linear sub-buckets, in the way
+ * HdrHistogram is. Every bucket covers a range no wider than 1/64 of its lowest value, so any
+ * recorded latency, from nanoseconds to minutes, is reported to within 1.6%. Recording is a few
+ * uncontended atomic updates of fixed arrays and adders with no allocation, so it can be used on
+ * every hot path.
+ * Percentiles read while latencies are being recorded are not an atomic snapshot, which is fine
+ * for monitoring.
+ */
+public class LatencyHistogram {
+
+  // values below 2 * SUB_BUCKET_HALF_COUNT get a bucket each; above that, every power of two is
+  // split into SUB_BUCKET_HALF_COUNT buckets
+  private static final int SUB_BUCKET_HALF_COUNT_BITS = 6;
+  private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_BITS;
+  // longer latencies, of over 18 minutes, are counted in the last bucket
+  private static final int MAX_VALUE_BITS = 40;
+  private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+  private static final int BUCKET_COUNT =
+      (MAX_VALUE_BITS - SUB_BUCKET_HALF_COUNT_BITS - 1) * SUB_BUCKET_HALF_COUNT
+          + 2 * SUB_BUCKET_HALF_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos The latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+    counts.incrementAndGet(bucketIndex(value));
+    count.increment();
+    total.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Records the time elapsed since the given start.
+   *
+   * @param startNanos A System.nanoTime() taken at the start
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the latency below which the given share of the recorded latencies fall, as the highest
+   * value of the bucket it falls in.
+   *
+   * @param percentile The percentile, from 0 to 100
+   * @return The latency in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long recorded = count.sum();
+    if (recorded == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestValueInBucket(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Takes a summary of the recorded latencies.
+   *
+   * @return The summary
+   */
+  public LatencySnapshot getSnapshot() {
+    long recorded = count.sum();
+    return new LatencySnapshot(
+        recorded,
+        recorded == 0 ? 0 : total.sum() / (double) recorded / NANOS_PER_MILLI,
+        getValueAtPercentile(50) / NANOS_PER_MILLI,
+        getValueAtPercentile(90) / NANOS_PER_MILLI,
+        getValueAtPercentile(99) / NANOS_PER_MILLI,
+        getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+        max.get() / NANOS_PER_MILLI
+    );
+  }
+
+  /**
+   * Finds the bucket of a value. A value with its highest bit at position n above the linear range
+   * is shifted right until it falls in [SUB_BUCKET_HALF_COUNT, 2 * SUB_BUCKET_HALF_COUNT), which
+   * picks its sub-bucket within the n-th logarithmic bucket.
+   */
+  private static int bucketIndex(long value) {
+    int shift = Math.max(
+        0,
+        Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_HALF_COUNT_BITS - 1
+    );
+    return (shift << SUB_BUCKET_HALF_COUNT_BITS) + (int) (value >>> shift);
+  }
+
+  private static long highestValueInBucket(int index) {
+    int shift = Math.max(0, (index >>> SUB_BUCKET_HALF_COUNT_BITS) - 1);
+    long subBucket = index - ((long) shift << SUB_BUCKET_HALF_COUNT_BITS);
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,41 @@
+package jsonresourceanalyzer.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide latency histograms and counters for each stage an object passes through: parsing,
+ * waiting for the dispatcher to admit it, connecting, sizing its URL resource, and waiting to be
+ * queued for the writer. Stages record into these directly, as recording costs no more than a few
+ * uncontended atomic updates. They are read by the MetricsReporter.
+ */
+public class Metrics {
+
+  private Metrics() throws InstantiationException {
+    throw new InstantiationException("This class should not be instantiated.");
+  }
+
+  // time taken to parse each input object and check that its path is unique
+  public static final LatencyHistogram PARSE_LATENCY = new LatencyHistogram();
+  // time the reading thread waits for the concurrency limit to admit an object
+  public static final LatencyHistogram DISPATCH_WAIT_LATENCY = new LatencyHistogram();
+  // time taken to open or reuse a connection by the blocking fetch engine
+  public static final LatencyHistogram CONNECT_LATENCY = new LatencyHistogram();
+  // time taken to size a URL resource, including every request and retry made for it
+  public static final LatencyHistogram SIZING_LATENCY = new LatencyHistogram();
+  // time taken to hand a validated object to the writer, blocking while its queue is full
+  public static final LatencyHistogram WRITE_WAIT_LATENCY = new LatencyHistogram();
+
+  public static final LongAdder OBJECTS_READ = new LongAdder();
+  public static final LongAdder OBJECTS_WRITTEN = new LongAdder();
+  public static final LongAdder BYTES_DOWNLOADED = new LongAdder();
+  // requests sent to size URL resources, not counting hedges
+  public static final LongAdder REQUESTS = new LongAdder();
+  public static final LongAdder RETRIES = new LongAdder();
+  // second copies of slow requests, and those that answered before the first
+  public static final LongAdder HEDGED_REQUESTS = new LongAdder();
+  public static final LongAdder HEDGE_WINS = new LongAdder();
+  // objects admitted by the dispatcher and not yet validated
+  public static final LongAdder IN_FLIGHT = new LongAdder();
+  // objects queued for the writer and not yet written
+  public static final LongAdder WRITE_QUEUE_DEPTH = new LongAdder();
+}
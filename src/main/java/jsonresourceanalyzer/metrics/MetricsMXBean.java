@@ -0,0 +1,41 @@
+package jsonresourceanalyzer.metrics;
+
+/**
+ * Management interface through which the metrics of a run are exposed over JMX, under the name
+ * jsonresourceanalyzer:type=Metrics. Latencies are in milliseconds and rates are averaged over the
+ * run so far.
+ */
+public interface MetricsMXBean {
+
+  long getObjectsRead();
+
+  long getObjectsWritten();
+
+  double getObjectsWrittenPerSecond();
+
+  long getBytesDownloaded();
+
+  double getBytesDownloadedPerSecond();
+
+  long getRequests();
+
+  long getRetries();
+
+  long getHedgedRequests();
+
+  long getHedgeWins();
+
+  long getInFlight();
+
+  long getWriteQueueDepth();
+
+  LatencySnapshot getParseLatency();
+
+  LatencySnapshot getDispatchWaitLatency();
+
+  LatencySnapshot getConnectLatency();
+
+  LatencySnapshot getSizingLatency();
+
+  LatencySnapshot getWriteWaitLatency();
+}
@@ -0,0 +1,208 @@
+package jsonresourceanalyzer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.constants.InfoMessages;
+
+/**
+ * Exposes the Metrics over JMX for the length of a run and, when a metrics interval is given,
+ * prints a one line summary of them to stderr at that interval and once more at the end. Rates in
+ * the periodic summary cover the interval since the previous one.
+ */
+public class MetricsReporter implements MetricsMXBean {
+
+  private static final String OBJECT_NAME = "jsonresourceanalyzer:type=Metrics";
+  private static final String REPORTER_THREAD_NAME = "metrics-reporter";
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+  private static final double BYTES_PER_MB = 1_000_000.0;
+
+  private final long startNanos = System.nanoTime();
+  private final ScheduledExecutorService scheduler;
+  private ObjectName objectName;
+
+  // totals at the previous summary, to work out the rates over each interval
+  private long lastSummaryNanos = startNanos;
+  private long lastObjectsWritten;
+  private long lastBytesDownloaded;
+
+  /**
+   * Registers the metrics with the platform MBean server and starts the periodic summary if a
+   * metrics interval is given.
+   *
+   * @param argParser Parsed arguments giving the metrics interval
+   */
+  public MetricsReporter(ArgParser argParser) {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+      mBeanServer.registerMBean(this, objectName);
+    } catch (JMException ex) {
+      objectName = null;
+      System.err.println(
+          String.format(ErrorMessages.METRICS_REGISTRATION_FAILED_WARNING, ex.getMessage())
+      );
+    }
+
+    int interval = argParser.getMetricsInterval();
+    if (interval == 0) {
+      scheduler = null;
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, REPORTER_THREAD_NAME);
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(this::printSummary, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stops the periodic summary, printing a last one, and unregisters the metrics from JMX.
+   */
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      try {
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      printSummary();
+    }
+
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException ex) {
+        // the run is over, so there is nobody left to read the metrics anyway
+      }
+    }
+  }
+
+  /**
+   * Prints a one line summary of the totals, the rates since the previous summary, and the 99th
+   * percentile latency of each stage.
+   */
+  private synchronized void printSummary() {
+    long now = System.nanoTime();
+    long objectsWritten = Metrics.OBJECTS_WRITTEN.sum();
+    long bytesDownloaded = Metrics.BYTES_DOWNLOADED.sum();
+    double seconds = Math.max(now - lastSummaryNanos, 1) / NANOS_PER_SECOND;
+
+    System.err.println(String.format(
+        InfoMessages.METRICS_SUMMARY,
+        (now - startNanos) / NANOS_PER_SECOND,
+        Metrics.OBJECTS_READ.sum(),
+        objectsWritten,
+        (objectsWritten - lastObjectsWritten) / seconds,
+        (bytesDownloaded - lastBytesDownloaded) / BYTES_PER_MB / seconds,
+        Metrics.IN_FLIGHT.sum(),
+        Metrics.WRITE_QUEUE_DEPTH.sum(),
+        Metrics.RETRIES.sum(),
+        Metrics.HEDGED_REQUESTS.sum(),
+        Metrics.PARSE_LATENCY.getSnapshot().getP99(),
+        Metrics.DISPATCH_WAIT_LATENCY.getSnapshot().getP99(),
+        Metrics.CONNECT_LATENCY.getSnapshot().getP99(),
+        Metrics.SIZING_LATENCY.getSnapshot().getP99(),
+        Metrics.WRITE_WAIT_LATENCY.getSnapshot().getP99()
+    ));
+
+    lastSummaryNanos = now;
+    lastObjectsWritten = objectsWritten;
+    lastBytesDownloaded = bytesDownloaded;
+  }
+
+  private double perSecond(long total) {
+    return total / (Math.max(System.nanoTime() - startNanos, 1) / NANOS_PER_SECOND);
+  }
+
+  @Override
+  public long getObjectsRead() {
+    return Metrics.OBJECTS_READ.sum();
+  }
+
+  @Override
+  public long getObjectsWritten() {
+    return Metrics.OBJECTS_WRITTEN.sum();
+  }
+
+  @Override
+  public double getObjectsWrittenPerSecond() {
+    return perSecond(Metrics.OBJECTS_WRITTEN.sum());
+  }
+
+  @Override
+  public long getBytesDownloaded() {
+    return Metrics.BYTES_DOWNLOADED.sum();
+  }
+
+  @Override
+  public double getBytesDownloadedPerSecond() {
+    return perSecond(Metrics.BYTES_DOWNLOADED.sum());
+  }
+
+  @Override
+  public long getRequests() {
+    return Metrics.REQUESTS.sum();
+  }
+
+  @Override
+  public long getRetries() {
+    return Metrics.RETRIES.sum();
+  }
+
+  @Override
+  public long getHedgedRequests() {
+    return Metrics.HEDGED_REQUESTS.sum();
+  }
+
+  @Override
+  public long getHedgeWins() {
+    return Metrics.HEDGE_WINS.sum();
+  }
+
+  @Override
+  public long getInFlight() {
+    return Metrics.IN_FLIGHT.sum();
+  }
+
+  @Override
+  public long getWriteQueueDepth() {
+    return Metrics.WRITE_QUEUE_DEPTH.sum();
+  }
+
+  @Override
+  public LatencySnapshot getParseLatency() {
+    return Metrics.PARSE_LATENCY.getSnapshot();
+  }
+
+  @Override
+  public LatencySnapshot getDispatchWaitLatency() {
+    return Metrics.DISPATCH_WAIT_LATENCY.getSnapshot();
+  }
+
+  @Override
+  public LatencySnapshot getConnectLatency() {
+    return Metrics.CONNECT_LATENCY.getSnapshot();
+  }
+
+  @Override
+  public LatencySnapshot getSizingLatency() {
+    return Metrics.SIZING_LATENCY.getSnapshot();
+  }
+
+  @Override
+  public LatencySnapshot getWriteWaitLatency() {
+    return Metrics.WRITE_WAIT_LATENCY.getSnapshot();
+  }
+}
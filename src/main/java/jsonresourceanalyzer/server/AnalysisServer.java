@@ -0,0 +1,367 @@
+package jsonresourceanalyzer.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jsonresourceanalyzer.AnalysisProgress;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.JsonResourceAnalyzer;
+import jsonresourceanalyzer.constants.ErrorMessages;
+import jsonresourceanalyzer.constants.InfoMessages;
+import jsonresourceanalyzer.enums.ErrorCode;
+import jsonresourceanalyzer.exceptions.AnalyzerException;
+import jsonresourceanalyzer.exceptions.InvalidArgumentException;
+
+/**
+ * Runs analyses submitted over HTTP on a local port, on a single JsonResourceAnalyzer, so that
+ * every job shares its warm worker threads, connection pool and URL size caches instead of paying
+ * for a new JVM. Jobs run at the same time up to --max-jobs, and later jobs queue.
+ *
+ * <pre>
+ *   POST /jobs       {"file": "in.json", "out": "out.json", "args": ["--ordered"]}
+ *                    submits a job, answering 202 with its status. "url" may be given in place
+ *                    of "file", and "args" holds any further options of the job.
+ *   GET  /jobs       the status of every job kept
+ *   GET  /jobs/{id}  the status of one job: queued, running, succeeded or failed, the objects read
+ *                    and completed so far, and the summary or error once it has finished
+ * </pre>
+ *
+ * Jobs must be submitted as application/json, which a browser cannot send to another origin
+ * without asking first. The server only listens on the loopback address, and paths are resolved
+ * against its working directory but must be within --serve-root, so a job can neither read nor
+ * write files elsewhere, nor use the server's standard streams. The options the server was
+ * started with are the defaults of every job, and a job may give its own, except for those that
+ * configure the shared threads, connections and caches. Finished jobs are forgotten, oldest
+ * first, once more than MAX_RETAINED_JOBS are kept.
+ */
+public class AnalysisServer implements AutoCloseable {
+
+  private static final String JOBS_PATH = "/jobs";
+  private static final String JSON_CONTENT_TYPE = "application/json";
+  private static final int MAX_RETAINED_JOBS = 1000;
+  private static final int STATUS_ACCEPTED = 202;
+  private static final int STATUS_BAD_REQUEST = 400;
+  private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+  private static final int STATUS_NOT_FOUND = 404;
+  private static final int STATUS_OK = 200;
+  private static final int STATUS_UNSUPPORTED_MEDIA_TYPE = 415;
+
+  private interface ResponseBody {
+
+    void write(JsonGenerator jsonGenerator) throws IOException;
+  }
+
+  private final ArgParser argParser;
+  private final JsonResourceAnalyzer jsonResourceAnalyzer;
+  private final HttpServer httpServer;
+  private final JsonFactory jsonFactory = new JsonFactory();
+
+  // jobs in submission order, guarded by the map itself
+  private final Map<Long, Job> jobs = new LinkedHashMap<>();
+  private long lastJobId;
+
+  /**
+   * Creates the shared analyzer and starts accepting jobs on the port given by --serve.
+   *
+   * @param argParser Parsed arguments, which apply to every job
+   */
+  public AnalysisServer(ArgParser argParser) {
+    this.argParser = argParser;
+    jsonResourceAnalyzer = new JsonResourceAnalyzer(argParser);
+    try {
+      httpServer = HttpServer.create(
+          new InetSocketAddress(InetAddress.getLoopbackAddress(), argParser.getServePort()),
+          0
+      );
+    } catch (IOException ex) {
+      jsonResourceAnalyzer.close();
+      throw new AnalyzerException(
+          ErrorCode.UNKNOWN_ERROR_WHILE_STARTING_SERVER,
+          String.format(
+              ErrorMessages.UNKNOWN_ERROR_WHILE_STARTING_SERVER,
+              argParser.getServePort(),
+              ex
+          )
+      );
+    }
+
+    // requests only start or look up jobs, so they are handled on the server's own thread
+    httpServer.createContext(JOBS_PATH, this::handle);
+    httpServer.start();
+    System.err.println(String.format(
+        InfoMessages.SERVER_LISTENING,
+        httpServer.getAddress().getHostString(),
+        getPort()
+    ));
+  }
+
+  /**
+   * Returns the port the server accepts jobs on, which was chosen by the system when --serve was 0.
+   *
+   * @return The port
+   */
+  public int getPort() {
+    return httpServer.getAddress().getPort();
+  }
+
+  /**
+   * Stops accepting jobs, then waits for the jobs already submitted to finish before closing the
+   * shared analyzer.
+   */
+  @Override
+  public void close() {
+    httpServer.stop(0);
+    jsonResourceAnalyzer.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String path = exchange.getRequestURI().getPath();
+      String method = exchange.getRequestMethod();
+
+      if (JOBS_PATH.equals(path)) {
+        if ("POST".equals(method)) {
+          submit(exchange);
+        } else if ("GET".equals(method)) {
+          respond(exchange, STATUS_OK, this::writeJobs);
+        } else {
+          respondMethodNotAllowed(exchange, method, path);
+        }
+        return;
+      }
+
+      Job job = findJob(path.substring(JOBS_PATH.length()));
+      if (job == null) {
+        respondError(
+            exchange,
+            STATUS_NOT_FOUND,
+            null,
+            String.format(ErrorMessages.SERVER_JOB_NOT_FOUND, path)
+        );
+      } else if ("GET".equals(method)) {
+        respond(exchange, STATUS_OK, job::writeStatus);
+      } else {
+        respondMethodNotAllowed(exchange, method, path);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Starts the job described by the request body and answers with its status.
+   */
+  private void submit(HttpExchange exchange) throws IOException {
+    // parameters such as the charset may follow the media type
+    String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    if (contentType == null
+        || !contentType.split(";", 2)[0].trim().equalsIgnoreCase(JSON_CONTENT_TYPE)) {
+      respondError(
+          exchange,
+          STATUS_UNSUPPORTED_MEDIA_TYPE,
+          null,
+          String.format(ErrorMessages.SERVER_UNSUPPORTED_MEDIA_TYPE, contentType)
+      );
+      return;
+    }
+
+    Job job;
+    try {
+      ArgParser jobArgParser = argParser.forJob(readJobArgs(exchange.getRequestBody()));
+      AnalysisProgress analysisProgress = new AnalysisProgress();
+
+      synchronized (jobs) {
+        job = new Job(
+            ++lastJobId,
+            jobArgParser.getFile() != null
+                ? jobArgParser.getFile().getPath()
+                : String.valueOf(jobArgParser.getUrl()),
+            jobArgParser.getOutputFile() != null
+                ? jobArgParser.getOutputFile().getPath()
+                : null,
+            analysisProgress,
+            jsonResourceAnalyzer.analyze(jobArgParser, analysisProgress)
+        );
+        jobs.put(job.getId(), job);
+        forgetFinishedJobs();
+      }
+
+    } catch (InvalidArgumentException ex) {
+      respondError(exchange, STATUS_BAD_REQUEST, ex.getErrorCode(), ex.getMessage());
+      return;
+    }
+
+    final Job submittedJob = job;
+    job.getResult().whenComplete((result, throwable) -> System.err.println(String.format(
+        InfoMessages.SERVER_JOB_FINISHED,
+        submittedJob.getId(),
+        submittedJob.getInput(),
+        submittedJob.getOutput(),
+        submittedJob.getStatus().getName(),
+        result != null ? result.getObjectCount() : 0,
+        result != null ? result.getDurationMillis() : 0
+    )));
+
+    exchange.getResponseHeaders().set("Location", JOBS_PATH + "/" + job.getId());
+    respond(exchange, STATUS_ACCEPTED, job::writeStatus);
+  }
+
+  /**
+   * Reads the arguments of a job from a request body such as
+   * {"file": "in.json", "out": "out.json", "args": ["--ordered"]}.
+   */
+  private List<String> readJobArgs(InputStream body) throws IOException {
+    List<String> jobArgs = new ArrayList<>();
+    List<String> extraArgs = new ArrayList<>();
+
+    try (JsonParser jsonParser = jsonFactory.createParser(body)) {
+      if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+        throw invalidJobRequest();
+      }
+
+      while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = jsonParser.getCurrentName();
+        JsonToken value = jsonParser.nextToken();
+
+        if ("args".equals(field) && value == JsonToken.START_ARRAY) {
+          while (jsonParser.nextToken() == JsonToken.VALUE_STRING) {
+            extraArgs.add(jsonParser.getText());
+          }
+          if (jsonParser.currentToken() != JsonToken.END_ARRAY) {
+            throw invalidJobRequest();
+          }
+        } else if (value != JsonToken.VALUE_STRING) {
+          throw invalidJobRequest();
+        } else if ("file".equals(field)) {
+          jobArgs.add("--file");
+          jobArgs.add(jsonParser.getText());
+        } else if ("url".equals(field)) {
+          jobArgs.add("--url");
+          jobArgs.add(jsonParser.getText());
+        } else if ("out".equals(field)) {
+          jobArgs.add("--out");
+          jobArgs.add(jsonParser.getText());
+        } else {
+          throw invalidJobRequest();
+        }
+      }
+    } catch (JsonProcessingException ex) {
+      throw invalidJobRequest();
+    }
+
+    jobArgs.addAll(extraArgs);
+    return jobArgs;
+  }
+
+  private static InvalidArgumentException invalidJobRequest() {
+    return new InvalidArgumentException(
+        ErrorCode.INVALID_ARGUMENTS,
+        ErrorMessages.INVALID_JOB_REQUEST
+    );
+  }
+
+  /**
+   * Finds the job whose id follows the jobs path, as in "/12".
+   *
+   * @return The job, or null if there is none
+   */
+  private Job findJob(String idPath) {
+    if (!idPath.startsWith("/")) {
+      return null;
+    }
+    try {
+      long id = Long.parseLong(idPath.substring(1));
+      synchronized (jobs) {
+        return jobs.get(id);
+      }
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Forgets the oldest finished jobs while more than MAX_RETAINED_JOBS are kept. Must be called
+   * while holding the lock on jobs.
+   */
+  private void forgetFinishedJobs() {
+    Iterator<Job> iterator = jobs.values().iterator();
+    while (jobs.size() > MAX_RETAINED_JOBS && iterator.hasNext()) {
+      if (iterator.next().isFinished()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private void writeJobs(JsonGenerator jsonGenerator) throws IOException {
+    List<Job> jobList;
+    synchronized (jobs) {
+      jobList = new ArrayList<>(jobs.values());
+    }
+
+    jsonGenerator.writeStartArray();
+    for (Job job : jobList) {
+      job.writeStatus(jsonGenerator);
+    }
+    jsonGenerator.writeEndArray();
+  }
+
+  private void respondMethodNotAllowed(
+      HttpExchange exchange,
+      String method,
+      String path
+  ) throws IOException {
+    respondError(
+        exchange,
+        STATUS_METHOD_NOT_ALLOWED,
+        null,
+        String.format(ErrorMessages.SERVER_METHOD_NOT_ALLOWED, method, path)
+    );
+  }
+
+  private void respondError(
+      HttpExchange exchange,
+      int status,
+      ErrorCode errorCode,
+      String message
+  ) throws IOException {
+    respond(exchange, status, jsonGenerator -> {
+      jsonGenerator.writeStartObject();
+      if (errorCode != null) {
+        jsonGenerator.writeNumberField("errorCode", errorCode.getValue());
+      }
+      jsonGenerator.writeStringField("error", message);
+      jsonGenerator.writeEndObject();
+    });
+  }
+
+  private void respond(
+      HttpExchange exchange,
+      int status,
+      ResponseBody responseBody
+  ) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (JsonGenerator jsonGenerator = jsonFactory.createGenerator(body, JsonEncoding.UTF8)) {
+      responseBody.write(jsonGenerator);
+    }
+    body.write('\n');
+
+    exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+    exchange.sendResponseHeaders(status, body.size());
+    body.writeTo(exchange.getResponseBody());
+  }
+}
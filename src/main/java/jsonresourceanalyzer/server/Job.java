@@ -0,0 +1,131 @@
+package jsonresourceanalyzer.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import jsonresourceanalyzer.AnalysisProgress;
+import jsonresourceanalyzer.AnalysisResult;
+import jsonresourceanalyzer.exceptions.AnalyzerException;
+
+/**
+ * A job submitted to an AnalysisServer: one analysis of the input and output it names.
+ */
+class Job {
+
+  /**
+   * States a job passes through, named as they are reported.
+   */
+  enum Status {
+    QUEUED("queued"),
+    RUNNING("running"),
+    SUCCEEDED("succeeded"),
+    FAILED("failed");
+
+    private final String name;
+
+    Status(String name) {
+      this.name = name;
+    }
+
+    String getName() {
+      return name;
+    }
+  }
+
+  private final long id;
+  private final String input;
+  private final String output;
+  private final AnalysisProgress analysisProgress;
+  private final CompletableFuture<AnalysisResult> result;
+
+  Job(
+      long id,
+      String input,
+      String output,
+      AnalysisProgress analysisProgress,
+      CompletableFuture<AnalysisResult> result
+  ) {
+    this.id = id;
+    this.input = input;
+    this.output = output;
+    this.analysisProgress = analysisProgress;
+    this.result = result;
+  }
+
+  long getId() {
+    return id;
+  }
+
+  String getInput() {
+    return input;
+  }
+
+  String getOutput() {
+    return output;
+  }
+
+  CompletableFuture<AnalysisResult> getResult() {
+    return result;
+  }
+
+  boolean isFinished() {
+    return result.isDone();
+  }
+
+  Status getStatus() {
+    if (result.isDone()) {
+      return result.isCompletedExceptionally() ? Status.FAILED : Status.SUCCEEDED;
+    }
+    return analysisProgress.isStarted() ? Status.RUNNING : Status.QUEUED;
+  }
+
+  /**
+   * Writes the status of the job as a JSON object. A finished job includes its summary, or the
+   * error code and message it failed with.
+   *
+   * @param jsonGenerator Generator to write to
+   */
+  void writeStatus(JsonGenerator jsonGenerator) throws IOException {
+    // read the status first so the progress is at least as recent
+    Status status = getStatus();
+
+    jsonGenerator.writeStartObject();
+    jsonGenerator.writeNumberField("id", id);
+    jsonGenerator.writeStringField("status", status.getName());
+    jsonGenerator.writeStringField("input", input);
+    jsonGenerator.writeStringField("output", output);
+    jsonGenerator.writeNumberField("objectsRead", analysisProgress.getObjectsRead());
+    jsonGenerator.writeNumberField("objectsCompleted", analysisProgress.getObjectsCompleted());
+
+    if (status == Status.SUCCEEDED) {
+      AnalysisResult analysisResult = result.join();
+      jsonGenerator.writeNumberField("correctedSizes", analysisResult.getCorrectedSizeCount());
+      jsonGenerator.writeNumberField("durationMillis", analysisResult.getDurationMillis());
+
+    } else if (status == Status.FAILED) {
+      Throwable failure = getFailure();
+      if (failure instanceof AnalyzerException) {
+        jsonGenerator.writeNumberField(
+            "errorCode",
+            ((AnalyzerException) failure).getErrorCode().getValue()
+        );
+      }
+      jsonGenerator.writeStringField("error", String.valueOf(failure.getMessage()));
+    }
+
+    jsonGenerator.writeEndObject();
+  }
+
+  /**
+   * Returns the exception the job failed with.
+   */
+  Throwable getFailure() {
+    try {
+      result.join();
+      return null;
+    } catch (CompletionException ex) {
+      return ex.getCause() != null ? ex.getCause() : ex;
+    }
+  }
+}
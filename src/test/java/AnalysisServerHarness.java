@@ -0,0 +1,276 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.server.AnalysisServer;
+
+/**
+ * Checks that the options a job gives take precedence over those of the server running it, and
+ * that the server turns away jobs it must not run. An in-process HTTP server serves every URL of
+ * the manifests, counting the GET and HEAD requests it receives and the requests it is serving at
+ * once.
+ *
+ * <p>The analysis server is started with the download strategy and more workers than the first
+ * job asks for. That job gives -s metadata and a lower -w, and passes only if every object was
+ * sized with a HEAD request and no more requests were served at once than its -w. A second job,
+ * without options of its own, must download every object and use more of the server's workers.
+ * Last, a job submitted without the JSON content type, one naming a file outside the server root
+ * or standard input, and one giving an option the jobs share must all be refused. Options, with
+ * their defaults:
+ *
+ * <pre>
+ *   --objects 60         objects in each job's manifest
+ *   --server-workers 8   workers of the analysis server
+ *   --job-workers 2      workers asked for by the first job
+ * </pre>
+ */
+public class AnalysisServerHarness {
+
+  private static final int RESPONSE_SIZE = 1024;
+  private static final long RESPONSE_DELAY_MILLIS = 20;
+  private static final long POLL_INTERVAL_MILLIS = 10;
+  private static final int STATUS_BAD_REQUEST = 400;
+  private static final int STATUS_UNSUPPORTED_MEDIA_TYPE = 415;
+
+  private final byte[] body = new byte[RESPONSE_SIZE];
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicInteger gets = new AtomicInteger();
+  private final AtomicInteger heads = new AtomicInteger();
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  private String jobs;
+
+  public static void main(String[] args) throws Exception {
+    int objects = 60;
+    int serverWorkers = 8;
+    int jobWorkers = 2;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if ("--objects".equals(args[i])) {
+        objects = Integer.parseInt(args[i + 1]);
+      } else if ("--server-workers".equals(args[i])) {
+        serverWorkers = Integer.parseInt(args[i + 1]);
+      } else if ("--job-workers".equals(args[i])) {
+        jobWorkers = Integer.parseInt(args[i + 1]);
+      }
+    }
+
+    AnalysisServerHarness harness = new AnalysisServerHarness();
+    ExecutorService originThreads = Executors.newCachedThreadPool();
+    HttpServer origin =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    origin.createContext("/", harness::handle);
+    // serve every request at once, so only the analysis limits concurrency
+    origin.setExecutor(originThreads);
+    origin.start();
+
+    File root = Files.createTempDirectory("analysis-server-harness").toFile();
+    boolean passed;
+    try {
+      String base = "http://127.0.0.1:" + origin.getAddress().getPort() + "/";
+      File metadataManifest = new File(root, "metadata.json");
+      JsonCreator.createJsonFile(
+          metadataManifest.getPath(), objects, RESPONSE_SIZE, i -> base + "metadata/" + i
+      );
+      File downloadManifest = new File(root, "download.json");
+      JsonCreator.createJsonFile(
+          downloadManifest.getPath(), objects, RESPONSE_SIZE, i -> base + "download/" + i
+      );
+
+      ArgParser argParser = new ArgParser(new String[] {
+          "--serve", "0",
+          "--serve-root", root.getPath(),
+          "-s", "download",
+          "-w", Integer.toString(serverWorkers)
+      });
+      try (AnalysisServer analysisServer = new AnalysisServer(argParser)) {
+        harness.jobs = "http://127.0.0.1:" + analysisServer.getPort() + "/jobs";
+        System.out.println("job        GET  HEAD  max in flight");
+
+        String job = String.format(
+            "{\"file\": \"%s\", \"out\": \"%s\", \"args\": [\"-s\", \"metadata\", \"-w\", \"%d\"]}",
+            metadataManifest.getPath(),
+            new File(root, "metadata-out.json").getPath(),
+            jobWorkers
+        );
+        harness.run("metadata", job);
+        passed = harness.expect("metadata", harness.gets.get() == 0, "sent GET requests");
+        passed &= harness.expect("metadata", harness.heads.get() == objects, "missed HEADs");
+        passed &= harness.expect(
+            "metadata",
+            harness.maxInFlight.get() <= jobWorkers,
+            "exceeded its -w of " + jobWorkers
+        );
+
+        job = String.format(
+            "{\"file\": \"%s\", \"out\": \"%s\"}",
+            downloadManifest.getPath(),
+            new File(root, "download-out.json").getPath()
+        );
+        harness.run("download", job);
+        passed &= harness.expect("download", harness.gets.get() == objects, "missed GETs");
+        passed &= harness.expect(
+            "download",
+            harness.maxInFlight.get() > jobWorkers,
+            "did not use the server's workers"
+        );
+
+        passed &= harness.expectRefused(
+            "text/plain",
+            "text/plain",
+            "{\"file\": \"" + downloadManifest.getPath() + "\", \"out\": \"out.json\"}",
+            STATUS_UNSUPPORTED_MEDIA_TYPE
+        );
+        passed &= harness.expectRefused(
+            "outside root",
+            "application/json",
+            "{\"file\": \"" + File.listRoots()[0].getPath() + "\", \"out\": \"out.json\"}",
+            STATUS_BAD_REQUEST
+        );
+        passed &= harness.expectRefused(
+            "stdin",
+            "application/json",
+            "{\"file\": \"-\", \"out\": \"" + new File(root, "out.json").getPath() + "\"}",
+            STATUS_BAD_REQUEST
+        );
+        passed &= harness.expectRefused(
+            "shared",
+            "application/json; charset=utf-8",
+            String.format(
+                "{\"file\": \"%s\", \"out\": \"%s\", \"args\": [\"--read-timeout\", \"1\"]}",
+                downloadManifest.getPath(),
+                new File(root, "out.json").getPath()
+            ),
+            STATUS_BAD_REQUEST
+        );
+      }
+    } finally {
+      origin.stop(0);
+      originThreads.shutdownNow();
+      for (File file : root.listFiles()) {
+        file.delete();
+      }
+      root.delete();
+    }
+
+    System.out.println(passed ? "PASSED" : "FAILED");
+    if (!passed) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Submits a job, waits for it to succeed and prints what the origin saw while it ran.
+   */
+  private void run(String name, String job) throws IOException, InterruptedException {
+    inFlight.set(0);
+    maxInFlight.set(0);
+    gets.set(0);
+    heads.set(0);
+
+    HttpResponse<String> submitted = submit("application/json", job);
+    URI status = URI.create(jobs).resolve(
+        submitted.headers().firstValue("Location").orElseThrow(
+            () -> new IllegalStateException("Job was not accepted: " + submitted.body())
+        )
+    );
+
+    String state;
+    do {
+      TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+      state = client.send(
+          HttpRequest.newBuilder(status).build(),
+          HttpResponse.BodyHandlers.ofString()
+      ).body();
+    } while (state.contains("\"queued\"") || state.contains("\"running\""));
+    if (!state.contains("\"succeeded\"")) {
+      throw new IllegalStateException("Job failed: " + state);
+    }
+
+    System.out.println(String.format(
+        "%-8s  %5d  %4d  %13d",
+        name,
+        gets.get(),
+        heads.get(),
+        maxInFlight.get()
+    ));
+  }
+
+  private HttpResponse<String> submit(String contentType, String job)
+      throws IOException, InterruptedException {
+    return client.send(
+        HttpRequest.newBuilder(URI.create(jobs))
+            .header("Content-Type", contentType)
+            .POST(HttpRequest.BodyPublishers.ofString(job))
+            .build(),
+        HttpResponse.BodyHandlers.ofString()
+    );
+  }
+
+  private boolean expect(String name, boolean condition, String failure) {
+    if (!condition) {
+      System.out.println(name + ": " + failure);
+    }
+    return condition;
+  }
+
+  /**
+   * Submits a job the server must refuse, and checks the status it answers with.
+   */
+  private boolean expectRefused(String name, String contentType, String job, int expectedStatus)
+      throws IOException, InterruptedException {
+    HttpResponse<String> response = submit(contentType, job);
+    System.out.println(String.format(
+        "%-12s  refused with %d: %s",
+        name,
+        response.statusCode(),
+        response.body().trim()
+    ));
+    return expect(
+        name,
+        response.statusCode() == expectedStatus,
+        "expected " + expectedStatus + " but was " + response.statusCode()
+    );
+  }
+
+  /**
+   * Answers a GET or HEAD after a short delay, counting the request while it is being served.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    boolean head = "HEAD".equals(exchange.getRequestMethod());
+    (head ? heads : gets).incrementAndGet();
+    int current = inFlight.incrementAndGet();
+    maxInFlight.accumulateAndGet(current, Math::max);
+    try {
+      TimeUnit.MILLISECONDS.sleep(RESPONSE_DELAY_MILLIS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      inFlight.decrementAndGet();
+    }
+
+    try {
+      if (head) {
+        exchange.getResponseHeaders().set("Content-Length", Integer.toString(RESPONSE_SIZE));
+        exchange.sendResponseHeaders(200, -1);
+      } else {
+        exchange.sendResponseHeaders(200, RESPONSE_SIZE);
+        exchange.getResponseBody().write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+}
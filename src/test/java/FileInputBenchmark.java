@@ -0,0 +1,95 @@
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.json.JsonReader;
+
+/**
+ * Compares parsing a manifest read through the stream path with parsing it through memory mapped
+ * windows, for manifests of the sizes given in GB (1 and 10 by default). Manifests are generated in
+ * the temporary directory on first use and kept for later runs. Every object has a 1KB URL so that
+ * large manifests do not need a large heap for the duplicate path index. Each mode is run twice and
+ * the second run is reported, so both read from a warm page cache.
+ */
+public class FileInputBenchmark {
+
+  private static final int URL_LENGTH = 1000;
+  private static final long BYTES_PER_GB = 1L << 30;
+
+  public static void main(String[] args) throws IOException {
+    String[] sizes = args.length > 0 ? args : new String[]{"1", "10"};
+
+    System.out.println("size  mode     wall      cpu        MB/s");
+    for (String size : sizes) {
+      File manifest = createManifest(Integer.parseInt(size));
+      for (String mode : new String[]{"stream", "mmap"}) {
+        run(manifest, mode);
+        long[] result = run(manifest, mode);
+        System.out.println(String.format(
+            "%3sGB  %-6s  %6.1fs  %6.1fs  %8.0f",
+            size,
+            mode,
+            result[0] / 1e9,
+            result[1] / 1e9,
+            manifest.length() / 1e6 / (result[0] / 1e9)
+        ));
+      }
+    }
+  }
+
+  /**
+   * Parses the manifest without validating any objects.
+   *
+   * @return Elapsed nanoseconds and process CPU nanoseconds
+   */
+  static long[] run(File manifest, String mode) throws IOException {
+    File output = File.createTempFile("file-input-benchmark", ".json");
+    output.deleteOnExit();
+
+    String[] arguments = "mmap".equals(mode)
+        ? new String[]{"-f", manifest.getPath(), "-o", output.getPath(), "--mmap"}
+        : new String[]{"-f", manifest.getPath(), "-o", output.getPath()};
+
+    LongAdder objects = new LongAdder();
+    long cpuBefore = processCpuTime();
+    long start = System.nanoTime();
+    new JsonReader(new ArgParser(arguments)).onObjectRead(object -> objects.increment()).readFile();
+    return new long[]{System.nanoTime() - start, processCpuTime() - cpuBefore};
+  }
+
+  static File createManifest(int gigabytes) throws IOException {
+    File manifest = new File(System.getProperty("java.io.tmpdir"), "manifest-" + gigabytes + "gb.json");
+    if (manifest.length() >= gigabytes * BYTES_PER_GB) {
+      return manifest;
+    }
+
+    StringBuilder url = new StringBuilder("http://www.google.com/?q=");
+    while (url.length() < URL_LENGTH) {
+      url.append('x');
+    }
+
+    JsonGenerator jsonGenerator = new JsonFactory().createGenerator(manifest, JsonEncoding.UTF8);
+    jsonGenerator.writeStartArray();
+    long bytes = 0;
+    for (int i = 0; bytes < gigabytes * BYTES_PER_GB; i++) {
+      jsonGenerator.writeStartObject();
+      jsonGenerator.writeStringField("path", "path_value_" + (i + 1));
+      jsonGenerator.writeNumberField("size", 290);
+      jsonGenerator.writeStringField("url", url.toString());
+      jsonGenerator.writeEndObject();
+      bytes += URL_LENGTH + 50;
+    }
+    jsonGenerator.writeEndArray();
+    jsonGenerator.close();
+    return manifest;
+  }
+
+  static long processCpuTime() {
+    return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+        .getProcessCpuTime();
+  }
+}
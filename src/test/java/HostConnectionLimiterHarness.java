@@ -0,0 +1,246 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import jsonresourceanalyzer.enums.SizingStrategy;
+import jsonresourceanalyzer.http.AsyncUrlResourceSizer;
+import jsonresourceanalyzer.http.HostConnectionLimiter;
+import jsonresourceanalyzer.http.ResourceSize;
+import jsonresourceanalyzer.http.RetryPolicy;
+import jsonresourceanalyzer.http.UrlResourceSizer;
+import jsonresourceanalyzer.metrics.Metrics;
+
+/**
+ * Checks the per-host connection limit and keep-alive reuse against an in-process HTTP server. The
+ * server counts the requests it is serving at once, and the client ports it has seen, one per
+ * connection, so reuse is measured on the wire, since the limiter cannot see the JDK's keep-alive
+ * caches.
+ *
+ * <p>Each fetch engine sizes the same URL from more threads than the limit allows connections.
+ * The harness fails if the server ever serves more requests at once than the limit, or if the
+ * client opens more connections than the limit, which it only does if connections are not reused.
+ * Every tenth response is slow, and the async engine runs a second time with hedging, from half as
+ * many threads as the limit so hedges find a free lease. It must keep to the limit too, but its
+ * losing copies are closed, so it is not held to the connection count.
+ * Options, with their defaults:
+ *
+ * <pre>
+ *   --requests 400     requests sent by each fetch engine
+ *   --threads 16       threads sending them
+ *   --limit 4          connections allowed to the host
+ * </pre>
+ */
+public class HostConnectionLimiterHarness {
+
+  private static final int RESPONSE_SIZE = 4096;
+  private static final long RESPONSE_DELAY_MILLIS = 5;
+  private static final long SLOW_RESPONSE_DELAY_MILLIS = 100;
+  private static final int SLOW_RESPONSE_INTERVAL = 10;
+
+  private final byte[] body = new byte[RESPONSE_SIZE];
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new ConcurrentHashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+    }
+    int requestCount = Integer.parseInt(options.getOrDefault("requests", "400"));
+    int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+    int limit = Integer.parseInt(options.getOrDefault("limit", "4"));
+
+    // keep as many idle connections per host as the limit, the way the command line does
+    HostConnectionLimiter.configureKeepAlive(limit, 30);
+
+    HostConnectionLimiterHarness harness = new HostConnectionLimiterHarness();
+    HttpServer server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", harness::handle);
+    // serve every request at once, so only the client limits concurrency
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+
+    boolean passed;
+    try {
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/resource");
+      RetryPolicy retryPolicy = new RetryPolicy(10, 30, 1, 0);
+      System.out.println(
+          "engine    requests  max in flight  connections  reused  lease waits  hedged"
+      );
+
+      HostConnectionLimiter blockingLimiter = new HostConnectionLimiter(limit, 30);
+      UrlResourceSizer urlResourceSizer =
+          new UrlResourceSizer(SizingStrategy.DOWNLOAD, blockingLimiter, retryPolicy, null);
+      passed = harness.check(
+          "blocking",
+          blockingLimiter,
+          limit,
+          requestCount,
+          threads,
+          sizeUrl -> urlResourceSizer.size(sizeUrl),
+          url,
+          true
+      );
+
+      HostConnectionLimiter asyncLimiter = new HostConnectionLimiter(limit, 30);
+      AsyncUrlResourceSizer asyncUrlResourceSizer = new AsyncUrlResourceSizer(
+          SizingStrategy.DOWNLOAD,
+          asyncLimiter,
+          retryPolicy,
+          false,
+          null
+      );
+      try {
+        passed &= harness.check(
+            "async",
+            asyncLimiter,
+            limit,
+            requestCount,
+            threads,
+            sizeUrl -> asyncUrlResourceSizer.size(sizeUrl, null).join(),
+            url,
+            true
+        );
+      } finally {
+        asyncUrlResourceSizer.close();
+      }
+
+      HostConnectionLimiter hedgedLimiter = new HostConnectionLimiter(limit, 30);
+      AsyncUrlResourceSizer hedgedUrlResourceSizer = new AsyncUrlResourceSizer(
+          SizingStrategy.DOWNLOAD,
+          hedgedLimiter,
+          retryPolicy,
+          true,
+          null
+      );
+      try {
+        passed &= harness.check(
+            "hedged",
+            hedgedLimiter,
+            limit,
+            requestCount,
+            Math.max(1, limit / 2),
+            sizeUrl -> hedgedUrlResourceSizer.size(sizeUrl, null).join(),
+            url,
+            false
+        );
+      } finally {
+        hedgedUrlResourceSizer.close();
+      }
+    } finally {
+      server.stop(0);
+      ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    System.out.println(passed ? "PASSED" : "FAILED");
+    if (!passed) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Sizes the URL from several threads at once with one fetch engine, prints what the server saw
+   * and checks it against the limit.
+   *
+   * @param reused Whether every connection must be reused, which hedging does not allow
+   * @return True if the limit held and connections were reused
+   */
+  private boolean check(
+      String engine,
+      HostConnectionLimiter hostConnectionLimiter,
+      int limit,
+      int requestCount,
+      int threads,
+      Function<URL, ResourceSize> sizer,
+      URL url,
+      boolean reused
+  ) throws Exception {
+    long hedged = Metrics.HEDGED_REQUESTS.sum();
+    inFlight.set(0);
+    maxInFlight.set(0);
+    requests.set(0);
+    clientPorts.clear();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ResourceSize>> sizes = new ArrayList<>();
+      for (int i = 0; i < requestCount; i++) {
+        sizes.add(executor.submit(() -> sizer.apply(url)));
+      }
+      for (Future<ResourceSize> size : sizes) {
+        if (size.get().getSize() != RESPONSE_SIZE) {
+          System.out.println(engine + ": wrong size " + size.get().getSize());
+          return false;
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    int connections = clientPorts.size();
+    System.out.println(String.format(
+        "%-8s  %8d  %13d  %11d  %6d  %11d  %6d",
+        engine,
+        requests.get(),
+        maxInFlight.get(),
+        connections,
+        requests.get() - connections,
+        hostConnectionLimiter.getLeaseWaitCount(),
+        Metrics.HEDGED_REQUESTS.sum() - hedged
+    ));
+
+    boolean passed = true;
+    if (maxInFlight.get() > limit) {
+      System.out.println(engine + ": served " + maxInFlight.get() + " requests at once");
+      passed = false;
+    }
+    if (reused && connections > limit) {
+      System.out.println(engine + ": opened " + connections + " connections");
+      passed = false;
+    }
+    return passed;
+  }
+
+  /**
+   * Serves the resource after a short delay, or a longer one for every tenth request, counting the
+   * request while it is being served.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    boolean slow = requests.incrementAndGet() % SLOW_RESPONSE_INTERVAL == 0;
+    clientPorts.add(exchange.getRemoteAddress().getPort());
+    int current = inFlight.incrementAndGet();
+    maxInFlight.accumulateAndGet(current, Math::max);
+    try {
+      TimeUnit.MILLISECONDS.sleep(slow ? SLOW_RESPONSE_DELAY_MILLIS : RESPONSE_DELAY_MILLIS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      // stop counting before the body is sent, since the client may send its next request on
+      // another connection as soon as it has read the last byte
+      inFlight.decrementAndGet();
+    }
+
+    try {
+      exchange.sendResponseHeaders(200, RESPONSE_SIZE);
+      exchange.getResponseBody().write(body);
+    } finally {
+      exchange.close();
+    }
+  }
+}
@@ -3,18 +3,29 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.IntFunction;
 
 public class JsonCreator {
+
+  private static final Path RESOURCES = Paths.get("src", "test", "resources");
+
   public static void main(String[] args) throws IOException {
     createLargeJsonFile();
     createReallyLargeJsonFile();
   }
 
   static void createLargeJsonFile() throws IOException {
-    createJsonFile(".\\src\\test\\resources\\large.json", 1000);
+    createJsonFile(RESOURCES.resolve("large.json").toString(), 1000);
   }
 
   static void createJsonFile(String filePath, int objectCount) throws IOException {
+    createJsonFile(filePath, objectCount, 290, i -> "http://www.google.com");
+  }
+
+  static void createJsonFile(String filePath, int objectCount, int size, IntFunction<String> url)
+      throws IOException {
     JsonFactory jsonFactory = new JsonFactory();
     JsonGenerator jsonGenerator = jsonFactory.createGenerator(new File(filePath), JsonEncoding.UTF8);
 
@@ -28,10 +39,10 @@ public class JsonCreator {
       jsonGenerator.writeStringField("path", "path_value_" + (i + 1));
 
       // write size
-      jsonGenerator.writeNumberField("size", 290);
+      jsonGenerator.writeNumberField("size", size);
 
       // write path
-      jsonGenerator.writeStringField("url", "http://www.google.com");
+      jsonGenerator.writeStringField("url", url.apply(i));
 
       jsonGenerator.writeEndObject();
     }
@@ -42,6 +53,6 @@ public class JsonCreator {
   }
 
   static void createReallyLargeJsonFile() throws IOException {
-    createJsonFile(".\\src\\test\\resources\\really-large.json", 500000);
+    createJsonFile(RESOURCES.resolve("really-large.json").toString(), 500000);
   }
 }
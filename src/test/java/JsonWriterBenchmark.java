@@ -0,0 +1,149 @@
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.json.InputJsonObject;
+import jsonresourceanalyzer.json.JsonWriter;
+
+/**
+ * Compares writing output through the queued JsonWriter with writing it under a single lock, as
+ * JsonWriter used to, for an increasing number of worker threads. Reports writer throughput and the
+ * average time a worker spends handing off each object, first with workers that do nothing but
+ * write and then with workers that pause between writes as if validating a URL.
+ */
+public class JsonWriterBenchmark {
+
+  private static final int OBJECT_COUNT = 1_000_000;
+  private static final long VALIDATION_NANOS = 50_000;
+  private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+  public static void main(String[] args) throws Exception {
+    File input = File.createTempFile("writer-benchmark", ".json");
+    File output = File.createTempFile("writer-benchmark", ".out.json");
+    Files.write(input.toPath(), "[]".getBytes());
+    input.deleteOnExit();
+    output.deleteOnExit();
+
+    String[] arguments = {"-f", input.getPath(), "-o", output.getPath()};
+    InputJsonObject[] objects = createObjects();
+
+    for (long validationNanos : new long[]{0, VALIDATION_NANOS}) {
+      System.out.println(String.format("validation time per object: %dns", validationNanos));
+      System.out.println("threads  mode    objects/s  wait/object");
+
+      for (int threads : THREAD_COUNTS) {
+        // synchronized baseline
+        LockedWriter lockedWriter = new LockedWriter(output);
+        report(threads, "locked", run(threads, objects, validationNanos, lockedWriter::writeObject,
+            () -> { }));
+        lockedWriter.close();
+
+        // queued writer thread
+        JsonWriter jsonWriter = new JsonWriter(new ArgParser(arguments));
+        jsonWriter.startFile();
+        report(threads, "queued", run(threads, objects, validationNanos, jsonWriter::writeObject,
+            jsonWriter::endFile));
+      }
+    }
+  }
+
+  static InputJsonObject[] createObjects() {
+    InputJsonObject[] objects = new InputJsonObject[OBJECT_COUNT];
+    for (int i = 0; i < OBJECT_COUNT; i++) {
+      InputJsonObject object = new InputJsonObject();
+      object.setProperty("path", "path_value_" + (i + 1));
+      object.setProperty("size", 290);
+      object.setProperty("url", "http://www.google.com");
+      objects[i] = object;
+    }
+    return objects;
+  }
+
+  /**
+   * Writes every object from the given number of threads, then runs finish.
+   *
+   * @return Elapsed nanoseconds, total nanoseconds workers spent inside write, and objects written
+   */
+  static long[] run(int threads, InputJsonObject[] objects, long validationNanos,
+      Consumer<InputJsonObject> write, Runnable finish) throws InterruptedException {
+    LongAdder waitNanos = new LongAdder();
+    CountDownLatch done = new CountDownLatch(threads);
+    long start = System.nanoTime();
+
+    for (int t = 0; t < threads; t++) {
+      int first = t;
+      new Thread(() -> {
+        // paced runs write a tenth of the objects to keep their running time reasonable
+        int count = validationNanos > 0 ? objects.length / 10 : objects.length;
+        for (int i = first; i < count; i += threads) {
+          if (validationNanos > 0) {
+            LockSupport.parkNanos(validationNanos);
+          }
+          long before = System.nanoTime();
+          write.accept(objects[i]);
+          waitNanos.add(System.nanoTime() - before);
+        }
+        done.countDown();
+      }).start();
+    }
+
+    done.await();
+    finish.run();
+    int count = validationNanos > 0 ? objects.length / 10 : objects.length;
+    return new long[]{System.nanoTime() - start, waitNanos.sum(), count};
+  }
+
+  static void report(int threads, String mode, long[] result) {
+    System.out.println(String.format(
+        "%7d  %-6s  %9.0f  %9.0fns",
+        threads,
+        mode,
+        result[2] / (result[0] / 1e9),
+        (double) result[1] / result[2]
+    ));
+  }
+
+  /**
+   * Checks for duplicates and generates each object's JSON under one lock.
+   */
+  static class LockedWriter {
+
+    private final JsonGenerator jsonGenerator;
+    private final SortedSet<String> pathSet = new TreeSet<>();
+
+    LockedWriter(File output) throws IOException {
+      jsonGenerator = new JsonFactory().createGenerator(output, JsonEncoding.UTF8);
+      jsonGenerator.writeStartObject();
+    }
+
+    synchronized void writeObject(InputJsonObject inputJsonObject) {
+      try {
+        if (!pathSet.add(inputJsonObject.getPath())) {
+          throw new IllegalStateException(inputJsonObject.getPath());
+        }
+        jsonGenerator.writeFieldName(inputJsonObject.getPath());
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeNumberField("size", inputJsonObject.getSize());
+        jsonGenerator.writeStringField("url", inputJsonObject.getUrl());
+        jsonGenerator.writeEndObject();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    void close() throws IOException {
+      jsonGenerator.writeEndObject();
+      jsonGenerator.close();
+    }
+  }
+}
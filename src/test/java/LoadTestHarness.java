@@ -0,0 +1,260 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.JsonResourceAnalyzer;
+import jsonresourceanalyzer.http.HostConnectionLimiter;
+import jsonresourceanalyzer.metrics.LatencySnapshot;
+import jsonresourceanalyzer.metrics.Metrics;
+
+/**
+ * Runs the whole JsonResourceAnalyzer pipeline against an in-process HTTP server standing in for
+ * real origins, and reports objects per second, the p50 and p99 sizing latency, and the peak heap.
+ * The manifest is generated with JsonCreator. The sizing latency is Metrics.SIZING_LATENCY: the
+ * time from asking for a connection lease to the last response of every request and retry sizing a
+ * URL resource, recorded once per resource sized. Objects answered by a URL size cache, restored
+ * from a journal or a previous output, or accepted unsampled are not in it, nor is the time an
+ * object is queued before or after sizing, so it is not the latency of an object through the
+ * pipeline. The sized column says how many resources it covers.
+ *
+ * <p>The server answers GET, HEAD, single byte range and If-None-Match requests like a static file
+ * server. Each response is delayed by a log-normal latency, and a share of them fail. Requests
+ * beyond a concurrency cap are refused with 429. Bodies can be sent at a capped bandwidth, and
+ * keep-alive can be turned off. Options, with their defaults:
+ *
+ * <pre>
+ *   --objects 10000            objects in the manifest
+ *   --urls 10000               distinct URLs the objects point at
+ *   --response-size 16384      bytes in every response body
+ *   --latency-median-ms 20     median latency added to every response
+ *   --latency-sigma 0.5        sigma of the log-normal latency; 0 makes it constant
+ *   --error-rate 0             share of responses that are 503s
+ *   --max-concurrent 0         requests served at once before 429s; 0 for no cap
+ *   --bandwidth 0              bytes per second each body is sent at; 0 for no cap
+ *   --no-keep-alive            close the connection after every response
+ * </pre>
+ *
+ * Arguments after "--" are passed to JsonResourceAnalyzer, and default to "-w 20". The peak heap
+ * covers the server as well as the pipeline, since both run in this JVM.
+ */
+public class LoadTestHarness {
+
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  private final int responseSize;
+  private final double latencyMedianMillis;
+  private final double latencySigma;
+  private final double errorRate;
+  private final Semaphore concurrencyCap;
+  private final long bandwidth;
+  private final boolean keepAlive;
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder throttled = new LongAdder();
+
+  LoadTestHarness(Map<String, String> options) {
+    responseSize = Integer.parseInt(options.getOrDefault("response-size", "16384"));
+    latencyMedianMillis = Double.parseDouble(options.getOrDefault("latency-median-ms", "20"));
+    latencySigma = Double.parseDouble(options.getOrDefault("latency-sigma", "0.5"));
+    errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+    int maxConcurrent = Integer.parseInt(options.getOrDefault("max-concurrent", "0"));
+    concurrencyCap = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+    bandwidth = Long.parseLong(options.getOrDefault("bandwidth", "0"));
+    keepAlive = !options.containsKey("no-keep-alive");
+    Arrays.fill(chunk, (byte) 'x');
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    List<String> analyzerArgs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if ("--".equals(args[i])) {
+        analyzerArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+        break;
+      }
+      String name = args[i].substring(2);
+      boolean isFlag = i + 1 == args.length || args[i + 1].startsWith("--");
+      options.put(name, isFlag ? "" : args[++i]);
+    }
+    if (analyzerArgs.isEmpty()) {
+      analyzerArgs.addAll(Arrays.asList("-w", "20"));
+    }
+
+    LoadTestHarness harness = new LoadTestHarness(options);
+    int objects = Integer.parseInt(options.getOrDefault("objects", "10000"));
+    int urls = Integer.parseInt(options.getOrDefault("urls", Integer.toString(objects)));
+
+    ExecutorService serverThreads = Executors.newCachedThreadPool();
+    HttpServer server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        0
+    );
+    server.createContext("/", harness::handle);
+    server.setExecutor(serverThreads);
+    server.start();
+
+    try {
+      String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/r/";
+      File manifest = File.createTempFile("load-test-manifest", ".json");
+      File output = File.createTempFile("load-test-output", ".json");
+      manifest.deleteOnExit();
+      output.deleteOnExit();
+      JsonCreator.createJsonFile(
+          manifest.getPath(),
+          objects,
+          harness.responseSize,
+          i -> base + (i % urls)
+      );
+
+      List<String> fullArgs = new ArrayList<>(
+          Arrays.asList("-f", manifest.getPath(), "-o", output.getPath())
+      );
+      fullArgs.addAll(analyzerArgs);
+      harness.run(objects, fullArgs.toArray(new String[0]));
+    } finally {
+      server.stop(0);
+      serverThreads.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs the pipeline and prints its report.
+   */
+  void run(int objects, String[] analyzerArgs) {
+    System.gc();
+    List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        heapPools.add(pool);
+      }
+    }
+
+    // keep connections alive the way the command line does
+    ArgParser argParser = new ArgParser(analyzerArgs);
+    HostConnectionLimiter.configureKeepAlive(
+        argParser.getMaxConnectionsPerHost(),
+        argParser.getIdleTimeout()
+    );
+
+    long start = System.nanoTime();
+    try (JsonResourceAnalyzer jsonResourceAnalyzer = new JsonResourceAnalyzer(argParser)) {
+      jsonResourceAnalyzer.analyze().join();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    long peakHeap = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      peakHeap += pool.getPeakUsage().getUsed();
+    }
+
+    LatencySnapshot sizing = Metrics.SIZING_LATENCY.getSnapshot();
+    System.out.println(
+        "objects    wall  objects/s    sized  sizing p50 ms  sizing p99 ms  heap MB  requests"
+            + "  errors  throttled"
+    );
+    System.out.println(String.format(
+        "%7d  %5.1fs  %9.0f  %7d  %13.1f  %13.1f  %7.0f  %8d  %6d  %9d",
+        objects,
+        seconds,
+        objects / seconds,
+        sizing.getCount(),
+        sizing.getP50(),
+        sizing.getP99(),
+        peakHeap / 1e6,
+        requests.sum(),
+        errors.sum(),
+        throttled.sum()
+    ));
+  }
+
+  /**
+   * Serves a request for a resource of the configured size.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.increment();
+    try {
+      if (concurrencyCap != null && !concurrencyCap.tryAcquire()) {
+        throttled.increment();
+        exchange.sendResponseHeaders(429, -1);
+        return;
+      }
+      try {
+        respond(exchange);
+      } finally {
+        if (concurrencyCap != null) {
+          concurrencyCap.release();
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void respond(HttpExchange exchange) throws IOException, InterruptedException {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    double latency = latencyMedianMillis * Math.exp(latencySigma * random.nextGaussian());
+    TimeUnit.MICROSECONDS.sleep((long) (latency * 1000));
+
+    if (random.nextDouble() < errorRate) {
+      errors.increment();
+      exchange.sendResponseHeaders(503, -1);
+      return;
+    }
+
+    String eTag = "\"" + responseSize + "\"";
+    exchange.getResponseHeaders().set("ETag", eTag);
+    exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+    if (!keepAlive) {
+      exchange.getResponseHeaders().set("Connection", "close");
+    }
+
+    if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      exchange.sendResponseHeaders(304, -1);
+      return;
+    }
+    if ("HEAD".equals(exchange.getRequestMethod())) {
+      exchange.getResponseHeaders().set("Content-Length", Integer.toString(responseSize));
+      exchange.sendResponseHeaders(200, -1);
+      return;
+    }
+    if ("bytes=0-0".equals(exchange.getRequestHeaders().getFirst("Range"))) {
+      exchange.getResponseHeaders().set("Content-Range", "bytes 0-0/" + responseSize);
+      exchange.sendResponseHeaders(206, 1);
+      exchange.getResponseBody().write(chunk, 0, 1);
+      return;
+    }
+
+    exchange.sendResponseHeaders(200, responseSize);
+    OutputStream body = exchange.getResponseBody();
+    for (int sent = 0; sent < responseSize; sent += CHUNK_SIZE) {
+      int length = Math.min(CHUNK_SIZE, responseSize - sent);
+      body.write(chunk, 0, length);
+      if (bandwidth > 0) {
+        TimeUnit.NANOSECONDS.sleep(length * 1_000_000_000L / bandwidth);
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.json.InputJsonObject;
+import jsonresourceanalyzer.json.JsonWriter;
+
+/**
+ * Compares the file size and the write and read throughput of the output formats that hold the
+ * path keyed object: text JSON, Smile and CBOR. Each format is written through JsonWriter and read
+ * back with a streaming parser that visits every token, the way a downstream job would. Every
+ * measurement is repeated and the best run is reported.
+ */
+public class OutputFormatBenchmark {
+
+  private static final int OBJECT_COUNT = 1_000_000;
+  private static final int RUNS = 3;
+  private static final String[] FORMATS = {"json", "smile", "cbor"};
+
+  public static void main(String[] args) throws IOException {
+    File input = File.createTempFile("output-format-benchmark", ".json");
+    Files.write(input.toPath(), "[]".getBytes());
+    input.deleteOnExit();
+    InputJsonObject[] objects = createObjects();
+
+    System.out.println("format      size  write MB/s  write objects/s  read objects/s");
+    for (String format : FORMATS) {
+      File output = File.createTempFile("output-format-benchmark", "." + format);
+      output.deleteOnExit();
+      String[] arguments = {
+          "-f", input.getPath(), "-o", output.getPath(), "--output-format", format
+      };
+
+      long bestWrite = Long.MAX_VALUE;
+      long bestRead = Long.MAX_VALUE;
+      for (int run = 0; run < RUNS; run++) {
+        long start = System.nanoTime();
+        JsonWriter jsonWriter = new JsonWriter(new ArgParser(arguments));
+        jsonWriter.startFile();
+        for (InputJsonObject object : objects) {
+          jsonWriter.writeObject(object);
+        }
+        jsonWriter.endFile();
+        bestWrite = Math.min(bestWrite, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        read(createFactory(format), output);
+        bestRead = Math.min(bestRead, System.nanoTime() - start);
+      }
+
+      System.out.println(String.format(
+          "%-6s  %6.1fMB  %10.0f  %15.0f  %14.0f",
+          format,
+          output.length() / 1e6,
+          output.length() / 1e6 / (bestWrite / 1e9),
+          OBJECT_COUNT / (bestWrite / 1e9),
+          OBJECT_COUNT / (bestRead / 1e9)
+      ));
+    }
+  }
+
+  static InputJsonObject[] createObjects() {
+    InputJsonObject[] objects = new InputJsonObject[OBJECT_COUNT];
+    for (int i = 0; i < OBJECT_COUNT; i++) {
+      InputJsonObject object = new InputJsonObject();
+      object.setProperty("path", "path_value_" + (i + 1));
+      object.setProperty("size", 290 + i % 100000);
+      object.setProperty("url", "http://www.google.com/resource/" + (i % 1000));
+      objects[i] = object;
+    }
+    return objects;
+  }
+
+  static JsonFactory createFactory(String format) {
+    switch (format) {
+      case "smile":
+        return new SmileFactory();
+      case "cbor":
+        return new CBORFactory();
+      default:
+        return new JsonFactory();
+    }
+  }
+
+  /**
+   * Reads every token and value of the file.
+   */
+  static void read(JsonFactory jsonFactory, File file) throws IOException {
+    long checksum = 0;
+    try (JsonParser jsonParser = jsonFactory.createParser(file)) {
+      JsonToken token;
+      while ((token = jsonParser.nextToken()) != null) {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+          checksum += jsonParser.getIntValue();
+        } else if (token == JsonToken.VALUE_STRING || token == JsonToken.FIELD_NAME) {
+          checksum += jsonParser.getText().length();
+        }
+      }
+    }
+    if (checksum == 0) {
+      throw new IllegalStateException("nothing was read");
+    }
+  }
+}
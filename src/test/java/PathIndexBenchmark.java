@@ -0,0 +1,66 @@
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import jsonresourceanalyzer.json.PathIndex;
+
+/**
+ * Measures the heap used and the time taken to add distinct paths to the PathIndex, compared with
+ * the synchronized TreeSet JsonWriter used before. Run with a heap large enough for the TreeSet,
+ * e.g. -Xmx3g, and pass "tree" or "index" to measure only one of them.
+ */
+public class PathIndexBenchmark {
+
+  private static final int PATH_COUNT = 10_000_000;
+
+  public static void main(String[] args) {
+    String mode = args.length > 0 ? args[0] : "both";
+
+    if (!"tree".equals(mode)) {
+      PathIndex pathIndex = new PathIndex();
+      measure("PathIndex", pathIndex::add);
+      // keep the index reachable until it has been measured
+      System.out.println(String.format("(%d paths)", pathIndex.size()));
+    }
+
+    if (!"index".equals(mode)) {
+      Set<String> treeSet = Collections.synchronizedSortedSet(new TreeSet<>());
+      measure("TreeSet", treeSet::add);
+      System.out.println(String.format("(%d paths)", treeSet.size()));
+    }
+  }
+
+  interface PathAdder {
+
+    boolean add(String path);
+  }
+
+  static void measure(String name, PathAdder pathAdder) {
+    long heapBefore = usedHeap();
+    long start = System.nanoTime();
+
+    for (int i = 0; i < PATH_COUNT; i++) {
+      if (!pathAdder.add("path_value_" + (i + 1))) {
+        throw new IllegalStateException("duplicate reported for a distinct path");
+      }
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long heap = usedHeap() - heapBefore;
+    System.out.println(String.format(
+        "%-9s  %6.0f MB  %5.1f bytes/path  %5.2fs  %10.0f paths/s",
+        name,
+        heap / 1e6,
+        (double) heap / PATH_COUNT,
+        seconds,
+        PATH_COUNT / seconds
+    ));
+  }
+
+  static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,241 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jsonresourceanalyzer.ArgParser;
+import jsonresourceanalyzer.JsonResourceAnalyzer;
+import jsonresourceanalyzer.http.HostConnectionLimiter;
+import jsonresourceanalyzer.server.AnalysisServer;
+
+/**
+ * Compares the latency of small jobs run one after another by starting a new JVM for each, as the
+ * command line does, with the latency of the same jobs submitted to a server started with --serve.
+ * The latency of a server job runs from its submission until a status poll sees it finished, so
+ * it includes up to POLL_INTERVAL_MILLIS of polling.
+ *
+ * <p>Every job points at URLs of its own on an in-process HTTP server, so the URL size cache does
+ * not help either mode, and the server's gain comes from startup, class loading, JIT compilation
+ * and pooled connections alone. Options, with their defaults:
+ *
+ * <pre>
+ *   --jobs 20                  jobs run in each mode
+ *   --objects 100              objects in each job's manifest
+ *   --response-size 1024       bytes in every response body
+ * </pre>
+ *
+ * Arguments after "--" are passed to JsonResourceAnalyzer for every job, and default to "-w 20".
+ */
+public class ServerModeBenchmark {
+
+  private static final long POLL_INTERVAL_MILLIS = 2;
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    List<String> analyzerArgs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if ("--".equals(args[i])) {
+        analyzerArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+        break;
+      }
+      options.put(args[i].substring(2), args[++i]);
+    }
+    if (analyzerArgs.isEmpty()) {
+      analyzerArgs.addAll(Arrays.asList("-w", "20"));
+    }
+
+    int jobs = Integer.parseInt(options.getOrDefault("jobs", "20"));
+    int objects = Integer.parseInt(options.getOrDefault("objects", "100"));
+    int responseSize = Integer.parseInt(options.getOrDefault("response-size", "1024"));
+
+    ExecutorService serverThreads = Executors.newCachedThreadPool();
+    HttpServer server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        0
+    );
+    server.createContext("/", exchange -> handle(exchange, responseSize));
+    server.setExecutor(serverThreads);
+    server.start();
+
+    try {
+      String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+      System.out.println("mode       jobs  first ms  mean ms  p50 ms  max ms");
+      report("process", jobs, runProcesses(
+          createManifests(jobs, objects, responseSize, base + "process/"),
+          analyzerArgs
+      ));
+      report("server", jobs, runServer(
+          createManifests(jobs, objects, responseSize, base + "server/"),
+          analyzerArgs
+      ));
+    } finally {
+      server.stop(0);
+      serverThreads.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs every manifest in a new JVM, one after another.
+   *
+   * @return The latency of each job in nanoseconds
+   */
+  static long[] runProcesses(List<File> manifests, List<String> analyzerArgs)
+      throws IOException, InterruptedException {
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    long[] latencies = new long[manifests.size()];
+
+    for (int i = 0; i < manifests.size(); i++) {
+      List<String> command = new ArrayList<>(Arrays.asList(
+          java,
+          "-cp",
+          System.getProperty("java.class.path"),
+          JsonResourceAnalyzer.class.getName(),
+          "-f",
+          manifests.get(i).getPath(),
+          "-o",
+          output(manifests.get(i)).getPath()
+      ));
+      command.addAll(analyzerArgs);
+
+      long start = System.nanoTime();
+      Process process = new ProcessBuilder(command)
+          .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+          .redirectError(ProcessBuilder.Redirect.DISCARD)
+          .start();
+      if (process.waitFor() != 0) {
+        throw new IllegalStateException("Job failed with exit code " + process.exitValue());
+      }
+      latencies[i] = System.nanoTime() - start;
+    }
+    return latencies;
+  }
+
+  /**
+   * Submits every manifest to a server, one after another, waiting for each to finish.
+   *
+   * @return The latency of each job in nanoseconds
+   */
+  static long[] runServer(List<File> manifests, List<String> analyzerArgs)
+      throws IOException, InterruptedException {
+    // the manifests and outputs are temporary files
+    List<String> serverArgs = new ArrayList<>(Arrays.asList(
+        "--serve", "0",
+        "--serve-root", System.getProperty("java.io.tmpdir")
+    ));
+    serverArgs.addAll(analyzerArgs);
+    HttpClient client = HttpClient.newHttpClient();
+    long[] latencies = new long[manifests.size()];
+
+    // keep connections alive the way the command line does
+    ArgParser argParser = new ArgParser(serverArgs.toArray(new String[0]));
+    HostConnectionLimiter.configureKeepAlive(
+        argParser.getMaxConnectionsPerHost(),
+        argParser.getIdleTimeout()
+    );
+
+    try (AnalysisServer analysisServer = new AnalysisServer(argParser)) {
+      String jobs = "http://127.0.0.1:" + analysisServer.getPort() + "/jobs";
+
+      for (int i = 0; i < manifests.size(); i++) {
+        String body = String.format(
+            "{\"file\": \"%s\", \"out\": \"%s\"}",
+            manifests.get(i).getPath(),
+            output(manifests.get(i)).getPath()
+        );
+
+        long start = System.nanoTime();
+        HttpResponse<String> submitted = client.send(
+            HttpRequest.newBuilder(URI.create(jobs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(),
+            HttpResponse.BodyHandlers.ofString()
+        );
+        URI status = URI.create(jobs).resolve(
+            submitted.headers().firstValue("Location").orElseThrow(
+                () -> new IllegalStateException("Job was not accepted: " + submitted.body())
+            )
+        );
+
+        String state;
+        do {
+          TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+          state = client.send(
+              HttpRequest.newBuilder(status).build(),
+              HttpResponse.BodyHandlers.ofString()
+          ).body();
+        } while (state.contains("\"queued\"") || state.contains("\"running\""));
+        latencies[i] = System.nanoTime() - start;
+
+        if (!state.contains("\"succeeded\"")) {
+          throw new IllegalStateException("Job failed: " + state);
+        }
+      }
+    }
+    return latencies;
+  }
+
+  static List<File> createManifests(int jobs, int objects, int responseSize, String base)
+      throws IOException {
+    List<File> manifests = new ArrayList<>();
+    for (int job = 0; job < jobs; job++) {
+      File manifest = File.createTempFile("server-mode-manifest", ".json");
+      manifest.deleteOnExit();
+      output(manifest).deleteOnExit();
+      String jobBase = base + job + "/";
+      JsonCreator.createJsonFile(manifest.getPath(), objects, responseSize, i -> jobBase + i);
+      manifests.add(manifest);
+    }
+    return manifests;
+  }
+
+  static File output(File manifest) {
+    return new File(manifest.getPath() + ".out");
+  }
+
+  static void report(String mode, int jobs, long[] latencies) {
+    long first = latencies[0];
+    long[] sorted = latencies.clone();
+    Arrays.sort(sorted);
+    System.out.println(String.format(
+        "%-8s  %5d  %8.1f  %7.1f  %6.1f  %6.1f",
+        mode,
+        jobs,
+        first / 1e6,
+        Arrays.stream(latencies).average().orElse(0) / 1e6,
+        sorted[sorted.length / 2] / 1e6,
+        sorted[sorted.length - 1] / 1e6
+    ));
+  }
+
+  /**
+   * Serves a resource of the given size, answering HEAD requests with its length alone.
+   */
+  private static void handle(HttpExchange exchange, int responseSize) throws IOException {
+    try {
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+        exchange.getResponseHeaders().set("Content-Length", Integer.toString(responseSize));
+        exchange.sendResponseHeaders(200, -1);
+        return;
+      }
+      exchange.sendResponseHeaders(200, responseSize);
+      exchange.getResponseBody().write(new byte[responseSize]);
+    } finally {
+      exchange.close();
+    }
+  }
+}